@@ -0,0 +1,54 @@
+package com.example.ai_nl_search.controller;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.SampleFilters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Filter validation over the sample filter shapes. It edits the filter in place, so each call works on a
+// copy; copyFilter is the baseline to subtract.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NlSearchControllerBenchmark {
+
+	private OrderFilter[] filters;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		filters = SampleFilters.fromTestQueries().toArray(new OrderFilter[0]);
+	}
+
+	private OrderFilter nextFilter() {
+		OrderFilter filter = filters[next];
+		next = (next + 1) % filters.length;
+		return filter.copy();
+	}
+
+	@Benchmark
+	public OrderFilter copyFilter() {
+		return nextFilter();
+	}
+
+	@Benchmark
+	public List<String> validateAndSanitizeFilter() {
+		return NlSearchController.validateAndSanitizeFilter(nextFilter(), new ArrayList<>(),
+			"expired orders at location a last week");
+	}
+}
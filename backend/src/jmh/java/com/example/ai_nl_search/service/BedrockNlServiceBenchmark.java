@@ -0,0 +1,78 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The per-request work around a Bedrock call: building both request bodies, pulling the filter out of the
+// model text (bare JSON and JSON behind reasoning), and cleaning the follow-up text
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BedrockNlServiceBenchmark {
+
+	private static final String FILTER_JSON = """
+		{"excludeStatus":["CREATED","COURIER_STORED","CUSTOMER_STORED","DELIVERED","OPERATOR_COLLECTED"],\
+		"locationName":"Location A","dateFrom":"2026-01-02","dateTo":"2026-01-09","dateField":"CREATED"}""";
+
+	private static final String FILTER_AFTER_REASONING = "<reasoning>The user wants expired orders at Location A "
+		+ "last week, so every other status is excluded and the created date is bounded.</reasoning>\n"
+		+ "Here is the filter:\n" + FILTER_JSON;
+
+	private static final String FOLLOW_UP_TEXT = """
+		<reasoning>We have a query about Location B. Result count is 0. Assumptions made: none.</reasoning>
+		Applied filter: locationName=Location B
+		No orders found for 'Location B'. Did you mean Location A or alfred24 Office Locker?
+		""";
+
+	private BedrockNlService service;
+	private OrderFilter filter;
+	private List<String> assumptions;
+
+	@Setup
+	public void setUp() throws Exception {
+		service = new BedrockNlService(new StubModelInvoker(""), new SimpleMeterRegistry());
+		filter = service.extractJsonFromText(FILTER_JSON);
+		assumptions = List.of("Interpreted 'last week' as the 7 days up to today.");
+	}
+
+	@Benchmark
+	public byte[] buildFilterRequest() throws Exception {
+		return service.buildFilterRequest("expired orders at Location A last week");
+	}
+
+	@Benchmark
+	public byte[] buildFollowUpRequest() throws Exception {
+		return service.buildFollowUpRequest("expired orders at Location A last week", filter, 0, assumptions);
+	}
+
+	@Benchmark
+	public OrderFilter extractBareJson() throws Exception {
+		return service.extractJsonFromText(FILTER_JSON);
+	}
+
+	@Benchmark
+	public OrderFilter extractJsonAfterReasoning() throws Exception {
+		return service.extractJsonFromText(FILTER_AFTER_REASONING);
+	}
+
+	@Benchmark
+	public String cleanFollowUpResponse() {
+		return service.cleanFollowUpResponse(FOLLOW_UP_TEXT);
+	}
+}
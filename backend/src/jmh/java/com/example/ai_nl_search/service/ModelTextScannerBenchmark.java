@@ -0,0 +1,77 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// ModelTextScanner against the regexes it replaced (LegacyModelTextParsing), on model output with a short and
+// a long reasoning block in front of the answer
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModelTextScannerBenchmark {
+
+	private static final String FILTER_JSON = """
+		{"location_name": "Location A", "date_from": "2026-01-02", "date_to": "2026-01-09", "date_field": "STORED",\
+		 "exclude_status": ["CREATED", "COURIER_STORED", "CUSTOMER_STORED", "OPERATOR_COLLECTED", "EXPIRED"]}""";
+
+	private static final String REASONING_SENTENCE = "We need to map 'delivered to Location A last week' to the "
+		+ "schema: delivered excludes every other status, last week is 2026-01-02 to 2026-01-09, and 'delivered "
+		+ "to' means the stored date.\n";
+
+	private static final String FOLLOW_UP = """
+		Applied filter: location_name=Location A
+		I read 'delivered to Location A last week' as parcels stored there between 2026-01-02 and 2026-01-09.
+		Would you like to see collected orders as well?
+		""";
+
+	@Param({"1", "50"})
+	public int reasoningSentences;
+
+	private BedrockNlService service;
+	private String filterText;
+	private String followUpText;
+
+	@Setup
+	public void setUp() {
+		service = new BedrockNlService(new StubModelInvoker(""), new SimpleMeterRegistry());
+		String reasoning = "<reasoning>" + REASONING_SENTENCE.repeat(reasoningSentences) + "</reasoning>\n";
+		filterText = reasoning + "```json\n" + FILTER_JSON + "\n```";
+		followUpText = reasoning + FOLLOW_UP;
+	}
+
+	@Benchmark
+	public OrderFilter extractFilter() throws Exception {
+		return service.extractJsonFromText(filterText);
+	}
+
+	@Benchmark
+	public OrderFilter extractFilterLegacy() throws Exception {
+		return LegacyModelTextParsing.extractJsonFromText(filterText);
+	}
+
+	@Benchmark
+	public String cleanFollowUp() {
+		return service.cleanFollowUpResponse(followUpText);
+	}
+
+	@Benchmark
+	public String cleanFollowUpLegacy() {
+		return LegacyModelTextParsing.cleanFollowUpResponse(followUpText);
+	}
+}
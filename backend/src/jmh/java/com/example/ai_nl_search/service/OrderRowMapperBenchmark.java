@@ -0,0 +1,95 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Mapping one row, full and projected, from an in-memory ResultSet so the driver's own cost is left out.
+// Fresh String instances per row stand in for what the driver decodes, so interning is measured too.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderRowMapperBenchmark {
+
+	private static final Set<OrderField> PROJECTION = EnumSet.of(OrderField.ID, OrderField.TRACKING_NO,
+		OrderField.STATUS, OrderField.TIME_CREATED, OrderField.TIME_STORED, OrderField.LOCATION_NAME);
+
+	private static final Object[] ROW = {
+		3L, "TRK-0000003", "ORD-0000003", "DELIVERY", "OPERATOR_COLLECTED", "OPERATOR", "+85291234567", 12,
+		Timestamp.valueOf("2026-01-08 15:53:00"), Timestamp.valueOf("2026-01-08 17:37:00"),
+		Timestamp.valueOf("2026-01-08 17:42:00"), Timestamp.valueOf("2026-01-11 17:37:00"), "FRAGILE,VIP",
+		"alfred24 Office Locker", "LOCKER", "Hong Kong", "Demo Company", null
+	};
+
+	private OrderRowMapper mapper;
+	private OrderRowMapper projectedMapper;
+	private ResultSet fullRow;
+	private ResultSet projectedRow;
+
+	@Setup
+	public void setUp() {
+		mapper = new OrderRowMapper();
+		projectedMapper = mapper.project(OrderField.selected(PROJECTION));
+		fullRow = resultSet(ROW);
+		Object[] projected = new Object[PROJECTION.size()];
+		int column = 0;
+		for (OrderField field : PROJECTION) {
+			projected[column++] = ROW[field.ordinal()];
+		}
+		projectedRow = resultSet(projected);
+	}
+
+	// Only the getters OrderRowMapper calls, by 1-based column index
+	private static ResultSet resultSet(Object[] values) {
+		boolean[] wasNull = new boolean[1];
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+			(proxy, method, args) -> {
+				if (method.getName().equals("wasNull")) {
+					return wasNull[0];
+				}
+				Object value = values[(Integer) args[0] - 1];
+				wasNull[0] = value == null;
+				switch (method.getName()) {
+					case "getLong":
+						return value != null ? (Long) value : 0L;
+					case "getInt":
+						return value != null ? (Integer) value : 0;
+					case "getString":
+						return value != null ? new String((String) value) : null;
+					case "getTimestamp":
+						return value;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+
+	@Benchmark
+	public OrderRow mapRow() throws SQLException {
+		return mapper.mapRow(fullRow, 0);
+	}
+
+	@Benchmark
+	public OrderRow mapProjectedRow() throws SQLException {
+		return projectedMapper.mapRow(projectedRow, 0);
+	}
+}
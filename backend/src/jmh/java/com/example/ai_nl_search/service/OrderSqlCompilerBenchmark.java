@@ -0,0 +1,107 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderCursor;
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.DimensionCache.Dimension;
+import com.example.ai_nl_search.service.DimensionCache.Snapshot;
+import com.example.ai_nl_search.service.OrderSqlCompiler.CompiledQuery;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// SQL generation for each search, count and breakdown, cycling through the sample filter shapes.
+// Shapes repeat, so this measures the shape cache hit path, which is what a running server sees.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderSqlCompilerBenchmark {
+
+	// Same rows as db/init.sql
+	private static final Snapshot DIMENSIONS = new Snapshot(
+		List.of(new Dimension(1, "alfred24 office locker"), new Dimension(2, "location a"),
+			new Dimension(3, "location b"), new Dimension(4, "7eleven kwai chung - pudo"),
+			new Dimension(5, "abi graphique demo locker normal"),
+			new Dimension(6, "abi graphique demo locker temp control")),
+		List.of(new Dimension(1, "hong kong"), new Dimension(2, "hong kong"), new Dimension(3, "hong kong"),
+			new Dimension(4, "hong kong"), new Dimension(5, "paris"), new Dimension(6, "paris")),
+		List.of(new Dimension(1, "demo company"), new Dimension(2, "7eleven kwai chung"),
+			new Dimension(3, "abi graphique demo")),
+		List.of(new Dimension(1, "dhl"), new Dimension(2, "sf express"), new Dimension(3, "ups")),
+		System.currentTimeMillis());
+
+	private static final Set<OrderField> PROJECTION = EnumSet.of(OrderField.TRACKING_NO, OrderField.STATUS,
+		OrderField.TIME_STORED);
+
+	private OrderSqlCompiler compiler;
+	private OrderFilter[] filters;
+	private OrderFilter[] aggregates;
+	private OrderCursor cursor;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		compiler = new OrderSqlCompiler(new SimpleMeterRegistry(),
+			new DimensionCache(null, new SimpleMeterRegistry(), Duration.ofMinutes(1)) {
+				@Override
+				Snapshot snapshot() {
+					return DIMENSIONS;
+				}
+			});
+		filters = SampleFilters.fromTestQueries().toArray(new OrderFilter[0]);
+		aggregates = new OrderFilter[filters.length];
+		for (int i = 0; i < filters.length; i++) {
+			aggregates[i] = filters[i].copy();
+			aggregates[i].setAggregate("LOCATION");
+		}
+		cursor = new OrderCursor(Timestamp.valueOf("2026-01-08 17:21:00").getTime(), 7);
+	}
+
+	private int nextShape() {
+		int shape = next;
+		next = (next + 1) % filters.length;
+		return shape;
+	}
+
+	@Benchmark
+	public CompiledQuery firstPage() {
+		return compiler.compile(filters[nextShape()], null, 50);
+	}
+
+	@Benchmark
+	public CompiledQuery nextPage() {
+		return compiler.compile(filters[nextShape()], cursor, 50);
+	}
+
+	@Benchmark
+	public CompiledQuery projectedPage() {
+		return compiler.compile(filters[nextShape()], null, 50, PROJECTION);
+	}
+
+	@Benchmark
+	public CompiledQuery count() {
+		return compiler.compileCount(filters[nextShape()]);
+	}
+
+	@Benchmark
+	public CompiledQuery breakdown() {
+		return compiler.compileGroups(aggregates[nextShape()], 1000);
+	}
+}
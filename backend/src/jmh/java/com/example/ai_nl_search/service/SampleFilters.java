@@ -0,0 +1,31 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+// The filter shapes of test-queries.txt, as the rule-based interpreter reads them
+public final class SampleFilters {
+
+	private SampleFilters() {
+	}
+
+	public static List<OrderFilter> fromTestQueries() {
+		RuleBasedInterpreter interpreter = new RuleBasedInterpreter();
+		try {
+			return Files.readAllLines(Path.of("../test-queries.txt")).stream()
+				.map(String::trim)
+				.filter(line -> !line.isEmpty())
+				.map(interpreter::interpret)
+				.flatMap(Optional::stream)
+				.toList();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
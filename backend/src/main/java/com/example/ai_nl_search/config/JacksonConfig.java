@@ -0,0 +1,19 @@
+package com.example.ai_nl_search.config;
+
+import com.example.ai_nl_search.dto.OrderRow;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    // Order rows are written through a property filter; unless a search narrows it, every field passes
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer orderFieldFilter() {
+        return builder -> builder.filters(new SimpleFilterProvider()
+            .addFilter(OrderRow.FIELD_FILTER, SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
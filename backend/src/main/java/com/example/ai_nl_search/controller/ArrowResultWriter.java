@@ -0,0 +1,179 @@
+package com.example.ai_nl_search.controller;
+
+import com.example.ai_nl_search.dto.OrderRow;
+import com.example.ai_nl_search.service.OrderField;
+import com.example.ai_nl_search.service.OrderVocabulary;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Arrow IPC stream: the schema (header entries as schema metadata), the enum dictionaries, then one record
+// batch per BATCH_ROWS rows. Enum fields are dictionary-encoded against OrderVocabulary, times are UTC
+// milliseconds. The stream format has no room after the last batch, so the trailer is not sent; the
+// controller only asks for whole results, which have no next cursor to lose.
+final class ArrowResultWriter implements ResultWriter {
+
+    static final int BATCH_ROWS = 4096;
+
+    private static final BufferAllocator ROOT_ALLOCATOR = new RootAllocator();
+    private static final ArrowType.Int INDEX_TYPE = new ArrowType.Int(32, true);
+    private static final Map<OrderField, List<String>> VOCABULARIES = Map.of(
+        OrderField.SERVICE, OrderVocabulary.SERVICES,
+        OrderField.STATUS, OrderVocabulary.STATUSES,
+        OrderField.COLLECTED_BY_TYPE, OrderVocabulary.COLLECTED_BY,
+        OrderField.LOCATION_TYPE, OrderVocabulary.LOCATION_TYPES);
+
+    private final BufferAllocator allocator;
+    private final DictionaryProvider.MapDictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+    private final List<OrderField> fields;
+    private final Map<OrderField, Map<String, Integer>> dictionaryIndexes = new HashMap<>();
+    private final VectorSchemaRoot root;
+    private final ArrowStreamWriter writer;
+    private int rows;
+
+    ArrowResultWriter(OutputStream out, Set<OrderField> fields, Map<String, String> header) throws IOException {
+        this.allocator = ROOT_ALLOCATOR.newChildAllocator("order-result", 0, Long.MAX_VALUE);
+        this.fields = new ArrayList<>(fields);
+
+        List<Field> schemaFields = new ArrayList<>(fields.size());
+        for (OrderField field : fields) {
+            List<String> vocabulary = VOCABULARIES.get(field);
+            if (vocabulary == null) {
+                schemaFields.add(Field.nullable(field.property, arrowType(field)));
+                continue;
+            }
+            DictionaryEncoding encoding = new DictionaryEncoding(dictionaryIndexes.size(), false, INDEX_TYPE);
+            VarCharVector values = new VarCharVector(field.property, allocator);
+            values.allocateNew(vocabulary.size());
+            Map<String, Integer> indexes = new HashMap<>();
+            for (int i = 0; i < vocabulary.size(); i++) {
+                values.setSafe(i, vocabulary.get(i).getBytes(StandardCharsets.UTF_8));
+                indexes.put(vocabulary.get(i), i);
+            }
+            values.setValueCount(vocabulary.size());
+            dictionaries.put(new Dictionary(values, encoding));
+            dictionaryIndexes.put(field, indexes);
+            schemaFields.add(new Field(field.property, new FieldType(true, INDEX_TYPE, encoding), null));
+        }
+
+        this.root = VectorSchemaRoot.create(new Schema(schemaFields, header), allocator);
+        this.root.allocateNew();
+        this.writer = new ArrowStreamWriter(root, dictionaries, Channels.newChannel(out));
+        this.writer.start();
+    }
+
+    private static ArrowType arrowType(OrderField field) {
+        switch (field) {
+            case ID:
+                return new ArrowType.Int(64, true);
+            case COMPARTMENT_NO:
+                return new ArrowType.Int(32, true);
+            case TIME_CREATED:
+            case TIME_STORED:
+            case TIME_COLLECTED:
+            case EXPIRES_AT:
+                return new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC");
+            default:
+                return ArrowType.Utf8.INSTANCE;
+        }
+    }
+
+    @Override
+    public void row(OrderRow row) throws IOException {
+        for (int column = 0; column < fields.size(); column++) {
+            OrderField field = fields.get(column);
+            set(root.getVector(column), field, field.read(row));
+        }
+        rows++;
+        if (rows == BATCH_ROWS) {
+            writeBatch();
+        }
+    }
+
+    private void set(FieldVector vector, OrderField field, Object value) {
+        Map<String, Integer> indexes = dictionaryIndexes.get(field);
+        if (indexes != null) {
+            IntVector indices = (IntVector) vector;
+            if (value == null) {
+                indices.setNull(rows);
+                return;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                throw new IllegalStateException("Value '" + value + "' of " + field.property + " is not in the vocabulary");
+            }
+            indices.setSafe(rows, index);
+        } else if (vector instanceof BigIntVector longs) {
+            longs.setSafe(rows, (Long) value);
+        } else if (vector instanceof IntVector ints) {
+            if (value == null) {
+                ints.setNull(rows);
+            } else {
+                ints.setSafe(rows, (Integer) value);
+            }
+        } else if (vector instanceof TimeStampMilliTZVector times) {
+            if (value == null) {
+                times.setNull(rows);
+            } else {
+                times.setSafe(rows, ((Timestamp) value).getTime());
+            }
+        } else {
+            VarCharVector strings = (VarCharVector) vector;
+            if (value == null) {
+                strings.setNull(rows);
+            } else {
+                strings.setSafe(rows, ((String) value).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        root.setRowCount(rows);
+        writer.writeBatch();
+        root.allocateNew();
+        rows = 0;
+    }
+
+    @Override
+    public void finish(Map<String, Object> trailer) throws IOException {
+        if (rows > 0) {
+            writeBatch();
+        }
+        writer.end();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        root.close();
+        for (long id : dictionaries.getDictionaryIds()) {
+            dictionaries.lookup(id).getVector().close();
+        }
+        allocator.close();
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.ai_nl_search.controller;
+
+import com.example.ai_nl_search.dto.OrderRow;
+import com.example.ai_nl_search.service.OrderField;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// One document per result: the header entries, then "batches" of up to BATCH_ROWS rows stored as one
+// array per field, then the trailer entries. Repetitive text fields are dictionary-encoded per batch as
+// {"dictionary": [...], "indices": [...]}; times are epoch milliseconds. The same generator calls produce
+// JSON or MessagePack.
+final class ColumnarResultWriter implements ResultWriter {
+
+    static final int BATCH_ROWS = 1024;
+
+    private static final Set<OrderField> DICTIONARY_FIELDS = EnumSet.of(OrderField.SERVICE, OrderField.STATUS,
+        OrderField.COLLECTED_BY_TYPE, OrderField.FLAGS, OrderField.LOCATION_NAME, OrderField.LOCATION_TYPE,
+        OrderField.CITY, OrderField.COMPANY_NAME, OrderField.CARRIER_NAME);
+
+    private final JsonGenerator generator;
+    private final Set<OrderField> fields;
+    private final List<OrderRow> batch = new ArrayList<>(BATCH_ROWS);
+
+    ColumnarResultWriter(JsonGenerator generator, Set<OrderField> fields, Map<String, Object> header)
+            throws IOException {
+        this.generator = generator;
+        this.fields = fields;
+        generator.writeStartObject();
+        for (Map.Entry<String, Object> entry : header.entrySet()) {
+            generator.writeObjectField(entry.getKey(), entry.getValue());
+        }
+        generator.writeArrayFieldStart("batches");
+    }
+
+    @Override
+    public void row(OrderRow row) throws IOException {
+        batch.add(row);
+        if (batch.size() == BATCH_ROWS) {
+            writeBatch();
+        }
+    }
+
+    @Override
+    public void finish(Map<String, Object> trailer) throws IOException {
+        if (!batch.isEmpty()) {
+            writeBatch();
+        }
+        generator.writeEndArray();
+        for (Map.Entry<String, Object> entry : trailer.entrySet()) {
+            generator.writeObjectField(entry.getKey(), entry.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeBatch() throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("rowCount", batch.size());
+        generator.writeObjectFieldStart("columns");
+        for (OrderField field : fields) {
+            generator.writeFieldName(field.property);
+            if (DICTIONARY_FIELDS.contains(field)) {
+                writeDictionaryColumn(field);
+            } else {
+                writeColumn(field);
+            }
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.flush();
+        batch.clear();
+    }
+
+    private void writeColumn(OrderField field) throws IOException {
+        generator.writeStartArray();
+        for (OrderRow row : batch) {
+            Object value = field.read(row);
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof Timestamp timestamp) {
+                generator.writeNumber(timestamp.getTime());
+            } else if (value instanceof Long number) {
+                generator.writeNumber(number);
+            } else if (value instanceof Integer number) {
+                generator.writeNumber(number);
+            } else {
+                generator.writeString((String) value);
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    // Null stays null in the indices and is not part of the dictionary
+    private void writeDictionaryColumn(OrderField field) throws IOException {
+        Map<String, Integer> indexOf = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int[] indices = new int[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            String value = (String) field.read(batch.get(i));
+            if (value == null) {
+                indices[i] = -1;
+                continue;
+            }
+            Integer index = indexOf.get(value);
+            if (index == null) {
+                index = dictionary.size();
+                indexOf.put(value, index);
+                dictionary.add(value);
+            }
+            indices[i] = index;
+        }
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("dictionary");
+        for (String value : dictionary) {
+            generator.writeString(value);
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("indices");
+        for (int index : indices) {
+            if (index < 0) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(index);
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
@@ -1,56 +1,149 @@
 package com.example.ai_nl_search.controller;
 
 import com.example.ai_nl_search.dto.NlSearchResponse;
+import com.example.ai_nl_search.dto.OrderAggregate;
+import com.example.ai_nl_search.dto.OrderCursor;
 import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.dto.OrderPage;
+import com.example.ai_nl_search.dto.OrderRow;
 import com.example.ai_nl_search.service.BedrockNlService;
+import com.example.ai_nl_search.service.ConcurrentStages;
+import com.example.ai_nl_search.service.Interpretation;
+import com.example.ai_nl_search.service.NameSuggester;
+import com.example.ai_nl_search.service.OrderField;
 import com.example.ai_nl_search.service.OrderSearchService;
+import com.example.ai_nl_search.service.OrderVocabulary;
+import com.example.ai_nl_search.service.QueryInterpreter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32C;
 
 @RestController
 @RequestMapping("/api")
 @CrossOrigin(origins = "*")
 public class NlSearchController {
 
-    private static final Set<String> VALID_STATUSES = new HashSet<>(Arrays.asList(
-        "CREATED", "COURIER_STORED", "CUSTOMER_STORED", "DELIVERED", "OPERATOR_COLLECTED", "EXPIRED"
-    ));
-    private static final Set<String> VALID_SERVICES = new HashSet<>(Arrays.asList("DELIVERY", "RETURNS"));
-    private static final Set<String> VALID_COLLECTED_BY = new HashSet<>(Arrays.asList("COURIER", "CUSTOMER", "OPERATOR"));
-    private static final Set<String> VALID_LOCATION_TYPES = new HashSet<>(Arrays.asList("PUDO", "LOCKER", "WAREHOUSE", "STORE"));
-    private static final Set<String> VALID_FLAGS = new HashSet<>(Arrays.asList("FRAGILE", "VIP", "EXPIRED"));
-    private static final Set<String> VALID_DATE_FIELDS = new HashSet<>(Arrays.asList("CREATED", "STORED", "COLLECTED"));
+    private static final Set<String> VALID_STATUSES = new HashSet<>(OrderVocabulary.STATUSES);
+    private static final Set<String> VALID_SERVICES = new HashSet<>(OrderVocabulary.SERVICES);
+    private static final Set<String> VALID_COLLECTED_BY = new HashSet<>(OrderVocabulary.COLLECTED_BY);
+    private static final Set<String> VALID_LOCATION_TYPES = new HashSet<>(OrderVocabulary.LOCATION_TYPES);
+    private static final Set<String> VALID_FLAGS = new HashSet<>(OrderVocabulary.FLAGS);
+    private static final Set<String> VALID_DATE_FIELDS = new HashSet<>(OrderVocabulary.DATE_FIELDS);
+    private static final Set<String> VALID_AGGREGATES = new HashSet<>(OrderVocabulary.AGGREGATES);
+    private static final int NDJSON_FLUSH_INTERVAL = 200;
+    private static final int SSE_ROWS_PER_EVENT = 25;
+    private static final Object END_OF_TOKENS = new Object();
+    private static final MediaType TEXT_EVENT_STREAM_UTF8 = new MediaType(MediaType.TEXT_EVENT_STREAM, StandardCharsets.UTF_8);
 
     private final BedrockNlService bedrockNlService;
+    private final QueryInterpreter queryInterpreter;
     private final OrderSearchService orderSearchService;
+    private final NameSuggester nameSuggester;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper msgpackMapper;
+    private final MeterRegistry meterRegistry;
+    private final Counter validationWarnings;
 
     @Autowired
-    public NlSearchController(BedrockNlService bedrockNlService, OrderSearchService orderSearchService) {
+    public NlSearchController(BedrockNlService bedrockNlService, QueryInterpreter queryInterpreter,
+                              OrderSearchService orderSearchService, NameSuggester nameSuggester,
+                              ObjectMapper objectMapper, MeterRegistry meterRegistry) {
         this.bedrockNlService = bedrockNlService;
+        this.queryInterpreter = queryInterpreter;
         this.orderSearchService = orderSearchService;
+        this.nameSuggester = nameSuggester;
+        this.objectMapper = objectMapper;
+        this.msgpackMapper = objectMapper.copyWith(new MessagePackFactory());
+        this.meterRegistry = meterRegistry;
+        this.validationWarnings = Counter.builder("search.validation.warnings")
+            .description("Filter values dropped or corrected by validation, one per warning")
+            .register(meterRegistry);
     }
 
     @GetMapping("/orders")
-    public ResponseEntity<?> getAllOrders() {
+    public ResponseEntity<?> getAllOrders(@RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) List<String> fields,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        OrderCursor pageCursor;
         try {
+            pageCursor = decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", "Invalid page cursor. Please reload the first page."));
+        }
+        if (!continues(pageCursor, new OrderFilter())) {
+            return staleCursor();
+        }
+        Set<OrderField> projection;
+        try {
+            projection = OrderField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+        ResultEncoding encoding = ResultEncoding.negotiate(accept);
+        if (encoding != null) {
+            return encodedResponse(encoding, new OrderFilter(), new ArrayList<>(), null, pageCursor, limit,
+                OrderSearchService.DEFAULT_PAGE_SIZE, projection, null, null);
+        }
+
+        try {
+            StageTimings timings = new StageTimings(meterRegistry);
             OrderFilter emptyFilter = new OrderFilter();
-            List<Map<String, Object>> results = orderSearchService.search(emptyFilter);
+            OrderPage page;
+            Long totalCount = null;
+            try (ConcurrentStages stages = new ConcurrentStages()) {
+                // Only the first page is counted, later pages keep the total the client already has
+                Future<Long> countStage = pageCursor == null
+                    ? stages.fork(() -> timings.time("count", () -> orderSearchService.count(emptyFilter)))
+                    : null;
+                page = timings.time("sql", () ->
+                    orderSearchService.search(emptyFilter, pageCursor, pageSize(limit), projection));
+                if (countStage != null) {
+                    totalCount = stages.join(countStage);
+                }
+            }
             NlSearchResponse response = new NlSearchResponse();
             response.setFilters(emptyFilter);
-            response.setResults(results);
+            response.setResults(page.getResults());
             response.setWarnings(new ArrayList<>());
             response.setFollowUp(null);
+            response.setNextCursor(encodeCursor(page.getNextCursor(), emptyFilter));
+            response.setTotalCount(totalCount);
             
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok()
+                .header(StageTimings.HEADER, timings.header())
+                .body(project(response, projection));
         } catch (Exception e) {
             System.err.println("Error fetching all orders: " + e.getMessage());
             e.printStackTrace();
@@ -60,39 +153,632 @@ public class NlSearchController {
     }
 
     @PostMapping("/nl-search")
-    public ResponseEntity<?> nlSearch(@RequestBody NlSearchRequest request) {
+    public ResponseEntity<?> nlSearch(@RequestBody NlSearchRequest request,
+                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         if (request.getQuery() == null || request.getQuery().trim().isEmpty()) {
             return ResponseEntity.badRequest()
                 .body(Map.of("message", "Query cannot be empty. Please enter a search query."));
         }
 
+        OrderCursor pageCursor;
+        try {
+            pageCursor = decodeCursor(request.getCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", "Invalid page cursor. Please run the search again."));
+        }
+        Set<OrderField> projection;
+        try {
+            projection = OrderField.parse(request.getFields());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+
         try {
             String query = request.getQuery().trim();
+            StageTimings timings = new StageTimings(meterRegistry);
             
-            // Step 1: Convert natural language to OrderFilter JSON
-            OrderFilter filter = bedrockNlService.interpret(query);
+            // Step 1: Convert natural language to OrderFilter JSON (local rules, cache, then Bedrock)
+            Interpretation interpretation = timings.time("interpret", () -> interpret(request, pageCursor, query));
+            timings.interpreter(interpretation.source().name());
+            OrderFilter filter = interpretation.filter();
+            filter.setSourceQuery(query);
             
             // Step 2: Validate and sanitize filter, track assumptions
             List<String> warnings = new ArrayList<>();
             List<String> assumptions = validateAndSanitizeFilter(filter, warnings, query);
+            validationWarnings.increment(warnings.size());
+            if (!continues(pageCursor, filter)) {
+                return staleCursor();
+            }
+
+            ResultEncoding encoding = ResultEncoding.negotiate(accept);
+            if (encoding != null) {
+                return encodedResponse(encoding, filter, warnings, interpretation.source().name(), pageCursor,
+                    request.getLimit(), OrderSearchService.DEFAULT_PAGE_SIZE, projection, query, assumptions);
+            }
             
-            // Step 3: Convert OrderFilter to SQL and execute query
-            List<Map<String, Object>> results = orderSearchService.search(filter);
-            
-            // Step 4: Generate follow-up message
-            String followUp = bedrockNlService.generateFollowUp(
-                query, filter, results.size(), assumptions);
+            if (filter.getAggregate() != null) {
+                NlSearchResponse response = aggregateResponse(query, filter, warnings, assumptions,
+                    interpretation.source().name(), timings);
+                return ResponseEntity.ok().header(StageTimings.HEADER, timings.header()).body(response);
+            }
+
+            // Step 3 and 4: Fetch the requested page while the total count runs alongside it, and generate the
+            // follow-up as soon as the count is known. Both are first page only, later pages reuse them on the
+            // client.
+            OrderPage page;
+            Long totalCount = null;
+            String followUp = null;
+            try (ConcurrentStages stages = new ConcurrentStages()) {
+                Future<Long> countStage = null;
+                Future<String> followUpStage = null;
+                if (pageCursor == null) {
+                    Future<Long> firstPageCount = stages.fork(() ->
+                        timings.time("count", () -> orderSearchService.count(filter)));
+                    countStage = firstPageCount;
+                    followUpStage = stages.fork(() -> {
+                        long count = stages.join(firstPageCount);
+                        return timings.time("followup", () -> generateFollowUp(query, filter, count, assumptions));
+                    });
+                }
+                page = timings.time("sql", () ->
+                    orderSearchService.search(filter, pageCursor, pageSize(request.getLimit()), projection));
+                if (countStage != null) {
+                    totalCount = stages.join(countStage);
+                    followUp = stages.join(followUpStage);
+                } else {
+                    countFollowUp("skipped");
+                }
+            }
             
-            // Step 5: Return results with filters, warnings, and follow-up
+            // Step 5: Return results with filters, warnings, follow-up and the next page cursor
             NlSearchResponse response = new NlSearchResponse();
             response.setFilters(filter);
-            response.setResults(results);
+            response.setResults(page.getResults());
             response.setWarnings(warnings);
             response.setFollowUp(followUp);
+            response.setNextCursor(encodeCursor(page.getNextCursor(), filter));
+            response.setInterpreter(interpretation.source().name());
+            response.setTotalCount(totalCount);
             
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok()
+                .header(StageTimings.HEADER, timings.header())
+                .body(project(response, projection));
             
+        } catch (Exception e) {
+            return errorResponse(e);
+        }
+    }
+
+    // Count and breakdown questions: only the counts are queried, no rows are read or returned
+    private NlSearchResponse aggregateResponse(String query, OrderFilter filter, List<String> warnings,
+                                               List<String> assumptions, String interpreter,
+                                               StageTimings timings) throws Exception {
+        OrderAggregate aggregate = timings.time("aggregate", () -> orderSearchService.aggregate(filter));
+        NlSearchResponse response = new NlSearchResponse();
+        response.setFilters(filter);
+        response.setResults(new ArrayList<>());
+        response.setGroups(aggregate.groups());
+        response.setWarnings(warnings);
+        response.setFollowUp(timings.time("followup", () ->
+            generateFollowUp(query, filter, aggregate.totalCount(), assumptions)));
+        response.setNextCursor(null);
+        response.setInterpreter(interpreter);
+        response.setTotalCount(aggregate.totalCount());
+        return response;
+    }
+
+    @GetMapping("/orders/stream")
+    public ResponseEntity<?> streamAllOrders(@RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) List<String> fields,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        OrderCursor pageCursor;
+        try {
+            pageCursor = decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", "Invalid page cursor. Please reload the first page."));
+        }
+        Set<OrderField> projection;
+        try {
+            projection = OrderField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+
+        OrderFilter emptyFilter = new OrderFilter();
+        if (!continues(pageCursor, emptyFilter)) {
+            return staleCursor();
+        }
+        ResultEncoding encoding = ResultEncoding.negotiate(accept);
+        if (encoding != null) {
+            return encodedResponse(encoding, emptyFilter, new ArrayList<>(), null, pageCursor, limit, null,
+                projection, null, null);
+        }
+        StreamingResponseBody body = out ->
+            writeNdjson(out, emptyFilter, new ArrayList<>(), null, pageCursor, limit, projection, null, null);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @PostMapping("/nl-search/stream")
+    public ResponseEntity<?> nlSearchStream(@RequestBody NlSearchRequest request,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (request.getQuery() == null || request.getQuery().trim().isEmpty()) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", "Query cannot be empty. Please enter a search query."));
+        }
+
+        OrderCursor pageCursor;
+        try {
+            pageCursor = decodeCursor(request.getCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", "Invalid page cursor. Please run the search again."));
+        }
+        Set<OrderField> projection;
+        try {
+            projection = OrderField.parse(request.getFields());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+
+        try {
+            String query = request.getQuery().trim();
+            Interpretation interpretation = interpret(request, pageCursor, query);
+            OrderFilter filter = interpretation.filter();
+            filter.setSourceQuery(query);
+            List<String> warnings = new ArrayList<>();
+            List<String> assumptions = validateAndSanitizeFilter(filter, warnings, query);
+            validationWarnings.increment(warnings.size());
+            if (!continues(pageCursor, filter)) {
+                return staleCursor();
+            }
+
+            ResultEncoding encoding = ResultEncoding.negotiate(accept);
+            if (encoding != null) {
+                return encodedResponse(encoding, filter, warnings, interpretation.source().name(), pageCursor,
+                    request.getLimit(), null, projection, query, assumptions);
+            }
+
+            // Rows are written as they are read, the follow-up goes into the trailer line
+            StreamingResponseBody body = out -> writeNdjson(out, filter, warnings, interpretation.source().name(),
+                pageCursor, request.getLimit(), projection, query, assumptions);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+        } catch (Exception e) {
+            return errorResponse(e);
+        }
+    }
+
+    @PostMapping("/nl-search/events")
+    public ResponseEntity<?> nlSearchEvents(@RequestBody NlSearchRequest request) {
+        if (request.getQuery() == null || request.getQuery().trim().isEmpty()) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", "Query cannot be empty. Please enter a search query."));
+        }
+
+        OrderCursor pageCursor;
+        try {
+            pageCursor = decodeCursor(request.getCursor());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("message", "Invalid page cursor. Please run the search again."));
+        }
+        Set<OrderField> projection;
+        try {
+            projection = OrderField.parse(request.getFields());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+
+        try {
+            String query = request.getQuery().trim();
+            Interpretation interpretation = interpret(request, pageCursor, query);
+            OrderFilter filter = interpretation.filter();
+            filter.setSourceQuery(query);
+            List<String> warnings = new ArrayList<>();
+            List<String> assumptions = validateAndSanitizeFilter(filter, warnings, query);
+            validationWarnings.increment(warnings.size());
+            if (!continues(pageCursor, filter)) {
+                return staleCursor();
+            }
+
+            StreamingResponseBody body = out -> writeEvents(out, filter, warnings, interpretation.source().name(),
+                pageCursor, pageSize(request.getLimit()), projection, query, assumptions);
+            return ResponseEntity.ok()
+                .contentType(TEXT_EVENT_STREAM_UTF8)
+                .header("Cache-Control", "no-cache")
+                .header("X-Accel-Buffering", "no")
+                .body(body);
+        } catch (Exception e) {
+            return errorResponse(e);
+        }
+    }
+
+    // Events in order: filters, rows (chunked), page, followup-token (repeated), followup
+    private void writeEvents(OutputStream out, OrderFilter filter, List<String> warnings, String interpreter,
+                             OrderCursor cursor, int pageSize, Set<OrderField> fields, String query,
+                             List<String> assumptions) throws IOException {
+        ObjectWriter rowWriter = objectMapper.writer(fieldFilter(fields));
+        Map<String, Object> interpreted = new LinkedHashMap<>();
+        interpreted.put("filters", filter);
+        interpreted.put("warnings", warnings);
+        interpreted.put("interpreter", interpreter);
+        writeEvent(out, "filters", interpreted);
+
+        try (ConcurrentStages stages = new ConcurrentStages()) {
+            // The count and the follow-up generation run while rows are written; tokens that arrive before
+            // the page event are queued and sent right after it
+            Future<OrderAggregate> aggregateStage = filter.getAggregate() != null
+                ? stages.fork(() -> orderSearchService.aggregate(filter))
+                : null;
+            // Later pages are not counted again, like the JSON response
+            Future<Long> countStage = aggregateStage != null || cursor == null
+                ? stages.fork(() -> aggregateStage != null
+                    ? stages.join(aggregateStage).totalCount()
+                    : orderSearchService.count(filter))
+                : null;
+            BlockingQueue<Object> tokens = new LinkedBlockingQueue<>();
+            Future<String> followUpStage = null;
+            if (cursor == null) {
+                followUpStage = stages.fork(() -> {
+                    try {
+                        long totalCount = stages.join(countStage);
+                        String suggestion = nameSuggester.followUp(filter, resultCount(totalCount), assumptions);
+                        if (suggestion != null) {
+                            countFollowUp("local");
+                            tokens.add(suggestion);
+                            return suggestion;
+                        }
+                        String followUp = bedrockNlService.streamFollowUp(query, filter, resultCount(totalCount),
+                            assumptions, tokens::add);
+                        countFollowUp(followUp != null ? "model" : "none");
+                        return followUp;
+                    } finally {
+                        tokens.add(END_OF_TOKENS);
+                    }
+                });
+            }
+
+            // An aggregate search sends no rows events, its groups go into the page event
+            List<OrderRow> chunk = new ArrayList<>(SSE_ROWS_PER_EVENT);
+            int[] rowCount = new int[1];
+            OrderCursor nextCursor = null;
+            if (aggregateStage == null) {
+                nextCursor = orderSearchService.stream(filter, cursor,
+                    Math.max(1, Math.min(pageSize, OrderSearchService.MAX_PAGE_SIZE)), fields, order -> {
+                        chunk.add(order);
+                        rowCount[0]++;
+                        if (chunk.size() == SSE_ROWS_PER_EVENT) {
+                            writeRows(out, rowWriter, chunk);
+                        }
+                    });
+            }
+            if (!chunk.isEmpty()) {
+                writeRows(out, rowWriter, chunk);
+            }
+
+            Map<String, Object> page = new LinkedHashMap<>();
+            page.put("rowCount", rowCount[0]);
+            page.put("totalCount", countStage != null ? stages.join(countStage) : null);
+            page.put("nextCursor", encodeCursor(nextCursor, filter));
+            if (aggregateStage != null) {
+                page.put("groups", stages.join(aggregateStage).groups());
+            }
+            writeEvent(out, "page", page);
+
+            String followUp = null;
+            if (followUpStage != null) {
+                for (Object token = takeToken(tokens); token != END_OF_TOKENS; token = takeToken(tokens)) {
+                    writeEvent(out, "followup-token", Map.of("text", token));
+                }
+                followUp = stages.join(followUpStage);
+            }
+            // The final text is cleaned of reasoning and quotes, clients replace the streamed tokens with it
+            Map<String, Object> done = new LinkedHashMap<>();
+            done.put("followUp", followUp);
+            writeEvent(out, "followup", done);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            System.err.println("Error streaming search events: " + e);
+            countStreamFailure("sse");
+            writeEvent(out, "error", Map.of("message", "An error occurred while streaming results. Please try again."));
+        }
+    }
+
+    private Object takeToken(BlockingQueue<Object> tokens) {
+        try {
+            return tokens.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while streaming the follow-up", e);
+        }
+    }
+
+    private void writeRows(OutputStream out, ObjectWriter rowWriter, List<OrderRow> chunk) {
+        try {
+            writeEvent(out, "rows", rowWriter.writeValueAsBytes(chunk));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+    }
+
+    private void writeEvent(OutputStream out, String event, Object data) throws IOException {
+        writeEvent(out, event, objectMapper.writeValueAsBytes(data));
+    }
+
+    private void writeEvent(OutputStream out, String event, byte[] json) throws IOException {
+        // Jackson never emits raw newlines, so the payload always fits in a single data: line
+        out.write(("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+        out.write(json);
+        out.write("\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void writeNdjson(OutputStream out, OrderFilter filter, List<String> warnings, String interpreter,
+                             OrderCursor cursor, Integer limit, Set<OrderField> fields, String query,
+                             List<String> assumptions) throws IOException {
+        ObjectWriter rowWriter = objectMapper.writer(fieldFilter(fields));
+        JsonGenerator generator = objectMapper.createGenerator(out);
+        generator.setRootValueSeparator(null);
+
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("filters", filter);
+        header.put("warnings", warnings);
+        header.put("interpreter", interpreter);
+        writeLine(generator, header);
+        generator.flush();
+
+        int[] rowCount = new int[1];
+        try (ConcurrentStages stages = new ConcurrentStages()) {
+            // An aggregate search writes no row lines, its groups and total go into the trailer
+            OrderAggregate aggregate = filter.getAggregate() != null ? orderSearchService.aggregate(filter) : null;
+
+            // The follow-up is generated from the total count while the rows are being written
+            Future<String> followUpStage = null;
+            if (query != null && cursor == null) {
+                followUpStage = stages.fork(() -> generateFollowUp(query, filter,
+                    aggregate != null ? aggregate.totalCount() : orderSearchService.count(filter), assumptions));
+            }
+
+            OrderCursor nextCursor = null;
+            if (aggregate == null) {
+                nextCursor = orderSearchService.stream(filter, cursor,
+                    limit != null ? Math.max(1, limit) : null, fields, order -> {
+                        try {
+                            rowWriter.writeValue(generator, order);
+                            generator.writeRaw('\n');
+                            rowCount[0]++;
+                            if (rowCount[0] == 1 || rowCount[0] % NDJSON_FLUSH_INTERVAL == 0) {
+                                generator.flush();
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+            }
+
+            String followUp = followUpStage != null ? stages.join(followUpStage) : null;
+
+            Map<String, Object> trailer = new LinkedHashMap<>();
+            trailer.put("rowCount", rowCount[0]);
+            trailer.put("nextCursor", encodeCursor(nextCursor, filter));
+            trailer.put("followUp", followUp);
+            if (aggregate != null) {
+                trailer.put("totalCount", aggregate.totalCount());
+                trailer.put("groups", aggregate.groups());
+            }
+            writeLine(generator, trailer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            System.err.println("Error streaming orders: " + e);
+            countStreamFailure("ndjson");
+            writeLine(generator, Map.of("message", "An error occurred while streaming results. Please try again."));
+        }
+        generator.close();
+    }
+
+    // Bulk encodings stream rows straight from the JDBC cursor like NDJSON; counts and breakdowns have no rows.
+    // defaultLimit is the page size of the endpoint when no limit is given, null for the streaming ones.
+    private ResponseEntity<?> encodedResponse(ResultEncoding encoding, OrderFilter filter, List<String> warnings,
+                                              String interpreter, OrderCursor cursor, Integer limit,
+                                              Integer defaultLimit, Set<OrderField> fields, String query,
+                                              List<String> assumptions) {
+        if (filter.getAggregate() != null) {
+            return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("message", "Counts and breakdowns are only available as JSON."));
+        }
+        // An Arrow stream ends with its last batch, so there is nowhere to send a next cursor: it always
+        // carries the whole result, and asking for a page of it is an error rather than a silent truncation
+        if (encoding == ResultEncoding.ARROW_STREAM) {
+            if (cursor != null || limit != null) {
+                return ResponseEntity.badRequest()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("message", "Arrow streams return the whole result and cannot be paged. "
+                        + "Leave out limit and cursor, or ask for the columnar encoding."));
+            }
+        } else if (limit == null) {
+            limit = defaultLimit;
+        }
+        Integer rowLimit = limit;
+        StreamingResponseBody body = out -> writeEncoded(out, encoding, filter, warnings, interpreter, cursor,
+            rowLimit, fields, query, assumptions);
+        return ResponseEntity.ok().contentType(encoding.mediaType).body(body);
+    }
+
+    private void writeEncoded(OutputStream out, ResultEncoding encoding, OrderFilter filter, List<String> warnings,
+                              String interpreter, OrderCursor cursor, Integer limit, Set<OrderField> fields,
+                              String query, List<String> assumptions) throws IOException {
+        try (ResultWriter writer = resultWriter(out, encoding, filter, warnings, interpreter, fields);
+             ConcurrentStages stages = new ConcurrentStages()) {
+            // Only the first page of a search is counted, for its follow-up; Arrow streams have no trailer to
+            // put either in
+            Future<Long> countStage = null;
+            Future<String> followUpStage = null;
+            if (query != null && cursor == null && encoding != ResultEncoding.ARROW_STREAM) {
+                Future<Long> firstPageCount = stages.fork(() -> orderSearchService.count(filter));
+                countStage = firstPageCount;
+                followUpStage = stages.fork(() -> generateFollowUp(query, filter, stages.join(firstPageCount),
+                    assumptions));
+            }
+
+            int[] rowCount = new int[1];
+            OrderCursor nextCursor = orderSearchService.stream(filter, cursor,
+                limit != null ? Math.max(1, limit) : null, fields, order -> {
+                    try {
+                        writer.row(order);
+                        rowCount[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+            Map<String, Object> trailer = new LinkedHashMap<>();
+            trailer.put("rowCount", rowCount[0]);
+            trailer.put("nextCursor", encodeCursor(nextCursor, filter));
+            trailer.put("followUp", followUpStage != null ? stages.join(followUpStage) : null);
+            if (countStage != null) {
+                trailer.put("totalCount", stages.join(countStage));
+            }
+            writer.finish(trailer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         } catch (RuntimeException e) {
+            // Binary bodies have no room for an error message; the client sees a truncated response
+            System.err.println("Error streaming " + encoding.mediaType + " orders: " + e);
+            countStreamFailure(encoding.name().toLowerCase());
+            throw new IOException("Streaming orders failed", e);
+        }
+    }
+
+    private ResultWriter resultWriter(OutputStream out, ResultEncoding encoding, OrderFilter filter,
+                                      List<String> warnings, String interpreter, Set<OrderField> fields)
+            throws IOException {
+        Map<String, Object> header = new LinkedHashMap<>();
+        header.put("filters", filter);
+        header.put("warnings", warnings);
+        header.put("interpreter", interpreter);
+        switch (encoding) {
+            case ARROW_STREAM:
+                // Schema metadata is string-valued, so each header entry is carried as its JSON text
+                Map<String, String> metadata = new LinkedHashMap<>();
+                for (Map.Entry<String, Object> entry : header.entrySet()) {
+                    metadata.put(entry.getKey(), objectMapper.writeValueAsString(entry.getValue()));
+                }
+                return new ArrowResultWriter(out, fields, metadata);
+            case MSGPACK:
+                return new ColumnarResultWriter(msgpackMapper.createGenerator(out), fields, header);
+            default:
+                return new ColumnarResultWriter(objectMapper.createGenerator(out), fields, header);
+        }
+    }
+
+    private void writeLine(JsonGenerator generator, Object value) throws IOException {
+        generator.writeObject(value);
+        generator.writeRaw('\n');
+    }
+
+    // Rows carry only the requested fields; everything else in the response is written as usual
+    private Object project(NlSearchResponse response, Set<OrderField> fields) {
+        if (fields.size() == OrderField.ALL.size()) {
+            return response;
+        }
+        MappingJacksonValue projected = new MappingJacksonValue(response);
+        projected.setFilters(fieldFilter(fields));
+        return projected;
+    }
+
+    private FilterProvider fieldFilter(Set<OrderField> fields) {
+        if (fields.size() == OrderField.ALL.size()) {
+            return new SimpleFilterProvider().addFilter(OrderRow.FIELD_FILTER, SimpleBeanPropertyFilter.serializeAll());
+        }
+        Set<String> properties = new HashSet<>();
+        for (OrderField field : fields) {
+            properties.add(field.property);
+        }
+        return new SimpleFilterProvider()
+            .addFilter(OrderRow.FIELD_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(properties));
+    }
+
+    // An empty result caused by an unknown name is answered locally; everything else goes to the model
+    private String generateFollowUp(String query, OrderFilter filter, long totalCount, List<String> assumptions) {
+        String suggestion = nameSuggester.followUp(filter, resultCount(totalCount), assumptions);
+        if (suggestion != null) {
+            countFollowUp("local");
+            return suggestion;
+        }
+        String followUp = bedrockNlService.generateFollowUp(query, filter, resultCount(totalCount), assumptions);
+        countFollowUp(followUp != null ? "model" : "none");
+        return followUp;
+    }
+
+    // Failures after the response has started, which can only be reported inside the body
+    private void countStreamFailure(String format) {
+        Counter.builder("search.stream.failures")
+            .description("Streamed responses cut short by an error after the first byte")
+            .tag("format", format)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    // local: name suggestion, model: text from Bedrock, none: nothing to say or the call failed,
+    // skipped: a later page, which reuses the first page's follow-up
+    private void countFollowUp(String result) {
+        Counter.builder("search.followup")
+            .description("Follow-up messages by where they came from")
+            .tag("result", result)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    private int resultCount(long totalCount) {
+        return (int) Math.min(totalCount, Integer.MAX_VALUE);
+    }
+
+    private OrderCursor decodeCursor(String cursor) {
+        return cursor != null && !cursor.isEmpty() ? OrderCursor.decode(cursor) : null;
+    }
+
+    // Later pages send back the filter the first page resolved with their cursor, so the query is not
+    // interpreted again and a relative date range cannot move between pages
+    private Interpretation interpret(NlSearchRequest request, OrderCursor pageCursor, String query) {
+        if (pageCursor != null && request.getFilters() != null) {
+            return new Interpretation(request.getFilters(), Interpretation.Source.PREVIOUS_PAGE);
+        }
+        return queryInterpreter.interpret(query);
+    }
+
+    // A cursor carries a key of the sanitized filter it was issued for and only continues that filter
+    private String filterKey(OrderFilter filter) {
+        CRC32C crc = new CRC32C();
+        try {
+            crc.update(objectMapper.writeValueAsBytes(filter));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    private String encodeCursor(OrderCursor cursor, OrderFilter filter) {
+        return cursor != null ? cursor.forFilter(filterKey(filter)).encode() : null;
+    }
+
+    private boolean continues(OrderCursor cursor, OrderFilter filter) {
+        return cursor == null || cursor.belongsTo(filterKey(filter));
+    }
+
+    private ResponseEntity<?> staleCursor() {
+        return ResponseEntity.badRequest()
+            .body(Map.of("message", "This page cursor belongs to a different search. Please run the search again."));
+    }
+
+    private ResponseEntity<?> errorResponse(Exception e) {
+        if (e instanceof RuntimeException) {
             String errorMessage = e.getMessage();
             if (errorMessage != null && errorMessage.contains("AWS credentials not configured")) {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -115,15 +801,18 @@ public class NlSearchController {
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("message", "An error occurred while processing your search. Please try again."));
-        } catch (Exception e) {
-            System.err.println("Unexpected error: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                .body(Map.of("message", "An unexpected error occurred. Please try again later."));
         }
+        System.err.println("Unexpected error: " + e.getMessage());
+        e.printStackTrace();
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            .body(Map.of("message", "An unexpected error occurred. Please try again later."));
+    }
+    
+    private int pageSize(Integer limit) {
+        return limit != null ? limit : OrderSearchService.DEFAULT_PAGE_SIZE;
     }
     
-    private List<String> validateAndSanitizeFilter(OrderFilter filter, List<String> warnings, String originalQuery) {
+    static List<String> validateAndSanitizeFilter(OrderFilter filter, List<String> warnings, String originalQuery) {
         List<String> assumptions = new ArrayList<>();
         String queryLower = originalQuery.toLowerCase();
         if (queryLower.contains("shipped") && filter.getExcludeStatus() != null) {
@@ -224,6 +913,18 @@ public class NlSearchController {
             });
         }
         
+        if (filter.getAggregate() != null) {
+            String aggregate = filter.getAggregate().trim().toUpperCase();
+            if (VALID_AGGREGATES.contains(aggregate)) {
+                filter.setAggregate(aggregate);
+            } else {
+                if (!aggregate.isEmpty()) {
+                    warnings.add("Unknown aggregate '" + filter.getAggregate() + "' was ignored, listing orders instead. Valid aggregates: " + VALID_AGGREGATES);
+                }
+                filter.setAggregate(null);
+            }
+        }
+        
         if (filter.getDateField() != null && !VALID_DATE_FIELDS.contains(filter.getDateField().toUpperCase())) {
             warnings.add("Unknown date field '" + filter.getDateField() + "'. Using CREATED as default.");
             filter.setDateField("CREATED");
@@ -252,6 +953,10 @@ public class NlSearchController {
 
     public static class NlSearchRequest {
         private String query;
+        private String cursor;
+        private Integer limit;
+        private List<String> fields;
+        private OrderFilter filters;
 
         public String getQuery() {
             return query;
@@ -260,5 +965,37 @@ public class NlSearchController {
         public void setQuery(String query) {
             this.query = query;
         }
+
+        public String getCursor() {
+            return cursor;
+        }
+
+        public void setCursor(String cursor) {
+            this.cursor = cursor;
+        }
+
+        public Integer getLimit() {
+            return limit;
+        }
+
+        public void setLimit(Integer limit) {
+            this.limit = limit;
+        }
+
+        public List<String> getFields() {
+            return fields;
+        }
+
+        public void setFields(List<String> fields) {
+            this.fields = fields;
+        }
+
+        public OrderFilter getFilters() {
+            return filters;
+        }
+
+        public void setFilters(OrderFilter filters) {
+            this.filters = filters;
+        }
     }
 }
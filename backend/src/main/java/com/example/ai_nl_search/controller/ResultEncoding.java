@@ -0,0 +1,50 @@
+package com.example.ai_nl_search.controller;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+// Bulk result encodings a client can ask for in Accept. Only an explicit media type selects one;
+// wildcards keep the JSON or NDJSON default.
+enum ResultEncoding {
+
+    COLUMNAR_JSON(MediaType.parseMediaType("application/vnd.nlsearch.columnar+json")),
+    MSGPACK(MediaType.parseMediaType("application/vnd.msgpack"),
+        MediaType.parseMediaType("application/msgpack"), MediaType.parseMediaType("application/x-msgpack")),
+    ARROW_STREAM(MediaType.parseMediaType("application/vnd.apache.arrow.stream"));
+
+    final MediaType mediaType;
+    private final MediaType[] accepted;
+
+    ResultEncoding(MediaType... accepted) {
+        this.mediaType = accepted[0];
+        this.accepted = accepted;
+    }
+
+    // The encoding of the first accepted type (in header order) that names one, or null
+    static ResultEncoding negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return null;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        for (MediaType requested : mediaTypes) {
+            if (requested.isWildcardType() || requested.isWildcardSubtype() || requested.getQualityValue() == 0) {
+                continue;
+            }
+            for (ResultEncoding encoding : values()) {
+                for (MediaType mediaType : encoding.accepted) {
+                    if (mediaType.equalsTypeAndSubtype(requested)) {
+                        return encoding;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.ai_nl_search.controller;
+
+import com.example.ai_nl_search.dto.OrderRow;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Writes one search result in a bulk encoding: rows as they are read, then the page trailer
+interface ResultWriter extends AutoCloseable {
+
+    void row(OrderRow row) throws IOException;
+
+    // rowCount, nextCursor, followUp; encodings without a trailer drop it
+    void finish(Map<String, Object> trailer) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,35 @@
+package com.example.ai_nl_search.controller;
+
+import com.example.ai_nl_search.service.SlowSearchLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// /actuator/slowsearches rather than an /api route: it is only served over HTTP once added to
+// management.endpoints.web.exposure.include, and then on management.server.port when that is set
+@Component
+@Endpoint(id = "slowsearches")
+public class SlowSearchesEndpoint {
+
+    private final SlowSearchLog slowSearchLog;
+
+    @Autowired
+    public SlowSearchesEndpoint(SlowSearchLog slowSearchLog) {
+        this.slowSearchLog = slowSearchLog;
+    }
+
+    // Newest first, each with its SQL, bind values, EXPLAIN rows and the NL query that produced it
+    @ReadOperation
+    public List<SlowSearchLog.SlowSearch> slowSearches() {
+        return slowSearchLog.recent();
+    }
+
+    @DeleteOperation
+    public void clearSlowSearches() {
+        slowSearchLog.clear();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.ai_nl_search.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Wall time of each pipeline stage of one request, for the Server-Timing response header and the
+// search.stage timers. Stages that run alongside each other overlap, so their durations do not add up to total.
+final class StageTimings {
+
+    static final String HEADER = "Server-Timing";
+
+    private final MeterRegistry meterRegistry;
+    private final long started = System.nanoTime();
+    private final Map<String, Long> nanos = new ConcurrentHashMap<>();
+    private volatile String interpreter;
+
+    StageTimings(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    <T> T time(String stage, Callable<T> work) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return work.call();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            nanos.put(stage, elapsed);
+            Timer.builder("search.stage")
+                .description("NL search pipeline stages, as reported in Server-Timing")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void interpreter(String source) {
+        this.interpreter = source;
+    }
+
+    // interpret;desc="RULES";dur=0.4, sql;dur=12.1, count;dur=9.8, followup;dur=803.2, total;dur=816.0
+    String header() {
+        StringBuilder header = new StringBuilder();
+        for (String stage : new String[] {"interpret", "sql", "count", "aggregate", "followup"}) {
+            Long stageNanos = nanos.get(stage);
+            if (stageNanos == null) {
+                continue;
+            }
+            header.append(stage);
+            if (stage.equals("interpret") && interpreter != null) {
+                header.append(";desc=\"").append(interpreter).append('"');
+            }
+            header.append(";dur=").append(millis(stageNanos)).append(", ");
+        }
+        return header.append("total;dur=").append(millis(System.nanoTime() - started)).toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+}
@@ -1,14 +1,17 @@
 package com.example.ai_nl_search.dto;
 
 import java.util.List;
-import java.util.Map;
 
 public class NlSearchResponse {
 
     private OrderFilter filters;
-    private List<Map<String, Object>> results;
+    private List<OrderRow> results;
     private List<String> warnings;
     private String followUp;
+    private String nextCursor;
+    private String interpreter;
+    private Long totalCount;
+    private List<OrderGroup> groups;
 
     public OrderFilter getFilters() {
         return filters;
@@ -18,11 +21,11 @@ public class NlSearchResponse {
         this.filters = filters;
     }
 
-    public List<Map<String, Object>> getResults() {
+    public List<OrderRow> getResults() {
         return results;
     }
 
-    public void setResults(List<Map<String, Object>> results) {
+    public void setResults(List<OrderRow> results) {
         this.results = results;
     }
 
@@ -41,4 +44,36 @@ public class NlSearchResponse {
     public void setFollowUp(String followUp) {
         this.followUp = followUp;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getInterpreter() {
+        return interpreter;
+    }
+
+    public void setInterpreter(String interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    public Long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(Long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public List<OrderGroup> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(List<OrderGroup> groups) {
+        this.groups = groups;
+    }
 }
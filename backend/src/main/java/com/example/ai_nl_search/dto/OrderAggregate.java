@@ -0,0 +1,7 @@
+package com.example.ai_nl_search.dto;
+
+import java.util.List;
+
+// groups is null for a COUNT aggregate
+public record OrderAggregate(List<OrderGroup> groups, long totalCount) {
+}
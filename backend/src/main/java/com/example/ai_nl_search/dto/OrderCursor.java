@@ -0,0 +1,62 @@
+package com.example.ai_nl_search.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Objects;
+
+// Keyset position of the last row of a page. Cursors handed to clients also carry a key of the filter
+// they were issued for, so a cursor is never continued on a different filter.
+public class OrderCursor {
+
+    private final long timeCreated;
+    private final long id;
+    private final String filterKey;
+
+    public OrderCursor(long timeCreated, long id) {
+        this(timeCreated, id, null);
+    }
+
+    private OrderCursor(long timeCreated, long id, String filterKey) {
+        this.timeCreated = timeCreated;
+        this.id = id;
+        this.filterKey = filterKey;
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", -1);
+            if (parts.length != 3 || parts[2].isEmpty()) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            return new OrderCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    public OrderCursor forFilter(String filterKey) {
+        return new OrderCursor(timeCreated, id, filterKey);
+    }
+
+    public boolean belongsTo(String filterKey) {
+        return Objects.equals(this.filterKey, filterKey);
+    }
+
+    public String encode() {
+        if (filterKey == null) {
+            throw new IllegalStateException("Cursor is not bound to a filter");
+        }
+        String raw = timeCreated + ":" + id + ":" + filterKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Timestamp getTimeCreated() {
+        return new Timestamp(timeCreated);
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.ai_nl_search.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
 import java.util.List;
 
 public class OrderFilter {
@@ -64,6 +66,13 @@ public class OrderFilter {
     
     @JsonProperty("exclude_flags")
     private List<String> excludeFlags;
+    
+    @JsonProperty("aggregate")
+    private String aggregate;
+
+    // The NL query the filter was interpreted from, for the slow-search log; never read from or written to JSON
+    @JsonIgnore
+    private String sourceQuery;
 
     public String getLocationName() {
         return locationName;
@@ -217,6 +226,14 @@ public class OrderFilter {
         this.excludeFlags = excludeFlags;
     }
     
+    public String getAggregate() {
+        return aggregate;
+    }
+    
+    public void setAggregate(String aggregate) {
+        this.aggregate = aggregate;
+    }
+    
     public String getDateField() {
         return dateField;
     }
@@ -224,4 +241,43 @@ public class OrderFilter {
     public void setDateField(String dateField) {
         this.dateField = dateField;
     }
+
+    public String getSourceQuery() {
+        return sourceQuery;
+    }
+
+    public void setSourceQuery(String sourceQuery) {
+        this.sourceQuery = sourceQuery;
+    }
+
+    public OrderFilter copy() {
+        OrderFilter copy = new OrderFilter();
+        copy.locationName = locationName;
+        copy.locationType = locationType;
+        copy.dateFrom = dateFrom;
+        copy.dateTo = dateTo;
+        copy.dateField = dateField;
+        copy.excludeStatus = copyOf(excludeStatus);
+        copy.collectedBy = copyOf(collectedBy);
+        copy.service = copyOf(service);
+        copy.city = city;
+        copy.companyName = companyName;
+        copy.carrierName = carrierName;
+        copy.excludeLocationName = excludeLocationName;
+        copy.excludeLocationType = copyOf(excludeLocationType);
+        copy.excludeCity = excludeCity;
+        copy.excludeCompanyName = excludeCompanyName;
+        copy.excludeCarrierName = excludeCarrierName;
+        copy.excludeService = copyOf(excludeService);
+        copy.excludeCollectedBy = copyOf(excludeCollectedBy);
+        copy.flags = copyOf(flags);
+        copy.excludeFlags = copyOf(excludeFlags);
+        copy.aggregate = aggregate;
+        copy.sourceQuery = sourceQuery;
+        return copy;
+    }
+
+    private static List<String> copyOf(List<String> values) {
+        return values != null ? new ArrayList<>(values) : null;
+    }
 }
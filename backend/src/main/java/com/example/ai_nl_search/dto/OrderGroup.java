@@ -0,0 +1,6 @@
+package com.example.ai_nl_search.dto;
+
+// One row of an aggregate search: the grouped value (a date for DAY and WEEK, null for orders without one)
+// and how many matching orders have it
+public record OrderGroup(String key, long count) {
+}
@@ -0,0 +1,22 @@
+package com.example.ai_nl_search.dto;
+
+import java.util.List;
+
+public class OrderPage {
+
+    private final List<OrderRow> results;
+    private final OrderCursor nextCursor;
+
+    public OrderPage(List<OrderRow> results, OrderCursor nextCursor) {
+        this.results = results;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<OrderRow> getResults() {
+        return results;
+    }
+
+    public OrderCursor getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.ai_nl_search.dto;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+
+import java.sql.Timestamp;
+
+// Written through FIELD_FILTER, which a search narrows to the fields it asked for
+@JsonFilter(OrderRow.FIELD_FILTER)
+public record OrderRow(
+    long id,
+    String trackingNo,
+    String orderNo,
+    String service,
+    String status,
+    String collectedByType,
+    String recipientPhone,
+    Integer compartmentNo,
+    Timestamp timeCreated,
+    Timestamp timeStored,
+    Timestamp timeCollected,
+    Timestamp expiresAt,
+    String flags,
+    String locationName,
+    String locationType,
+    String city,
+    String companyName,
+    String carrierName
+) {
+
+    public static final String FIELD_FILTER = "orderFields";
+}
@@ -0,0 +1,69 @@
+package com.example.ai_nl_search.service;
+
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponseHandler;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+@Component
+@Profile("!bedrock-stub")
+public class BedrockModelInvoker implements ModelInvoker {
+
+    private final BedrockRuntimeClient client;
+    private final BedrockRuntimeAsyncClient asyncClient;
+
+    public BedrockModelInvoker() {
+        this.client = BedrockRuntimeClient.builder()
+                .region(Region.EU_CENTRAL_1)
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .build();
+        // InvokeModelWithResponseStream is only offered on the async client
+        this.asyncClient = BedrockRuntimeAsyncClient.builder()
+                .region(Region.EU_CENTRAL_1)
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .build();
+    }
+
+    @Override
+    public String invoke(String modelId, byte[] requestBody) {
+        InvokeModelRequest request = InvokeModelRequest.builder()
+                .modelId(modelId)
+                .contentType("application/json")
+                .accept("application/json")
+                .body(SdkBytes.fromByteArrayUnsafe(requestBody))
+                .build();
+
+        return client.invokeModel(request).body().asUtf8String();
+    }
+
+    @Override
+    public void invokeStream(String modelId, byte[] requestBody, Consumer<String> chunkConsumer) {
+        InvokeModelWithResponseStreamRequest request = InvokeModelWithResponseStreamRequest.builder()
+                .modelId(modelId)
+                .contentType("application/json")
+                .accept("application/json")
+                .body(SdkBytes.fromByteArrayUnsafe(requestBody))
+                .build();
+
+        InvokeModelWithResponseStreamResponseHandler handler = InvokeModelWithResponseStreamResponseHandler.builder()
+                .subscriber(InvokeModelWithResponseStreamResponseHandler.Visitor.builder()
+                        .onChunk(chunk -> chunkConsumer.accept(chunk.bytes().asUtf8String()))
+                        .build())
+                .build();
+
+        try {
+            asyncClient.invokeModelWithResponseStream(request, handler).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+}
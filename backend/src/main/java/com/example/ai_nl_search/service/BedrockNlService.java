@@ -1,90 +1,39 @@
 package com.example.ai_nl_search.service;
 
 import com.example.ai_nl_search.dto.OrderFilter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
-import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
-import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
-import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Service
 public class BedrockNlService {
 
     private static final String MODEL_ID = "openai.gpt-oss-20b-1:0";
-    private static final Pattern JSON_PATTERN = Pattern.compile("\\{[^{}]*(?:\\{[^{}]*\\}[^{}]*)*\\}", Pattern.DOTALL);
 
-    private final BedrockRuntimeClient client;
-    private final ObjectMapper objectMapper;
-
-    public BedrockNlService() {
-        this.client = BedrockRuntimeClient.builder()
-                .region(Region.EU_CENTRAL_1)
-                .credentialsProvider(DefaultCredentialsProvider.create())
-                .build();
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-    }
-
-    public OrderFilter interpret(String naturalLanguageQuery) {
-        try {
-            String requestBody = buildFilterRequest(naturalLanguageQuery);
-
-            InvokeModelRequest request = InvokeModelRequest.builder()
-                    .modelId(MODEL_ID)
-                    .contentType("application/json")
-                    .accept("application/json")
-                    .body(SdkBytes.fromUtf8String(requestBody))
-                    .build();
-
-            InvokeModelResponse response = client.invokeModel(request);
-
-            String responseJson = response.body().asUtf8String();
-
-            String textResponse = extractTextResponse(responseJson);
-            
-            OrderFilter filter = extractJsonFromText(textResponse);
-            
-            return filter;
-
-        } catch (Exception e) {
-            String errorMsg = e.getMessage();
-            if (errorMsg != null && (errorMsg.contains("Unable to load credentials") || 
-                                    errorMsg.contains("No credentials") ||
-                                    errorMsg.contains("credentials"))) {
-                throw new RuntimeException("AWS credentials not configured. Please set AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY environment variables.", e);
-            }
-            System.err.println("Error interpreting query: " + naturalLanguageQuery);
-            System.err.println("Error message: " + e.getMessage());
-            if (e.getCause() != null) {
-                System.err.println("Cause: " + e.getCause().getMessage());
-                e.getCause().printStackTrace();
-            } else {
-                e.printStackTrace();
-            }
-            throw new RuntimeException("Failed to interpret natural language query: " + e.getMessage(), e);
-        }
-    }
+    private static final String NO_ASSUMPTION = "NO_ASSUMPTION_MADE";
 
-    private String buildFilterRequest(String userQuery) {
-      LocalDate today = LocalDate.now();
-      String currentDate = today.format(DateTimeFormatter.ISO_LOCAL_DATE);
-      LocalDate lastWeekStart = today.minusDays(7);
-      LocalDate lastWeekEnd = today;
-      String lastWeekStartStr = lastWeekStart.format(DateTimeFormatter.ISO_LOCAL_DATE);
-      String lastWeekEndStr = lastWeekEnd.format(DateTimeFormatter.ISO_LOCAL_DATE);
-      
-      String systemPrompt = """
+    private static final String FILTER_SYSTEM_PROMPT = """
         You are an agent that converts natural language order search queries into structured JSON filters.
         
         CURRENT DATE CONTEXT:
@@ -124,7 +73,8 @@ public class BedrockNlService {
           "exclude_service": array of strings or null (valid: DELIVERY, RETURNS - for exclusion),
           "exclude_collected_by": array of strings or null (valid: COURIER, CUSTOMER, OPERATOR - for exclusion),
           "flags": array of strings or null (valid: FRAGILE, VIP, EXPIRED - for inclusion),
-          "exclude_flags": array of strings or null (valid: FRAGILE, VIP, EXPIRED - for exclusion)
+          "exclude_flags": array of strings or null (valid: FRAGILE, VIP, EXPIRED - for exclusion),
+          "aggregate": string or null (COUNT for the total only; STATUS, SERVICE, LOCATION, COMPANY, CARRIER, CITY, DAY, WEEK to count per value; null to list orders)
         }
         
         INTERPRETATION RULES:
@@ -173,6 +123,9 @@ public class BedrockNlService {
         - Date examples: "from Jan 1 to today" → date_from: "2026-01-01", date_to: current date, "last 7 days" → date_from: 7 days before current date, date_to: current date
         - Mention of flags ("fragile", "vip", "expired") → flags (for inclusion, use uppercase: FRAGILE, VIP, EXPIRED)
         - "excluding [flag]" / "not [flag]" / "exclude [flag]" → exclude_flags (use uppercase: FRAGILE, VIP, EXPIRED)
+        - "how many" / "number of" / "count" → aggregate: "COUNT"
+        - "per [status/service/location/company/carrier/city/day/week]" / "by [...]" / "breakdown by [...]" → aggregate: that value in uppercase (e.g. "per location" → "LOCATION"); DAY and WEEK use the date_field
+        - Questions that ask for orders themselves ("show", "list", "find") → aggregate: null
         - Only include fields that can be explicitly inferred; use null for all unspecified fields
         - Inclusion and exclusion can be combined (e.g., "delivery orders excluding demo company" → service: ["DELIVERY"], exclude_company_name: "Demo Company")
         - Multiple filter types can be combined with AND logic:
@@ -232,6 +185,12 @@ public class BedrockNlService {
           {"exclude_status":["CREATED","COURIER_STORED","CUSTOMER_STORED","EXPIRED"],"location_name":null,"location_type":null,"date_from":null,"date_to":null,"date_field":null,"collected_by":null,"service":null,"city":null,"company_name":null,"carrier_name":null,"exclude_location_name":null,"exclude_location_type":null,"exclude_city":null,"exclude_company_name":null,"exclude_carrier_name":null,"exclude_service":null,"exclude_collected_by":null,"flags":null,"exclude_flags":null}
           Note: This includes orders with status DELIVERED OR OPERATOR_COLLECTED, excluding EXPIRED and all other statuses
         
+        - "How many VIP orders per carrier" →
+          {"exclude_status":null,"location_name":null,"location_type":null,"date_from":null,"date_to":null,"date_field":null,"collected_by":null,"service":null,"city":null,"company_name":null,"carrier_name":null,"exclude_location_name":null,"exclude_location_type":null,"exclude_city":null,"exclude_company_name":null,"exclude_carrier_name":null,"exclude_service":null,"exclude_collected_by":null,"flags":["VIP"],"exclude_flags":null,"aggregate":"CARRIER"}
+        
+        - "Number of returns at Location A" →
+          {"exclude_status":null,"location_name":"Location A","location_type":null,"date_from":null,"date_to":null,"date_field":null,"collected_by":null,"service":["RETURNS"],"city":null,"company_name":null,"carrier_name":null,"exclude_location_name":null,"exclude_location_type":null,"exclude_city":null,"exclude_company_name":null,"exclude_carrier_name":null,"exclude_service":null,"exclude_collected_by":null,"flags":null,"exclude_flags":null,"aggregate":"COUNT"}
+        
         INSTRUCTIONS:
         - Respond ONLY with a valid JSON object following this schema.
         - Do NOT include explanations, reasoning, or text outside the JSON.
@@ -250,184 +209,8 @@ public class BedrockNlService {
         Example of INCORRECT output (DO NOT DO THIS):
         <reasoning>We need to exclude expired orders...</reasoning>{"exclude_status":["EXPIRED"],...}
         """;
-        
-        String formattedSystemPrompt = String.format(systemPrompt, 
-            currentDate,  
-            lastWeekStartStr,
-            lastWeekEndStr,
-            currentDate,
-            lastWeekStartStr,
-            lastWeekEndStr,
-            lastWeekStartStr,
-            lastWeekEndStr        
-        );
-        
-        return """
-        {
-          "max_tokens": 2046,
-          "temperature": 0,
-          "messages": [
-            {
-              "role": "system",
-              "content": [
-                {
-                  "type": "text",
-                  "text": "%s"
-                }
-              ]
-            },
-            {
-              "role": "user",
-              "content": [
-                {
-                  "type": "text",
-                  "text": "%s"
-                }
-              ]
-            }
-          ]
-        }
-        """.formatted(
-            formattedSystemPrompt.replace("\"", "\\\"").replace("\n", "\\n"),
-            userQuery.replace("\"", "\\\"").replace("\n", "\\n")
-        );
-    }
-
-    private String extractTextResponse(String responseJson) throws Exception {
-        JsonNode root = objectMapper.readTree(responseJson);
-        JsonNode choices = root.path("choices");
-        if (choices.isArray() && choices.size() > 0) {
-            JsonNode firstChoice = choices.get(0);
-            JsonNode message = firstChoice.path("message");
-            
-            JsonNode content = message.path("content");
-            if (content.isTextual()) {
-                return content.asText();
-            }
-            
-            if (content.isArray() && content.size() > 0) {
-                JsonNode textContent = content.get(0);
-                JsonNode text = textContent.path("text");
-                if (!text.isMissingNode()) {
-                    return text.asText();
-                }
-            }
-        }
-
-        throw new IllegalStateException("Failed to extract text response from Bedrock response");
-    }
 
-    private OrderFilter extractJsonFromText(String textResponse) throws Exception {
-        try {
-            JsonNode jsonNode = objectMapper.readTree(textResponse);
-            return objectMapper.treeToValue(jsonNode, OrderFilter.class);
-        } catch (Exception e) {
-            Matcher matcher = JSON_PATTERN.matcher(textResponse);
-            if (matcher.find()) {
-                String jsonStr = matcher.group(0);
-                JsonNode jsonNode = objectMapper.readTree(jsonStr);
-                return objectMapper.treeToValue(jsonNode, OrderFilter.class);
-            }
-            
-            Pattern codeBlockPattern = Pattern.compile("```(?:json)?\\s*(\\{.*?\\})\\s*```", Pattern.DOTALL);
-            Matcher codeBlockMatcher = codeBlockPattern.matcher(textResponse);
-            if (codeBlockMatcher.find()) {
-                String jsonStr = codeBlockMatcher.group(1);
-                JsonNode jsonNode = objectMapper.readTree(jsonStr);
-                return objectMapper.treeToValue(jsonNode, OrderFilter.class);
-            }
-            
-            throw new IllegalStateException("Could not extract JSON from response: " + textResponse);
-        }
-    }
-    
-    private String cleanFollowUpResponse(String textResponse) {
-        if (textResponse == null || textResponse.trim().isEmpty()) {
-            return null;
-        }
-        
-        textResponse = textResponse.replaceAll("(?i)(?s)<reasoning>.*?</reasoning>", "");
-        textResponse = textResponse.replaceAll("(?i)(?s)<thinking>.*?</thinking>", "");
-        textResponse = textResponse.replaceAll("(?i)(?s)<analysis>.*?</analysis>", "");
-        textResponse = textResponse.replaceAll("(?s)<[^>]+>", "");
-        textResponse = textResponse.replaceAll("(?s)```[\\s\\S]*?```", "");
-        
-        String[] lines = textResponse.split("\n");
-        StringBuilder cleaned = new StringBuilder();
-        for (String line : lines) {
-            line = line.trim();
-            if (line.isEmpty()) {
-                continue;
-            }
-            String lowerLine = line.toLowerCase();
-            if (lowerLine.startsWith("we have") ||
-                lowerLine.startsWith("applied filter") ||
-                lowerLine.startsWith("result count") ||
-                lowerLine.startsWith("assumptions made") ||
-                lowerLine.startsWith("so we") ||
-                lowerLine.startsWith("according to") ||
-                lowerLine.startsWith("the format") ||
-                lowerLine.startsWith("use the") ||
-                lowerLine.startsWith("that matches") ||
-                lowerLine.startsWith("so we output") ||
-                lowerLine.startsWith("we need to") ||
-                lowerLine.startsWith("we should") ||
-                lowerLine.contains("behavior") && lowerLine.contains("choose")) {
-                continue;
-            }
-            if (cleaned.length() > 0) {
-                cleaned.append(" ");
-            }
-            cleaned.append(line);
-        }     
-        textResponse = cleaned.toString().trim();
-        
-        if (textResponse.startsWith("\"") && textResponse.endsWith("\"")) {
-            textResponse = textResponse.substring(1, textResponse.length() - 1);
-        }
-        if (textResponse.startsWith("'") && textResponse.endsWith("'")) {
-            textResponse = textResponse.substring(1, textResponse.length() - 1);
-        }
-        
-        textResponse = textResponse.trim();
-        
-        return textResponse.isEmpty() ? null : textResponse;
-    }
-    
-    public String generateFollowUp(String originalQuery, OrderFilter filter, int resultCount, 
-                                   List<String> assumptions) {
-        try {
-            String requestBody = buildFollowUpRequest(originalQuery, filter, resultCount, assumptions);
-            
-            InvokeModelRequest request = InvokeModelRequest.builder()
-                    .modelId(MODEL_ID)
-                    .contentType("application/json")
-                    .accept("application/json")
-                    .body(SdkBytes.fromUtf8String(requestBody))
-                    .build();
-            
-            InvokeModelResponse response = client.invokeModel(request);
-            String responseJson = response.body().asUtf8String();
-            String textResponse = extractTextResponse(responseJson);
-            
-            textResponse = cleanFollowUpResponse(textResponse);
-            
-            if (textResponse == null || textResponse.isEmpty() ||
-                textResponse.toLowerCase().contains("NO_ASSUMPTION_MADE") || 
-                textResponse.toLowerCase().contains("no assumptions")) {
-                return null;
-            }
-            
-            return textResponse;
-            
-        } catch (Exception e) {
-            return null;
-        }
-    }
-    
-    private String buildFollowUpRequest(String originalQuery, OrderFilter filter, int resultCount,
-                                       List<String> assumptions) {
-        String systemPrompt = """
+    static final String FOLLOW_UP_SYSTEM_PROMPT = """
             You are a helpful assistant that generates follow-up messages for order search queries.
             
             You must generate ONE of these 4 specific behaviors (choose the most appropriate):
@@ -501,7 +284,248 @@ public class BedrockNlService {
             <reasoning>We have a query... So we output that.</reasoning>No orders found for 'Location B'. Did you mean Location A or alfred24 Office Locker?
             
             """;
+
+    // SerializedString keeps the escaped UTF-8 bytes after the first write
+    private static final SerializedString FOLLOW_UP_PROMPT = new SerializedString(FOLLOW_UP_SYSTEM_PROMPT);
+
+    // Field names, roles and numbers around the two message texts, plus some room for escapes
+    private static final int REQUEST_ENVELOPE_BYTES = 512;
+
+    private final ModelInvoker modelInvoker;
+    private final ObjectMapper objectMapper;
+    private final CallMetrics interpretMetrics;
+    private final CallMetrics followUpMetrics;
+    private volatile DailyPrompt filterPrompt;
+
+    @Autowired
+    public BedrockNlService(ModelInvoker modelInvoker, MeterRegistry meterRegistry) {
+        this.modelInvoker = modelInvoker;
+        // Buffers are recycled through a shared pool; the default thread-local pool does nothing on virtual threads
+        JsonFactory jsonFactory = JsonFactory.builder()
+                .recyclerPool(JsonRecyclerPools.newConcurrentDequePool())
+                .build();
+        this.objectMapper = new ObjectMapper(jsonFactory);
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.interpretMetrics = new CallMetrics("interpret", meterRegistry);
+        this.followUpMetrics = new CallMetrics("followup", meterRegistry);
+    }
+
+    public OrderFilter interpret(String naturalLanguageQuery) {
+        try {
+            byte[] requestBody = buildFilterRequest(naturalLanguageQuery);
+            interpretMetrics.requestBytes.record(requestBody.length);
+
+            String responseJson = interpretMetrics.time(() -> modelInvoker.invoke(MODEL_ID, requestBody));
+
+            String textResponse = extractTextResponse(responseJson, interpretMetrics);
+            
+            OrderFilter filter = extractJsonFromText(textResponse);
+            
+            return filter;
+
+        } catch (Exception e) {
+            String errorMsg = e.getMessage();
+            if (errorMsg != null && (errorMsg.contains("Unable to load credentials") || 
+                                    errorMsg.contains("No credentials") ||
+                                    errorMsg.contains("credentials"))) {
+                throw new RuntimeException("AWS credentials not configured. Please set AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY environment variables.", e);
+            }
+            System.err.println("Error interpreting query: " + naturalLanguageQuery);
+            System.err.println("Error message: " + e.getMessage());
+            if (e.getCause() != null) {
+                System.err.println("Cause: " + e.getCause().getMessage());
+                e.getCause().printStackTrace();
+            } else {
+                e.printStackTrace();
+            }
+            throw new RuntimeException("Failed to interpret natural language query: " + e.getMessage(), e);
+        }
+    }
+
+    byte[] buildFilterRequest(String userQuery) throws IOException {
+        return writeRequest(2046, 0, filterPrompt(), userQuery);
+    }
+
+    // Only the date lines change, so the formatted and JSON-escaped prompt is kept until the day changes
+    private SerializedString filterPrompt() {
+        DailyPrompt prompt = filterPrompt;
+        LocalDate today = LocalDate.now();
+        if (prompt == null || !prompt.date().equals(today)) {
+            String currentDate = today.format(DateTimeFormatter.ISO_LOCAL_DATE);
+            String lastWeekStart = today.minusDays(7).format(DateTimeFormatter.ISO_LOCAL_DATE);
+            String lastWeekEnd = currentDate;
+            String text = String.format(FILTER_SYSTEM_PROMPT,
+                currentDate,
+                lastWeekStart,
+                lastWeekEnd,
+                currentDate,
+                lastWeekStart,
+                lastWeekEnd,
+                lastWeekStart,
+                lastWeekEnd
+            );
+            prompt = new DailyPrompt(today, new SerializedString(text));
+            filterPrompt = prompt;
+        }
+        return prompt.text();
+    }
+
+    private String extractTextResponse(String responseJson, CallMetrics metrics) throws Exception {
+        JsonNode root = objectMapper.readTree(responseJson);
+        JsonNode usage = root.path("usage");
+        metrics.record(usage.path("prompt_tokens"), usage.path("completion_tokens"));
+        JsonNode choices = root.path("choices");
+        if (choices.isArray() && choices.size() > 0) {
+            JsonNode firstChoice = choices.get(0);
+            JsonNode message = firstChoice.path("message");
+            
+            JsonNode content = message.path("content");
+            if (content.isTextual()) {
+                return content.asText();
+            }
+            
+            if (content.isArray() && content.size() > 0) {
+                JsonNode textContent = content.get(0);
+                JsonNode text = textContent.path("text");
+                if (!text.isMissingNode()) {
+                    return text.asText();
+                }
+            }
+        }
+
+        throw new IllegalStateException("Failed to extract text response from Bedrock response");
+    }
+
+    // The first balanced object that reads as a filter, preferring the answer over drafts in the reasoning;
+    // bare JSON, JSON after prose and JSON in a ``` block are all found the same way
+    OrderFilter extractJsonFromText(String textResponse) throws Exception {
+        OrderFilter filter = firstFilter(textResponse, true);
+        if (filter == null) {
+            filter = firstFilter(textResponse, false);
+        }
+        if (filter == null) {
+            throw new IllegalStateException("Could not extract JSON from response: " + textResponse);
+        }
+        return filter;
+    }
+
+    private OrderFilter firstFilter(String text, boolean skipReasoning) {
+        for (int start = ModelTextScanner.nextJsonObject(text, 0, skipReasoning); start >= 0;
+             start = ModelTextScanner.nextJsonObject(text, start + 1, skipReasoning)) {
+            // Jackson reads the object straight out of the text and stops at its closing brace
+            StringReader reader = new StringReader(text);
+            try (JsonParser parser = objectMapper.getFactory().createParser(reader)) {
+                reader.skip(start);
+                return objectMapper.readValue(parser, OrderFilter.class);
+            } catch (IOException e) {
+                // Prose in braces, or an object that is not a filter; try the next one
+            }
+        }
+        return null;
+    }
+
+    String cleanFollowUpResponse(String textResponse) {
+        return ModelTextScanner.cleanFollowUp(textResponse);
+    }
+
+    public String generateFollowUp(String originalQuery, OrderFilter filter, int resultCount, 
+                                   List<String> assumptions) {
+        try {
+            byte[] requestBody = buildFollowUpRequest(originalQuery, filter, resultCount, assumptions);
+            followUpMetrics.requestBytes.record(requestBody.length);
+            
+            String responseJson = followUpMetrics.time(() -> modelInvoker.invoke(MODEL_ID, requestBody));
+            String textResponse = extractTextResponse(responseJson, followUpMetrics);
+            
+            return finishFollowUp(textResponse);
+            
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Same result as generateFollowUp, but text deltas are handed to tokenConsumer while the model is still writing
+    public String streamFollowUp(String originalQuery, OrderFilter filter, int resultCount,
+                                 List<String> assumptions, Consumer<String> tokenConsumer) {
+        try {
+            byte[] requestBody = buildFollowUpRequest(originalQuery, filter, resultCount, assumptions);
+            followUpMetrics.requestBytes.record(requestBody.length);
+
+            FollowUpTokens tokens = new FollowUpTokens(tokenConsumer);
+            followUpMetrics.time(() -> {
+                modelInvoker.invokeStream(MODEL_ID, requestBody, chunk -> tokens.accept(extractDelta(chunk)));
+                return null;
+            });
+
+            return finishFollowUp(tokens.text.toString());
+
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private String finishFollowUp(String textResponse) {
+        textResponse = cleanFollowUpResponse(textResponse);
+        
+        if (textResponse == null || textResponse.isEmpty() ||
+            textResponse.contains(NO_ASSUMPTION) || 
+            textResponse.toLowerCase().contains("no assumptions")) {
+            return null;
+        }
         
+        return textResponse;
+    }
+
+    private String extractDelta(String chunkJson) {
+        try {
+            JsonNode chunk = objectMapper.readTree(chunkJson);
+            // Bedrock appends the token counts of the whole call to the last chunk
+            JsonNode invocation = chunk.path("amazon-bedrock-invocationMetrics");
+            followUpMetrics.record(invocation.path("inputTokenCount"), invocation.path("outputTokenCount"));
+            JsonNode content = chunk.path("choices").path(0).path("delta").path("content");
+            return content.isTextual() ? content.asText() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Holds tokens back until the text is known not to be NO_ASSUMPTION_MADE or a reasoning block,
+    // which only the cleaned final text can represent correctly
+    private static class FollowUpTokens {
+
+        private final Consumer<String> tokenConsumer;
+        private final StringBuilder text = new StringBuilder();
+        private int forwarded;
+        private boolean suppressed;
+
+        FollowUpTokens(Consumer<String> tokenConsumer) {
+            this.tokenConsumer = tokenConsumer;
+        }
+
+        void accept(String delta) {
+            if (delta == null || delta.isEmpty()) {
+                return;
+            }
+            text.append(delta);
+            if (suppressed) {
+                return;
+            }
+            String start = text.toString().stripLeading();
+            if ((start.length() < NO_ASSUMPTION.length() && NO_ASSUMPTION.startsWith(start))
+                || (start.length() < 3 && "```".startsWith(start))) {
+                return;
+            }
+            if (start.startsWith(NO_ASSUMPTION) || start.startsWith("<") || start.startsWith("```")) {
+                suppressed = true;
+                return;
+            }
+            tokenConsumer.accept(text.substring(forwarded));
+            forwarded = text.length();
+        }
+    }
+    
+    byte[] buildFollowUpRequest(String originalQuery, OrderFilter filter, int resultCount,
+                                List<String> assumptions) throws IOException {
         String filterJson = "";
         try {
             filterJson = objectMapper.writeValueAsString(filter);
@@ -511,38 +535,111 @@ public class BedrockNlService {
         
         String assumptionsText = assumptions.isEmpty() ? "None" : String.join("; ", assumptions);
         
-        String fullPrompt = systemPrompt +
-            "\n\nOriginal query: " + originalQuery +
+        // The instructions stay in the system message, which never changes; the search details go in the user turn
+        String details = "Original query: " + originalQuery +
             "\nApplied filter: " + filterJson +
             "\nResult count: " + resultCount +
             "\nAssumptions made: " + assumptionsText +
             "\n\nGenerate the appropriate follow-up message:";
         
-        return """
-        {
-          "max_tokens": 1024,
-          "temperature": 0.3,
-          "messages": [
-            {
-              "role": "system",
-              "content": [
-                {
-                  "type": "text",
-                  "text": "%s"
-                }
-              ]
-            },
-            {
-              "role": "user",
-              "content": [
-                {
-                  "type": "text",
-                  "text": "Generate the follow-up message."
-                }
-              ]
+        return writeRequest(1024, 0.3, FOLLOW_UP_PROMPT, details);
+    }
+
+    private byte[] writeRequest(int maxTokens, double temperature, SerializedString systemText, String userText)
+            throws IOException {
+        // Sized for the whole body up front, so it is never regrown; the generator's own buffers come from the
+        // factory's recycler pool
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+            systemText.charLength() + userText.length() + REQUEST_ENVELOPE_BYTES);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("max_tokens", maxTokens);
+            generator.writeNumberField("temperature", temperature);
+            generator.writeArrayFieldStart("messages");
+            writeMessage(generator, "system", systemText);
+            writeMessage(generator, "user", new SerializedString(userText));
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeMessage(JsonGenerator generator, String role, SerializedString text) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("role", role);
+        generator.writeArrayFieldStart("content");
+        generator.writeStartObject();
+        generator.writeStringField("type", "text");
+        generator.writeFieldName("text");
+        generator.writeString(text);
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private record DailyPrompt(LocalDate date, SerializedString text) {
+    }
+
+    private static class CallMetrics {
+
+        private final String call;
+        private final MeterRegistry meterRegistry;
+        final DistributionSummary requestBytes;
+        final DistributionSummary inputTokens;
+        final DistributionSummary outputTokens;
+
+        CallMetrics(String call, MeterRegistry meterRegistry) {
+            this.call = call;
+            this.meterRegistry = meterRegistry;
+            this.requestBytes = DistributionSummary.builder("bedrock.request.size")
+                .description("Request body size per Bedrock call")
+                .baseUnit("bytes")
+                .tag("call", call)
+                .register(meterRegistry);
+            this.inputTokens = DistributionSummary.builder("bedrock.tokens")
+                .description("Tokens per Bedrock call, as reported by the model")
+                .baseUnit("tokens")
+                .tag("call", call)
+                .tag("direction", "input")
+                .register(meterRegistry);
+            this.outputTokens = DistributionSummary.builder("bedrock.tokens")
+                .description("Tokens per Bedrock call, as reported by the model")
+                .baseUnit("tokens")
+                .tag("call", call)
+                .tag("direction", "output")
+                .register(meterRegistry);
+        }
+
+        void record(JsonNode input, JsonNode output) {
+            if (input.isNumber()) {
+                inputTokens.record(input.asLong());
+            }
+            if (output.isNumber()) {
+                outputTokens.record(output.asLong());
+            }
+        }
+
+        // Model round trip by HTTP status; failures without a response count as "client_error"
+        <T> T time(Callable<T> invocation) throws Exception {
+            long start = System.nanoTime();
+            String status = "200";
+            try {
+                return invocation.call();
+            } catch (AwsServiceException e) {
+                status = Integer.toString(e.statusCode());
+                throw e;
+            } catch (Exception e) {
+                status = "client_error";
+                throw e;
+            } finally {
+                Timer.builder("bedrock.call")
+                    .description("Bedrock InvokeModel round trips, by HTTP status")
+                    .tag("call", call)
+                    .tag("status", status)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             }
-          ]
         }
-        """.formatted(fullPrompt.replace("\"", "\\\"").replace("\n", "\\n"));
     }
 }
@@ -0,0 +1,54 @@
+package com.example.ai_nl_search.service;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Forks the independent stages of one request onto virtual threads. The first failed join cancels the
+// stages still running before rethrowing the original exception. close() waits for every stage, but first
+// cancels them all when one was never joined, which is how a body that threw or returned early leaves.
+public final class ConcurrentStages implements AutoCloseable {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Future<?>> unjoined = ConcurrentHashMap.newKeySet();
+
+    public <T> Future<T> fork(Callable<T> stage) {
+        Future<T> future = executor.submit(stage);
+        unjoined.add(future);
+        return future;
+    }
+
+    public <T> T join(Future<T> stage) {
+        try {
+            T result = stage.get();
+            unjoined.remove(stage);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new IllegalStateException("Interrupted while waiting for a search stage", e);
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!unjoined.isEmpty()) {
+            executor.shutdownNow();
+        }
+        executor.close();
+    }
+}
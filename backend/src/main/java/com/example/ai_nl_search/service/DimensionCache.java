@@ -0,0 +1,258 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Locations, companies and carriers are tiny next to orders, so name filters are matched here and
+// reach SQL as id lists. Loaded on first use; once stale, the first request to notice reloads it.
+@Component
+public class DimensionCache {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long refreshMillis;
+    private final Counter reloadFailures;
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public DimensionCache(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                          @Value("${search.dimension-cache.refresh:PT1M}") Duration refresh) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.refreshMillis = refresh.toMillis();
+        this.reloadFailures = Counter.builder("search.dimension-cache.reload.failures")
+            .description("Dimension cache reloads that failed and kept the previous copy")
+            .register(meterRegistry);
+    }
+
+    Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() < current.loadedAt + refreshMillis) {
+            return current;
+        }
+        if (current == null) {
+            loadLock.lock();
+        } else if (!loadLock.tryLock()) {
+            // Someone else is reloading, the previous copy is good enough meanwhile
+            return current;
+        }
+        try {
+            if (snapshot == current) {
+                try {
+                    snapshot = load();
+                } catch (RuntimeException e) {
+                    if (current == null) {
+                        throw e;
+                    }
+                    // The previous copy stays in use until a later reload succeeds
+                    System.err.println("Dimension cache reload failed, keeping previous copy: " + e);
+                    reloadFailures.increment();
+                }
+            }
+            return snapshot;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    // Location, company and carrier ids kept and dropped by the filter's name and city words, or null
+    // when the filter has none (the cache is not even loaded then)
+    DimensionIds resolve(OrderFilter filter) {
+        List<String> locationWords = OrderSqlCompiler.searchWords(filter.getLocationName());
+        List<String> cityWords = OrderSqlCompiler.searchWords(filter.getCity());
+        List<String> companyWords = OrderSqlCompiler.searchWords(filter.getCompanyName());
+        List<String> carrierWords = OrderSqlCompiler.searchWords(filter.getCarrierName());
+        List<String> excludedLocationWords = OrderSqlCompiler.searchWords(filter.getExcludeLocationName());
+        List<String> excludedCityWords = OrderSqlCompiler.searchWords(filter.getExcludeCity());
+        List<String> excludedCompanyWords = OrderSqlCompiler.searchWords(filter.getExcludeCompanyName());
+        List<String> excludedCarrierWords = OrderSqlCompiler.searchWords(filter.getExcludeCarrierName());
+        if (locationWords.isEmpty() && cityWords.isEmpty() && companyWords.isEmpty() && carrierWords.isEmpty()
+            && excludedLocationWords.isEmpty() && excludedCityWords.isEmpty()
+            && excludedCompanyWords.isEmpty() && excludedCarrierWords.isEmpty()) {
+            return null;
+        }
+        Snapshot dimensions = snapshot();
+
+        Set<Long> locations = null;
+        if (!locationWords.isEmpty()) {
+            locations = Snapshot.matchingAll(dimensions.locationNames, locationWords);
+        }
+        if (!cityWords.isEmpty()) {
+            Set<Long> inCity = Snapshot.matchingAll(dimensions.cities, cityWords);
+            if (locations == null) {
+                locations = inCity;
+            } else {
+                locations.retainAll(inCity);
+            }
+        }
+        Set<Long> excludedLocations = new TreeSet<>();
+        if (!excludedLocationWords.isEmpty()) {
+            excludedLocations.addAll(Snapshot.excludedBy(dimensions.locationNames, excludedLocationWords));
+        }
+        if (!excludedCityWords.isEmpty()) {
+            excludedLocations.addAll(Snapshot.excludedBy(dimensions.cities, excludedCityWords));
+        }
+
+        return new DimensionIds(
+            locations, excludedLocations,
+            companyWords.isEmpty() ? null : Snapshot.matchingAll(dimensions.companies, companyWords),
+            excludedCompanyWords.isEmpty() ? Set.of() : Snapshot.excludedBy(dimensions.companies, excludedCompanyWords),
+            carrierWords.isEmpty() ? null : Snapshot.matchingAll(dimensions.carriers, carrierWords),
+            excludedCarrierWords.isEmpty() ? Set.of() : Snapshot.excludedBy(dimensions.carriers, excludedCarrierWords));
+    }
+
+    private Snapshot load() {
+        List<Dimension> locationNames = new ArrayList<>();
+        List<Dimension> cities = new ArrayList<>();
+        List<String> locationDisplayNames = new ArrayList<>();
+        List<String> cityDisplayNames = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, name, city FROM locations", rs -> {
+            long id = rs.getLong(1);
+            locationDisplayNames.add(rs.getString(2));
+            cityDisplayNames.add(rs.getString(3));
+            locationNames.add(new Dimension(id, fold(rs.getString(2))));
+            cities.add(new Dimension(id, fold(rs.getString(3))));
+        });
+        List<String> companyDisplayNames = new ArrayList<>();
+        List<Dimension> companies = jdbcTemplate.query("SELECT id, name FROM companies", (rs, rowNum) -> {
+            companyDisplayNames.add(rs.getString(2));
+            return new Dimension(rs.getLong(1), fold(rs.getString(2)));
+        });
+        List<String> carrierDisplayNames = new ArrayList<>();
+        List<Dimension> carriers = jdbcTemplate.query("SELECT id, name FROM carriers", (rs, rowNum) -> {
+            carrierDisplayNames.add(rs.getString(2));
+            return new Dimension(rs.getLong(1), fold(rs.getString(2)));
+        });
+        return new Snapshot(locationNames, cities, companies, carriers,
+            new TrigramIndex(locationDisplayNames), new TrigramIndex(cityDisplayNames),
+            new TrigramIndex(companyDisplayNames), new TrigramIndex(carrierDisplayNames),
+            System.currentTimeMillis());
+    }
+
+    // Lower case without accents, close to LOWER(col) LIKE under MySQL's accent-insensitive collations
+    static String fold(String text) {
+        if (text == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char ch = decomposed.charAt(i);
+            if (Character.getType(ch) != Character.NON_SPACING_MARK) {
+                folded.append(ch);
+            }
+        }
+        return folded.toString().toLowerCase(Locale.ROOT);
+    }
+
+    record Dimension(long id, String name) {
+    }
+
+    // A null inclusion set means that dimension is not filtered on; inclusions never contain excluded ids
+    record DimensionIds(Set<Long> locations, Set<Long> excludedLocations, Set<Long> companies,
+                        Set<Long> excludedCompanies, Set<Long> carriers, Set<Long> excludedCarriers) {
+
+        DimensionIds {
+            if (locations != null) {
+                locations.removeAll(excludedLocations);
+            }
+            if (companies != null) {
+                companies.removeAll(excludedCompanies);
+            }
+            if (carriers != null) {
+                carriers.removeAll(excludedCarriers);
+            }
+        }
+    }
+
+    static final class Snapshot {
+
+        final List<Dimension> locationNames;
+        final List<Dimension> cities;
+        final List<Dimension> companies;
+        final List<Dimension> carriers;
+        // Built with the snapshot from the names as stored, for "did you mean" suggestions
+        final TrigramIndex locationIndex;
+        final TrigramIndex cityIndex;
+        final TrigramIndex companyIndex;
+        final TrigramIndex carrierIndex;
+        final long loadedAt;
+
+        Snapshot(List<Dimension> locationNames, List<Dimension> cities, List<Dimension> companies,
+                 List<Dimension> carriers, long loadedAt) {
+            this(locationNames, cities, companies, carriers, indexOf(locationNames), indexOf(cities),
+                indexOf(companies), indexOf(carriers), loadedAt);
+        }
+
+        Snapshot(List<Dimension> locationNames, List<Dimension> cities, List<Dimension> companies,
+                 List<Dimension> carriers, TrigramIndex locationIndex, TrigramIndex cityIndex,
+                 TrigramIndex companyIndex, TrigramIndex carrierIndex, long loadedAt) {
+            this.locationNames = locationNames;
+            this.cities = cities;
+            this.companies = companies;
+            this.carriers = carriers;
+            this.locationIndex = locationIndex;
+            this.cityIndex = cityIndex;
+            this.companyIndex = companyIndex;
+            this.carrierIndex = carrierIndex;
+            this.loadedAt = loadedAt;
+        }
+
+        private static TrigramIndex indexOf(List<Dimension> dimensions) {
+            return new TrigramIndex(dimensions.stream().map(Dimension::name).toList());
+        }
+
+        // Ids whose name contains every word, like the AND-ed LIKE '%word%' predicates
+        static Set<Long> matchingAll(List<Dimension> dimensions, List<String> words) {
+            Set<Long> ids = new TreeSet<>();
+            for (Dimension dimension : dimensions) {
+                if (dimension.name() != null && containsAll(dimension.name(), words)) {
+                    ids.add(dimension.id());
+                }
+            }
+            return ids;
+        }
+
+        // Ids an exclusion removes: the name contains any word, or is NULL (NOT (NULL LIKE ...) is not true either)
+        static Set<Long> excludedBy(List<Dimension> dimensions, List<String> words) {
+            Set<Long> ids = new TreeSet<>();
+            for (Dimension dimension : dimensions) {
+                if (dimension.name() == null || containsAny(dimension.name(), words)) {
+                    ids.add(dimension.id());
+                }
+            }
+            return ids;
+        }
+
+        private static boolean containsAll(String name, List<String> words) {
+            for (String word : words) {
+                if (!name.contains(word)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean containsAny(String name, List<String> words) {
+            for (String word : words) {
+                if (name.contains(word)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
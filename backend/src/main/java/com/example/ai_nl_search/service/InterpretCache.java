@@ -0,0 +1,138 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+public class InterpretCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Counter hits;
+    private final Counter misses;
+    private final Clock clock;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    // Prompts resolve relative dates against today, so every entry dies at midnight
+    private LocalDate cacheDate;
+
+    @Autowired
+    public InterpretCache(@Value("${search.interpret-cache.max-entries:1000}") int maxEntries,
+                          @Value("${search.interpret-cache.ttl:PT6H}") Duration ttl,
+                          MeterRegistry meterRegistry) {
+        this(maxEntries, ttl, meterRegistry, Clock.systemDefaultZone());
+    }
+
+    InterpretCache(int maxEntries, Duration ttl, MeterRegistry meterRegistry, Clock clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.cacheDate = LocalDate.now(clock);
+        this.hits = Counter.builder("search.interpret.cache")
+            .description("Interpreted filter cache lookups")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.misses = Counter.builder("search.interpret.cache")
+            .description("Interpreted filter cache lookups")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        Gauge.builder("search.interpret.cache.hit.ratio", this, InterpretCache::hitRatio)
+            .description("Share of interpret calls answered from the cache")
+            .register(meterRegistry);
+        Gauge.builder("search.interpret.cache.size", this, InterpretCache::size)
+            .register(meterRegistry);
+    }
+
+    public OrderFilter get(String query) {
+        String key = normalize(query);
+        synchronized (this) {
+            expireIfNewDay();
+            Entry entry = entries.get(key);
+            if (entry == null || entry.expiresAt < clock.millis()) {
+                if (entry != null) {
+                    entries.remove(key);
+                }
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            // Callers sanitize the filter in place, so never hand out the cached instance
+            return entry.filter.copy();
+        }
+    }
+
+    // The date the prompt is built with; take it before the model call and hand it back to put
+    public LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    // An interpretation whose prompt was built before midnight resolved relative dates against yesterday,
+    // so it is dropped rather than cached for the new day
+    public void put(String query, OrderFilter filter, LocalDate promptDate) {
+        String key = normalize(query);
+        Entry entry = new Entry(filter.copy(), clock.millis() + ttlMillis);
+        synchronized (this) {
+            expireIfNewDay();
+            if (!promptDate.equals(cacheDate)) {
+                return;
+            }
+            entries.put(key, entry);
+            if (entries.size() > maxEntries) {
+                Map.Entry<String, Entry> eldest = entries.entrySet().iterator().next();
+                entries.remove(eldest.getKey());
+            }
+        }
+    }
+
+    // Case, whitespace and punctuation do not change what the model returns
+    static String normalize(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < query.length(); i++) {
+            char ch = query.charAt(i);
+            if (Character.isLetterOrDigit(ch)) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(ch));
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private void expireIfNewDay() {
+        LocalDate today = LocalDate.now(clock);
+        if (!today.equals(cacheDate)) {
+            entries.clear();
+            cacheDate = today;
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private record Entry(OrderFilter filter, long expiresAt) {
+    }
+}
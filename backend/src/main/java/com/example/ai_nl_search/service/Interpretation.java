@@ -0,0 +1,14 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+
+public record Interpretation(OrderFilter filter, Source source) {
+
+    public enum Source {
+        RULES,
+        CACHE,
+        BEDROCK,
+        // Later pages continue the filter the first page resolved, sent back with the cursor
+        PREVIOUS_PAGE
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.ai_nl_search.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+// Stands in for Bedrock under the bedrock-stub profile, so the whole pipeline can be load-tested without
+// AWS credentials or tokens. Each call sleeps a log-normal latency given by its median and p99, fails with
+// a throttling error at search.bedrock-stub.error-rate, and answers with the canned filter or follow-up
+// text in the chat completion shape of the OpenAI models. Streams send one chunk per word.
+@Component
+@Profile("bedrock-stub")
+public class LocalModelInvoker implements ModelInvoker {
+
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final double logMedian;
+    private final double logSigma;
+    private final double errorRate;
+    private final long tokenIntervalMillis;
+    private final String filterResponse;
+    private final String followUpResponse;
+    private final Counter failures;
+
+    @Autowired
+    public LocalModelInvoker(MeterRegistry meterRegistry,
+                             @Value("${search.bedrock-stub.latency-median:PT0.8S}") Duration latencyMedian,
+                             @Value("${search.bedrock-stub.latency-p99:PT2.5S}") Duration latencyP99,
+                             @Value("${search.bedrock-stub.error-rate:0}") double errorRate,
+                             @Value("${search.bedrock-stub.token-interval:PT0.015S}") Duration tokenInterval,
+                             @Value("${search.bedrock-stub.filter-response:{}}") String filterResponse,
+                             @Value("${search.bedrock-stub.followup-response:NO_ASSUMPTION_MADE}")
+                             String followUpResponse) {
+        long medianMillis = Math.max(1, latencyMedian.toMillis());
+        long p99Millis = Math.max(medianMillis, latencyP99.toMillis());
+        this.logMedian = Math.log(medianMillis);
+        this.logSigma = Math.log((double) p99Millis / medianMillis) / Z_99;
+        this.errorRate = errorRate;
+        this.tokenIntervalMillis = tokenInterval.toMillis();
+        this.filterResponse = filterResponse;
+        this.followUpResponse = followUpResponse;
+        this.failures = Counter.builder("bedrock.stub.errors")
+            .description("Injected Bedrock stub failures")
+            .register(meterRegistry);
+        // Shows on /actuator/prometheus that the stub, not Bedrock, is answering
+        Gauge.builder("bedrock.stub.latency.median", () -> medianMillis)
+            .description("Configured median latency of the Bedrock stub")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        Gauge.builder("bedrock.stub.error.rate", () -> errorRate)
+            .description("Configured share of Bedrock stub calls that fail")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public String invoke(String modelId, byte[] requestBody) {
+        String text = respond(requestBody);
+        ObjectNode root = objectMapper.createObjectNode();
+        root.putArray("choices").addObject().putObject("message").put("content", text);
+        // Rough counts, enough for the token metrics to have something to record
+        root.putObject("usage")
+            .put("prompt_tokens", requestBody.length / 4)
+            .put("completion_tokens", text.split(" ").length);
+        return root.toString();
+    }
+
+    @Override
+    public void invokeStream(String modelId, byte[] requestBody, Consumer<String> chunkConsumer) {
+        String text = respond(requestBody);
+        // One chunk per word, keeping the separating space at the front like real token deltas
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf(' ', start + 1);
+            end = end < 0 ? text.length() : end;
+            ObjectNode chunk = objectMapper.createObjectNode();
+            chunk.putArray("choices").addObject().putObject("delta").put("content", text.substring(start, end));
+            chunkConsumer.accept(chunk.toString());
+            start = end;
+            if (start < text.length()) {
+                sleep(tokenIntervalMillis);
+            }
+        }
+        chunkConsumer.accept("{\"choices\":[{\"delta\":{},\"finish_reason\":\"stop\"}]}");
+    }
+
+    // Waits out the sampled latency, then fails or picks the canned text for the kind of request
+    private String respond(byte[] requestBody) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        sleep(Math.round(Math.exp(logMedian + logSigma * random.nextGaussian())));
+        if (random.nextDouble() < errorRate) {
+            failures.increment();
+            throw ThrottlingException.builder()
+                .statusCode(429)
+                .message("Bedrock stub: injected throttling error")
+                .build();
+        }
+        return isFollowUp(requestBody) ? followUpResponse : filterResponse;
+    }
+
+    private boolean isFollowUp(byte[] requestBody) {
+        try {
+            JsonNode system = objectMapper.readTree(requestBody).path("messages").path(0).path("content").path(0);
+            return BedrockNlService.FOLLOW_UP_SYSTEM_PROMPT.equals(system.path("text").asText());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
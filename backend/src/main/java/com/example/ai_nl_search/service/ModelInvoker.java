@@ -0,0 +1,12 @@
+package com.example.ai_nl_search.service;
+
+import java.util.function.Consumer;
+
+public interface ModelInvoker {
+
+    // Returns the complete response body
+    String invoke(String modelId, byte[] requestBody);
+
+    // Hands every response chunk to chunkConsumer as it arrives and returns once the stream has ended
+    void invokeStream(String modelId, byte[] requestBody, Consumer<String> chunkConsumer);
+}
@@ -0,0 +1,230 @@
+package com.example.ai_nl_search.service;
+
+// Left-to-right scans over the model's text output, in place of regexes: finding the filter JSON object in
+// it, and stripping reasoning blocks, tags, code blocks and narration lines from a follow-up in one pass.
+// Nothing backtracks, and a closing marker found missing once is not searched for again.
+final class ModelTextScanner {
+
+    private static final String[] REASONING_TAGS = {"reasoning", "thinking", "analysis"};
+    private static final String[] REASONING_CLOSINGS = {"</reasoning>", "</thinking>", "</analysis>"};
+    private static final String CODE_FENCE = "```";
+
+    // Lines of the model talking to itself about the prompt rather than to the user, compared in lower case
+    private static final String[] NARRATION_PREFIXES = {"we have", "applied filter", "result count",
+        "assumptions made", "so we", "according to", "the format", "use the", "that matches", "we need to",
+        "we should"};
+
+    private ModelTextScanner() {
+    }
+
+    // Start of the first balanced {...} at or after from, or -1. With skipReasoning, objects inside a closed
+    // reasoning block are passed over, since those are drafts rather than the answer.
+    static int nextJsonObject(String text, int from, boolean skipReasoning) {
+        Markers markers = new Markers();
+        int i = from;
+        int brace = text.indexOf('{', i);
+        while (brace >= 0) {
+            int tag = skipReasoning ? text.indexOf('<', i) : -1;
+            if (tag >= 0 && tag < brace) {
+                int end = reasoningBlockEnd(text, tag, markers);
+                i = end >= 0 ? end : tag + 1;
+                if (brace < i) {
+                    brace = text.indexOf('{', i);
+                }
+                continue;
+            }
+            if (jsonObjectEnd(text, brace) >= 0) {
+                return brace;
+            }
+            i = brace + 1;
+            brace = text.indexOf('{', i);
+        }
+        return -1;
+    }
+
+    // Index just past the object opened at start, or -1 if its braces never balance. Braces inside
+    // strings don't count; the content is left for the JSON parser to judge.
+    static int jsonObjectEnd(String text, int start) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Drops closed reasoning/thinking/analysis blocks, any other <tag>, closed ``` blocks, empty lines and
+    // narration lines, then joins what is left into one line without surrounding quotes
+    static String cleanFollowUp(String text) {
+        if (text == null) {
+            return null;
+        }
+        Markers markers = new Markers();
+        StringBuilder out = new StringBuilder(text.length());
+        int lineStart = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                int end = reasoningBlockEnd(text, i, markers);
+                if (end < 0) {
+                    end = tagEnd(text, i, markers);
+                }
+                if (end >= 0) {
+                    i = end;
+                    continue;
+                }
+            } else if (c == '`' && text.startsWith(CODE_FENCE, i) && !markers.noFence) {
+                int close = text.indexOf(CODE_FENCE, i + CODE_FENCE.length());
+                if (close >= 0) {
+                    i = close + CODE_FENCE.length();
+                    continue;
+                }
+                markers.noFence = true;
+            } else if (c == '\n') {
+                lineStart = endLine(out, lineStart);
+                i++;
+                continue;
+            }
+            out.append(c);
+            i++;
+        }
+        endLine(out, lineStart);
+
+        int start = 0;
+        int end = out.length();
+        while (end > start && out.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start >= 2 && out.charAt(start) == '"' && out.charAt(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        if (end - start >= 2 && out.charAt(start) == '\'' && out.charAt(end - 1) == '\'') {
+            start++;
+            end--;
+        }
+        while (start < end && out.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && out.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return start == end ? null : out.substring(start, end);
+    }
+
+    // Trims the line written since lineStart, or removes it when empty or narration; returns where the next
+    // line starts, which is after a separating space once something has been kept
+    private static int endLine(StringBuilder out, int lineStart) {
+        int end = out.length();
+        while (end > lineStart && out.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int start = lineStart;
+        while (start < end && out.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start == end || isNarration(out, start, end)) {
+            out.setLength(lineStart);
+            return lineStart;
+        }
+        out.setLength(end);
+        out.delete(lineStart, start);
+        out.append(' ');
+        return out.length();
+    }
+
+    private static boolean isNarration(CharSequence line, int start, int end) {
+        for (String prefix : NARRATION_PREFIXES) {
+            if (regionMatchesLowerCase(line, start, end, prefix)) {
+                return true;
+            }
+        }
+        return indexOfLowerCase(line, start, end, "behavior") >= 0
+            && indexOfLowerCase(line, start, end, "choose") >= 0;
+    }
+
+    // Index just past a reasoning block opening at start, or -1 when there is none or it is never closed
+    private static int reasoningBlockEnd(String text, int start, Markers markers) {
+        for (int t = 0; t < REASONING_TAGS.length; t++) {
+            String tag = REASONING_TAGS[t];
+            int nameEnd = start + 1 + tag.length();
+            if (nameEnd < text.length() && text.charAt(nameEnd) == '>'
+                && text.regionMatches(true, start + 1, tag, 0, tag.length())) {
+                if (markers.unclosed[t]) {
+                    return -1;
+                }
+                int close = indexOfIgnoreCase(text, nameEnd + 1, REASONING_CLOSINGS[t]);
+                if (close < 0) {
+                    markers.unclosed[t] = true;
+                    return -1;
+                }
+                return close + REASONING_CLOSINGS[t].length();
+            }
+        }
+        return -1;
+    }
+
+    // Index just past a <...> with at least one character inside, or -1
+    private static int tagEnd(String text, int start, Markers markers) {
+        if (markers.noTagEnd) {
+            return -1;
+        }
+        int close = text.indexOf('>', start + 1);
+        if (close < 0) {
+            markers.noTagEnd = true;
+            return -1;
+        }
+        return close > start + 1 ? close + 1 : -1;
+    }
+
+    private static boolean regionMatchesLowerCase(CharSequence text, int start, int end, String lowerCase) {
+        if (end - start < lowerCase.length()) {
+            return false;
+        }
+        for (int k = 0; k < lowerCase.length(); k++) {
+            if (Character.toLowerCase(text.charAt(start + k)) != lowerCase.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Every candidate starts with '<', which String.indexOf finds far faster than a char-by-char comparison
+    private static int indexOfIgnoreCase(String text, int from, String tag) {
+        int i = text.indexOf('<', from);
+        while (i >= 0 && !text.regionMatches(true, i, tag, 0, tag.length())) {
+            i = text.indexOf('<', i + 1);
+        }
+        return i;
+    }
+
+    private static int indexOfLowerCase(CharSequence text, int start, int end, String lowerCase) {
+        for (int i = start; i + lowerCase.length() <= end; i++) {
+            if (regionMatchesLowerCase(text, i, end, lowerCase)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Closing markers already known to be missing from the rest of the text
+    private static final class Markers {
+        final boolean[] unclosed = new boolean[REASONING_TAGS.length];
+        boolean noTagEnd;
+        boolean noFence;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.DimensionCache.Dimension;
+import com.example.ai_nl_search.service.DimensionCache.Snapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// "Did you mean" for a location, city, company or carrier name that matches nothing, answered from the
+// dimension cache's trigram indexes instead of a follow-up model call
+@Component
+public class NameSuggester {
+
+    static final int MAX_SUGGESTIONS = 3;
+    static final double MIN_SIMILARITY = 0.3;
+
+    private final DimensionCache dimensionCache;
+    private final Counter suggested;
+    private final Counter notSuggested;
+
+    @Autowired
+    public NameSuggester(DimensionCache dimensionCache, MeterRegistry meterRegistry) {
+        this.dimensionCache = dimensionCache;
+        this.suggested = Counter.builder("search.followup.local")
+            .description("Empty searches with an unmatched name, by whether a local suggestion was found")
+            .tag("result", "suggested")
+            .register(meterRegistry);
+        this.notSuggested = Counter.builder("search.followup.local")
+            .description("Empty searches with an unmatched name, by whether a local suggestion was found")
+            .tag("result", "none")
+            .register(meterRegistry);
+    }
+
+    // Follow-up text for an empty result caused by an unknown name, or null when the model should answer
+    public String followUp(OrderFilter filter, int resultCount, List<String> assumptions) {
+        if (resultCount > 0 || !hasNameFilter(filter)) {
+            return null;
+        }
+        Snapshot dimensions = dimensionCache.snapshot();
+
+        Suggestions suggestions = new Suggestions();
+        suggestions.add(filter.getLocationName(), dimensions.locationNames, dimensions.locationIndex);
+        suggestions.add(filter.getCity(), dimensions.cities, dimensions.cityIndex);
+        suggestions.add(filter.getCompanyName(), dimensions.companies, dimensions.companyIndex);
+        suggestions.add(filter.getCarrierName(), dimensions.carriers, dimensions.carrierIndex);
+        if (suggestions.unmatched == 0) {
+            return null;
+        }
+        if (suggestions.withoutNearMatch > 0) {
+            // No close spelling for some name either, the model gets to explain that one
+            notSuggested.increment();
+            return null;
+        }
+        suggested.increment();
+
+        // Assumptions come first, as the model is told to do; their first sentence says what was assumed
+        StringBuilder followUp = new StringBuilder();
+        for (String assumption : assumptions) {
+            int end = assumption.indexOf(". ");
+            followUp.append(end > 0 ? assumption.substring(0, end + 1) : assumption).append(' ');
+        }
+        return followUp.append(suggestions.message).toString();
+    }
+
+    private static String alternatives(List<String> names) {
+        if (names.size() == 1) {
+            return names.get(0);
+        }
+        return String.join(", ", names.subList(0, names.size() - 1)) + " or " + names.get(names.size() - 1);
+    }
+
+    private static boolean hasNameFilter(OrderFilter filter) {
+        return isSet(filter.getLocationName()) || isSet(filter.getCity())
+            || isSet(filter.getCompanyName()) || isSet(filter.getCarrierName());
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static final class Suggestions {
+
+        final StringBuilder message = new StringBuilder();
+        int unmatched;
+        int withoutNearMatch;
+
+        void add(String term, List<Dimension> dimensions, TrigramIndex index) {
+            List<String> words = OrderSqlCompiler.searchWords(term);
+            if (words.isEmpty() || !Snapshot.matchingAll(dimensions, words).isEmpty()) {
+                return;
+            }
+            unmatched++;
+            List<String> nearest = index.nearest(term, MAX_SUGGESTIONS, MIN_SIMILARITY);
+            if (nearest.isEmpty()) {
+                withoutNearMatch++;
+                return;
+            }
+            if (!message.isEmpty()) {
+                message.append(' ');
+            }
+            message.append("No orders found for '").append(term.trim()).append("'. Did you mean ")
+                .append(alternatives(nearest)).append('?');
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.ai_nl_search.service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+// The searchable columns of one order as read by the snapshot load and the change feed. Times are epoch
+// seconds on the same basis as the JDBC timestamps (serverTimezone=UTC), NO_TIME when NULL.
+public record OrderChange(long id, long timeCreated, long timeStored, long timeCollected, String status,
+                          String service, String collectedByType, long locationId, long companyId, Long carrierId,
+                          int flagMask, Timestamp updatedAt) {
+
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    static final String COLUMNS = """
+            o.id, o.time_created, o.time_stored, o.time_collected, o.status, o.service,
+            o.collected_by_type, o.location_id, o.company_id, o.carrier_id, o.flag_mask, o.updated_at
+            """;
+
+    static OrderChange map(ResultSet rs) throws SQLException {
+        long carrierId = rs.getLong(10);
+        Long carrier = rs.wasNull() ? null : carrierId;
+        return new OrderChange(rs.getLong(1), seconds(rs.getTimestamp(2)), seconds(rs.getTimestamp(3)),
+            seconds(rs.getTimestamp(4)), rs.getString(5), rs.getString(6), rs.getString(7),
+            rs.getLong(8), rs.getLong(9), carrier, rs.getInt(11), rs.getTimestamp(12));
+    }
+
+    private static long seconds(Timestamp timestamp) {
+        return timestamp != null ? timestamp.getTime() / 1000 : NO_TIME;
+    }
+}
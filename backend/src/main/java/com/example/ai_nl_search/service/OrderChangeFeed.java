@@ -0,0 +1,145 @@
+package com.example.ai_nl_search.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Polls orders.updated_at for rows changed since the last watermark and hands them to subscribers, so
+// in-process copies of orders can apply deltas instead of reloading. Each poll starts search.change-feed.overlap
+// before the watermark, because a transaction can commit after a later one with an earlier updated_at;
+// subscribers therefore see some rows twice and must apply them idempotently. Deletes are not reported.
+@Component
+public class OrderChangeFeed {
+
+    public interface Listener {
+        void onOrderChanges(List<OrderChange> changes);
+    }
+
+    private static final String CHANGES_QUERY = "SELECT\n" + OrderChange.COLUMNS + """
+            FROM orders o
+            WHERE o.updated_at > ? OR (o.updated_at = ? AND o.id > ?)
+            ORDER BY o.updated_at, o.id
+            LIMIT ?
+            """;
+
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(10);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long intervalMillis;
+    private final long overlapMillis;
+    private final int batchSize;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Counter changedRows;
+    private final Counter pollFailures;
+    private final Counter listenerFailures;
+    private Timestamp watermark;
+    private Thread poller;
+    private volatile boolean stopped;
+
+    @Autowired
+    public OrderChangeFeed(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                           @Value("${search.change-feed.interval:PT5S}") Duration interval,
+                           @Value("${search.change-feed.overlap:PT2S}") Duration overlap,
+                           @Value("${search.change-feed.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.intervalMillis = interval.toMillis();
+        this.overlapMillis = overlap.toMillis();
+        this.batchSize = batchSize;
+        this.changedRows = Counter.builder("search.changefeed.rows")
+            .description("Changed order rows delivered by the change feed")
+            .register(meterRegistry);
+        // A failed poll resumes after the last change it delivered, on the next interval
+        this.pollFailures = Counter.builder("search.changefeed.poll.failures")
+            .description("Change feed polls that failed")
+            .register(meterRegistry);
+        this.listenerFailures = Counter.builder("search.changefeed.listener.failures")
+            .description("Change batches a listener failed to apply")
+            .register(meterRegistry);
+    }
+
+    // Changes committed from now on reach the listener; polling starts with the first subscriber
+    public synchronized void subscribe(Listener listener) {
+        listeners.add(listener);
+        if (poller == null && !stopped) {
+            poller = Thread.ofVirtual().name("order-change-feed").start(this::run);
+        }
+    }
+
+    // Interrupts the poller and waits for a poll in progress; a JDBC call may not notice the interrupt, so the
+    // wait is bounded
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread running;
+        synchronized (this) {
+            stopped = true;
+            running = poller;
+        }
+        if (running != null) {
+            running.interrupt();
+            running.join(STOP_TIMEOUT);
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            try {
+                poll();
+            } catch (RuntimeException e) {
+                System.err.println("Order change feed poll failed, retrying: " + e);
+                pollFailures.increment();
+            }
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Delivers every row changed since the watermark, in (updated_at, id) order; returns how many
+    synchronized int poll() {
+        if (watermark == null) {
+            watermark = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP(3)", Timestamp.class);
+        }
+        Timestamp after = new Timestamp(watermark.getTime() - overlapMillis);
+        long afterId = 0;
+        int delivered = 0;
+        while (true) {
+            List<OrderChange> changes = jdbcTemplate.query(CHANGES_QUERY, (rs, rowNum) -> OrderChange.map(rs),
+                after, after, afterId, batchSize);
+            if (changes.isEmpty()) {
+                break;
+            }
+            for (Listener listener : listeners) {
+                try {
+                    listener.onOrderChanges(changes);
+                } catch (RuntimeException e) {
+                    System.err.println("Order change listener failed: " + e);
+                    listenerFailures.increment();
+                }
+            }
+            delivered += changes.size();
+            changedRows.increment(changes.size());
+
+            OrderChange last = changes.get(changes.size() - 1);
+            after = last.updatedAt();
+            afterId = last.id();
+            if (after.after(watermark)) {
+                watermark = after;
+            }
+            if (changes.size() < batchSize) {
+                break;
+            }
+        }
+        return delivered;
+    }
+}
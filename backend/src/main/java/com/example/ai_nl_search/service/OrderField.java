@@ -0,0 +1,130 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderRow;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The columns of an order row a search can ask for, named as the OrderRow properties, in SELECT list order
+public enum OrderField {
+
+    ID("id", "o.id"),
+    TRACKING_NO("trackingNo", "o.tracking_no"),
+    ORDER_NO("orderNo", "o.order_no"),
+    SERVICE("service", "o.service"),
+    STATUS("status", "o.status"),
+    COLLECTED_BY_TYPE("collectedByType", "o.collected_by_type"),
+    RECIPIENT_PHONE("recipientPhone", "o.recipient_phone"),
+    COMPARTMENT_NO("compartmentNo", "o.compartment_no"),
+    TIME_CREATED("timeCreated", "o.time_created"),
+    TIME_STORED("timeStored", "o.time_stored"),
+    TIME_COLLECTED("timeCollected", "o.time_collected"),
+    EXPIRES_AT("expiresAt", "o.expires_at"),
+    FLAGS("flags", "o.flags"),
+    LOCATION_NAME("locationName", "l.name AS location_name"),
+    LOCATION_TYPE("locationType", "l.location_type"),
+    CITY("city", "l.city"),
+    COMPANY_NAME("companyName", "c.name AS company_name"),
+    CARRIER_NAME("carrierName", "car.name AS carrier_name");
+
+    public static final Set<OrderField> ALL = Collections.unmodifiableSet(EnumSet.allOf(OrderField.class));
+
+    private static final Map<String, OrderField> BY_PROPERTY = new LinkedHashMap<>();
+
+    static {
+        for (OrderField field : values()) {
+            BY_PROPERTY.put(field.property, field);
+        }
+    }
+
+    public final String property;
+    final String column;
+
+    OrderField(String property, String column) {
+        this.property = property;
+        this.column = column;
+    }
+
+    // No names means every field; an unknown name is rejected
+    public static Set<OrderField> parse(List<String> properties) {
+        if (properties == null || properties.isEmpty()) {
+            return ALL;
+        }
+        Set<OrderField> fields = EnumSet.noneOf(OrderField.class);
+        for (String property : properties) {
+            OrderField field = BY_PROPERTY.get(property.trim());
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field '" + property.trim() + "'. Valid fields: "
+                    + BY_PROPERTY.keySet());
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    // This field's value on a row, as mapped from JDBC
+    public Object read(OrderRow row) {
+        switch (this) {
+            case ID:
+                return row.id();
+            case TRACKING_NO:
+                return row.trackingNo();
+            case ORDER_NO:
+                return row.orderNo();
+            case SERVICE:
+                return row.service();
+            case STATUS:
+                return row.status();
+            case COLLECTED_BY_TYPE:
+                return row.collectedByType();
+            case RECIPIENT_PHONE:
+                return row.recipientPhone();
+            case COMPARTMENT_NO:
+                return row.compartmentNo();
+            case TIME_CREATED:
+                return row.timeCreated();
+            case TIME_STORED:
+                return row.timeStored();
+            case TIME_COLLECTED:
+                return row.timeCollected();
+            case EXPIRES_AT:
+                return row.expiresAt();
+            case FLAGS:
+                return row.flags();
+            case LOCATION_NAME:
+                return row.locationName();
+            case LOCATION_TYPE:
+                return row.locationType();
+            case CITY:
+                return row.city();
+            case COMPANY_NAME:
+                return row.companyName();
+            default:
+                return row.carrierName();
+        }
+    }
+
+    // id and time_created are always read, page cursors are made from them
+    static Set<OrderField> selected(Set<OrderField> fields) {
+        if (fields.size() == ALL.size()) {
+            return ALL;
+        }
+        Set<OrderField> selected = EnumSet.copyOf(fields);
+        selected.add(ID);
+        selected.add(TIME_CREATED);
+        return selected;
+    }
+
+    // Bit per field, part of the SQL shape key
+    static long mask(Set<OrderField> fields) {
+        long mask = 0;
+        for (OrderField field : fields) {
+            mask |= 1L << field.ordinal();
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderRow;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+class OrderRowMapper implements RowMapper<OrderRow> {
+
+    private static final int MAX_INTERNED = 10_000;
+
+    // Selected fields, in SELECT list order
+    private final Set<OrderField> fields;
+    private final ConcurrentHashMap<String, String> interned;
+
+    OrderRowMapper() {
+        this(OrderField.ALL, new ConcurrentHashMap<>());
+    }
+
+    private OrderRowMapper(Set<OrderField> fields, ConcurrentHashMap<String, String> interned) {
+        this.fields = fields;
+        this.interned = interned;
+    }
+
+    // Mapper for rows selected with only these fields, sharing the interned values
+    OrderRowMapper project(Set<OrderField> selected) {
+        return selected.size() == fields.size() ? this : new OrderRowMapper(selected, interned);
+    }
+
+    @Override
+    public OrderRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (fields.size() < OrderField.ALL.size()) {
+            return mapProjected(rs);
+        }
+        int compartment = rs.getInt(8);
+        Integer compartmentNo = rs.wasNull() ? null : compartment;
+        return new OrderRow(
+            rs.getLong(1),
+            rs.getString(2),
+            rs.getString(3),
+            intern(rs.getString(4)),
+            intern(rs.getString(5)),
+            intern(rs.getString(6)),
+            rs.getString(7),
+            compartmentNo,
+            rs.getTimestamp(9),
+            rs.getTimestamp(10),
+            rs.getTimestamp(11),
+            rs.getTimestamp(12),
+            intern(rs.getString(13)),
+            rs.getString(14),
+            intern(rs.getString(15)),
+            intern(rs.getString(16)),
+            rs.getString(17),
+            intern(rs.getString(18)));
+    }
+
+    // Fields that were not selected stay null
+    private OrderRow mapProjected(ResultSet rs) throws SQLException {
+        Object[] values = new Object[OrderField.ALL.size()];
+        int column = 1;
+        for (OrderField field : fields) {
+            values[field.ordinal()] = value(rs, column++, field);
+        }
+        return new OrderRow(
+            (Long) values[0],
+            (String) values[1],
+            (String) values[2],
+            (String) values[3],
+            (String) values[4],
+            (String) values[5],
+            (String) values[6],
+            (Integer) values[7],
+            (Timestamp) values[8],
+            (Timestamp) values[9],
+            (Timestamp) values[10],
+            (Timestamp) values[11],
+            (String) values[12],
+            (String) values[13],
+            (String) values[14],
+            (String) values[15],
+            (String) values[16],
+            (String) values[17]);
+    }
+
+    private Object value(ResultSet rs, int column, OrderField field) throws SQLException {
+        switch (field) {
+            case ID:
+                return rs.getLong(column);
+            case COMPARTMENT_NO:
+                int compartment = rs.getInt(column);
+                return rs.wasNull() ? null : compartment;
+            case TIME_CREATED:
+            case TIME_STORED:
+            case TIME_COLLECTED:
+            case EXPIRES_AT:
+                return rs.getTimestamp(column);
+            case SERVICE:
+            case STATUS:
+            case COLLECTED_BY_TYPE:
+            case FLAGS:
+            case LOCATION_TYPE:
+            case CITY:
+            case CARRIER_NAME:
+                return intern(rs.getString(column));
+            default:
+                return rs.getString(column);
+        }
+    }
+
+    // Enum and dimension values repeat on almost every row; share one instance per distinct value
+    private String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = interned.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (interned.size() >= MAX_INTERNED) {
+            return value;
+        }
+        existing = interned.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
@@ -1,306 +1,259 @@
 package com.example.ai_nl_search.service;
 
+import com.example.ai_nl_search.dto.OrderAggregate;
+import com.example.ai_nl_search.dto.OrderCursor;
 import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.dto.OrderGroup;
+import com.example.ai_nl_search.dto.OrderPage;
+import com.example.ai_nl_search.dto.OrderRow;
+import com.example.ai_nl_search.service.OrderSqlCompiler.CompiledQuery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 @Service
 public class OrderSearchService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int STREAM_FETCH_SIZE = 500;
+    public static final int MAX_GROUPS = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final OrderRowMapper rowMapper = new OrderRowMapper();
+    private final OrderSqlCompiler sqlCompiler;
+    private final OrderSnapshotEngine snapshotEngine;
+    private final SlowSearchLog slowSearchLog;
+    // Keyed on the compiled SQL and its bind values, i.e. the canonical form of filter, cursor and limit
+    private final SingleFlight<List<Object>, List<OrderRow>> searches;
+    private final SingleFlight<List<Object>, Long> counts;
+    private final SingleFlight<List<Object>, List<OrderGroup>> groupCounts;
+    private final Timer pageQueries;
+    private final Timer idQueries;
+    private final Timer countQueries;
+    private final Timer groupQueries;
+    private final Timer streamQueries;
+    private final DistributionSummary pageRows;
+    private final DistributionSummary streamRows;
+    private final Counter staleSnapshotPages;
 
     @Autowired
-    public OrderSearchService(JdbcTemplate jdbcTemplate) {
+    public OrderSearchService(JdbcTemplate jdbcTemplate, DimensionCache dimensionCache,
+                              OrderSnapshotEngine snapshotEngine, SlowSearchLog slowSearchLog,
+                              MeterRegistry meterRegistry) {
         this.jdbcTemplate = jdbcTemplate;
+        this.sqlCompiler = new OrderSqlCompiler(meterRegistry, dimensionCache);
+        this.snapshotEngine = snapshotEngine;
+        this.slowSearchLog = slowSearchLog;
+        this.searches = new SingleFlight<>("search", meterRegistry);
+        this.counts = new SingleFlight<>("count", meterRegistry);
+        this.groupCounts = new SingleFlight<>("aggregate", meterRegistry);
+        this.pageQueries = sqlTimer("page", meterRegistry);
+        this.idQueries = sqlTimer("ids", meterRegistry);
+        this.countQueries = sqlTimer("count", meterRegistry);
+        this.groupQueries = sqlTimer("groups", meterRegistry);
+        this.streamQueries = sqlTimer("stream", meterRegistry);
+        this.pageRows = rowSummary("page", meterRegistry);
+        this.streamRows = rowSummary("stream", meterRegistry);
+        this.staleSnapshotPages = Counter.builder("search.snapshot.stale.pages")
+            .description("Snapshot-picked pages with a row that no longer matched, read again in SQL")
+            .register(meterRegistry);
     }
 
-    private void addWordBasedMatch(StringBuilder sql, List<Object> params, String column, String searchTerm) {
-        if (searchTerm == null || searchTerm.trim().isEmpty()) {
-            return;
-        }
-        
-        List<String> words = Arrays.stream(searchTerm.trim().split("\\s+"))
-            .filter(word -> !word.isEmpty())
-            .collect(Collectors.toList());
-        
-        if (words.isEmpty()) {
-            return;
-        }
-        
-        sql.append(" AND (");
-        for (int i = 0; i < words.size(); i++) {
-            if (i > 0) {
-                sql.append(" AND ");
-            }
-            sql.append("LOWER(").append(column).append(") LIKE LOWER(?)");
-            params.add("%" + words.get(i) + "%");
-        }
-        sql.append(")");
+    // Only queries that reach MySQL are timed, a coalesced caller waits on someone else's; a stream is timed
+    // until its first row arrives, since the rest depends on how fast the client reads
+    private static Timer sqlTimer(String query, MeterRegistry meterRegistry) {
+        return Timer.builder("search.sql")
+            .description("Order queries executed in MySQL")
+            .tag("query", query)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
     }
 
-    public List<Map<String, Object>> search(OrderFilter filter) {
-        StringBuilder sql = new StringBuilder("""
-            SELECT 
-                o.id,
-                o.tracking_no,
-                o.order_no,
-                o.service,
-                o.status,
-                o.collected_by_type,
-                o.recipient_phone,
-                o.compartment_no,
-                o.time_created,
-                o.time_stored,
-                o.time_collected,
-                o.expires_at,
-                o.flags,
-                l.name AS location_name,
-                l.location_type,
-                l.city,
-                c.name AS company_name,
-                car.name AS carrier_name
-            FROM orders o
-            INNER JOIN locations l ON o.location_id = l.id
-            INNER JOIN companies c ON o.company_id = c.id
-            LEFT JOIN carriers car ON o.carrier_id = car.id
-            WHERE 1=1
-            """);
-
-        List<Object> params = new ArrayList<>();
+    // Times one execution in MySQL and hands it to the slow-search log, which ignores all but the slow ones
+    private <T> T timed(String name, Timer timer, CompiledQuery query, OrderFilter filter, Supplier<T> execution,
+                        ToLongFunction<T> rows) {
+        long start = System.nanoTime();
+        T result = execution.get();
+        record(name, timer, query, filter, result != null ? rows.applyAsLong(result) : 0, System.nanoTime() - start);
+        return result;
+    }
 
-        if (filter.getLocationName() != null && !filter.getLocationName().trim().isEmpty()) {
-            addWordBasedMatch(sql, params, "l.name", filter.getLocationName());
-        }
-        
-        if (filter.getLocationType() != null && !filter.getLocationType().trim().isEmpty()) {
-            sql.append(" AND l.location_type = ?");
-            params.add(filter.getLocationType().trim());
-        }
+    private void record(String name, Timer timer, CompiledQuery query, OrderFilter filter, long rows, long elapsed) {
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+        slowSearchLog.record(name, query, filter, rows, elapsed);
+    }
 
-        String dateField = filter.getDateField();
-        if (dateField == null || dateField.trim().isEmpty()) {
-            dateField = "CREATED";
-        }
-        
-        String dateColumn;
-        switch (dateField.toUpperCase()) {
-            case "STORED":
-                dateColumn = "o.time_stored";
-                break;
-            case "COLLECTED":
-                dateColumn = "o.time_collected";
-                break;
-            case "CREATED":
-            default:
-                dateColumn = "o.time_created";
-                break;
-        }
-        
-        if (filter.getDateFrom() != null && !filter.getDateFrom().trim().isEmpty()) {
-            sql.append(" AND DATE(").append(dateColumn).append(") >= ?");
-            params.add(filter.getDateFrom().trim());
-        }
+    private static DistributionSummary rowSummary(String query, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder("search.rows")
+            .description("Order rows returned per search page or stream")
+            .baseUnit("rows")
+            .tag("query", query)
+            .register(meterRegistry);
+    }
 
-        if (filter.getDateTo() != null && !filter.getDateTo().trim().isEmpty()) {
-            sql.append(" AND DATE(").append(dateColumn).append(") <= ?");
-            params.add(filter.getDateTo().trim());
-        }
+    public OrderPage search(OrderFilter filter, OrderCursor cursor, int pageSize) {
+        return search(filter, cursor, pageSize, OrderField.ALL);
+    }
 
-        if (filter.getExcludeStatus() != null && !filter.getExcludeStatus().isEmpty()) {
-            sql.append(" AND o.status NOT IN (");
-            for (int i = 0; i < filter.getExcludeStatus().size(); i++) {
-                if (i > 0) sql.append(", ");
-                sql.append("?");
-                params.add(filter.getExcludeStatus().get(i));
-            }
-            sql.append(")");
+    // Fields outside the projection are neither selected nor joined, and stay null on the rows
+    public OrderPage search(OrderFilter filter, OrderCursor cursor, int pageSize, Set<OrderField> fields) {
+        int limit = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        Set<OrderField> selected = OrderField.selected(fields);
+        OrderRowMapper mapper = rowMapper.project(selected);
+        // The snapshot picks the page's ids and only those rows are read; otherwise the filter runs in SQL
+        Optional<List<Long>> snapshotIds = snapshotEngine.pageIds(filter, cursor, limit + 1);
+        if (snapshotIds.isPresent() && snapshotIds.get().isEmpty()) {
+            return new OrderPage(new ArrayList<>(), null);
         }
-        
-        if (filter.getService() != null && !filter.getService().isEmpty()) {
-            sql.append(" AND o.service IN (");
-            for (int i = 0; i < filter.getService().size(); i++) {
-                if (i > 0) sql.append(", ");
-                sql.append("?");
-                params.add(filter.getService().get(i));
+        List<OrderRow> results = null;
+        if (snapshotIds.isPresent()) {
+            results = read("ids", idQueries, sqlCompiler.compileIds(filter, snapshotIds.get(), selected), filter,
+                mapper);
+            // A picked order no longer matches (or is gone), so the snapshot is behind: read the page in SQL
+            if (results.size() < snapshotIds.get().size()) {
+                staleSnapshotPages.increment();
+                results = null;
             }
-            sql.append(")");
         }
-        
-        if (filter.getCity() != null && !filter.getCity().trim().isEmpty()) {
-            addWordBasedMatch(sql, params, "l.city", filter.getCity());
-        }
-        
-        if (filter.getCompanyName() != null && !filter.getCompanyName().trim().isEmpty()) {
-            addWordBasedMatch(sql, params, "c.name", filter.getCompanyName());
-        }
-        
-        if (filter.getCarrierName() != null && !filter.getCarrierName().trim().isEmpty()) {
-            addWordBasedMatch(sql, params, "car.name", filter.getCarrierName());
+        if (results == null) {
+            results = read("page", pageQueries, sqlCompiler.compile(filter, cursor, limit + 1, selected), filter,
+                mapper);
         }
 
-        if (filter.getCollectedBy() != null && !filter.getCollectedBy().isEmpty()) {
-            sql.append(" AND o.collected_by_type IN (");
-            for (int i = 0; i < filter.getCollectedBy().size(); i++) {
-                if (i > 0) sql.append(", ");
-                sql.append("?");
-                params.add(filter.getCollectedBy().get(i));
-            }
-            sql.append(")");
+        OrderCursor nextCursor = null;
+        if (results.size() > limit) {
+            results.remove(limit);
+            nextCursor = cursorOf(results.get(limit - 1));
         }
+        pageRows.record(results.size());
+        return new OrderPage(results, nextCursor);
+    }
 
-        if (filter.getExcludeLocationName() != null && !filter.getExcludeLocationName().trim().isEmpty()) {
-            List<String> words = Arrays.stream(filter.getExcludeLocationName().trim().split("\\s+"))
-                .filter(word -> !word.isEmpty())
-                .collect(Collectors.toList());
-            
-            if (!words.isEmpty()) {
-                sql.append(" AND NOT (");
-                for (int i = 0; i < words.size(); i++) {
-                    if (i > 0) {
-                        sql.append(" OR ");
-                    }
-                    sql.append("LOWER(l.name) LIKE LOWER(?)");
-                    params.add("%" + words.get(i) + "%");
-                }
-                sql.append(")");
-            }
-        }
-        
-        if (filter.getExcludeLocationType() != null && !filter.getExcludeLocationType().isEmpty()) {
-            sql.append(" AND l.location_type NOT IN (");
-            for (int i = 0; i < filter.getExcludeLocationType().size(); i++) {
-                if (i > 0) sql.append(", ");
-                sql.append("?");
-                params.add(filter.getExcludeLocationType().get(i));
-            }
-            sql.append(")");
-        }
-        
-        if (filter.getExcludeCity() != null && !filter.getExcludeCity().trim().isEmpty()) {
-            List<String> words = Arrays.stream(filter.getExcludeCity().trim().split("\\s+"))
-                .filter(word -> !word.isEmpty())
-                .collect(Collectors.toList());
-            
-            if (!words.isEmpty()) {
-                sql.append(" AND NOT (");
-                for (int i = 0; i < words.size(); i++) {
-                    if (i > 0) {
-                        sql.append(" OR ");
-                    }
-                    sql.append("LOWER(l.city) LIKE LOWER(?)");
-                    params.add("%" + words.get(i) + "%");
-                }
-                sql.append(")");
-            }
+    // Rows are immutable, but the list is trimmed by the caller, so every caller gets its own
+    private List<OrderRow> read(String name, Timer timer, CompiledQuery query, OrderFilter filter,
+                                OrderRowMapper mapper) {
+        return new ArrayList<>(searches.execute(query.key(),
+            () -> timed(name, timer, query, filter, () -> jdbcTemplate.query(query.sql(), mapper, query.params()),
+                List::size)));
+    }
+
+    public long count(OrderFilter filter) {
+        OptionalLong snapshotCount = snapshotEngine.count(filter);
+        if (snapshotCount.isPresent()) {
+            return snapshotCount.getAsLong();
         }
-        
-        if (filter.getExcludeCompanyName() != null && !filter.getExcludeCompanyName().trim().isEmpty()) {
-            List<String> words = Arrays.stream(filter.getExcludeCompanyName().trim().split("\\s+"))
-                .filter(word -> !word.isEmpty())
-                .collect(Collectors.toList());
-            
-            if (!words.isEmpty()) {
-                sql.append(" AND NOT (");
-                for (int i = 0; i < words.size(); i++) {
-                    if (i > 0) {
-                        sql.append(" OR ");
-                    }
-                    sql.append("LOWER(c.name) LIKE LOWER(?)");
-                    params.add("%" + words.get(i) + "%");
-                }
-                sql.append(")");
-            }
+        CompiledQuery query = sqlCompiler.compileCount(filter);
+        Long count = counts.execute(query.key(), () -> timed("count", countQueries, query, filter,
+            () -> jdbcTemplate.queryForObject(query.sql(), Long.class, query.params()), Long::longValue));
+        return count != null ? count : 0;
+    }
+
+    // Only counts leave the database: the total for COUNT, otherwise up to MAX_GROUPS per-value counts
+    public OrderAggregate aggregate(OrderFilter filter) {
+        if (filter.getAggregate().trim().equalsIgnoreCase("COUNT")) {
+            return new OrderAggregate(null, count(filter));
         }
-        
-        if (filter.getExcludeCarrierName() != null && !filter.getExcludeCarrierName().trim().isEmpty()) {
-            List<String> words = Arrays.stream(filter.getExcludeCarrierName().trim().split("\\s+"))
-                .filter(word -> !word.isEmpty())
-                .collect(Collectors.toList());
-            
-            if (!words.isEmpty()) {
-                sql.append(" AND (car.name IS NULL OR NOT (");
-                for (int i = 0; i < words.size(); i++) {
-                    if (i > 0) {
-                        sql.append(" OR ");
-                    }
-                    sql.append("LOWER(car.name) LIKE LOWER(?)");
-                    params.add("%" + words.get(i) + "%");
-                }
-                sql.append("))");
-            }
+        CompiledQuery query = sqlCompiler.compileGroups(filter, MAX_GROUPS + 1);
+        List<OrderGroup> groups = new ArrayList<>(groupCounts.execute(query.key(),
+            () -> timed("groups", groupQueries, query, filter, () -> jdbcTemplate.query(query.sql(),
+                (rs, rowNum) -> new OrderGroup(rs.getString(1), rs.getLong(2)), query.params()), List::size)));
+
+        // The groups add up to the total unless some were cut off
+        if (groups.size() > MAX_GROUPS) {
+            groups.remove(MAX_GROUPS);
+            return new OrderAggregate(groups, count(filter));
         }
-        
-        if (filter.getExcludeService() != null && !filter.getExcludeService().isEmpty()) {
-            sql.append(" AND o.service NOT IN (");
-            for (int i = 0; i < filter.getExcludeService().size(); i++) {
-                if (i > 0) sql.append(", ");
-                sql.append("?");
-                params.add(filter.getExcludeService().get(i));
-            }
-            sql.append(")");
+        long totalCount = 0;
+        for (OrderGroup group : groups) {
+            totalCount += group.count();
         }
-        
-        if (filter.getExcludeCollectedBy() != null && !filter.getExcludeCollectedBy().isEmpty()) {
-            sql.append(" AND (o.collected_by_type IS NULL OR o.collected_by_type NOT IN (");
-            for (int i = 0; i < filter.getExcludeCollectedBy().size(); i++) {
-                if (i > 0) sql.append(", ");
-                sql.append("?");
-                params.add(filter.getExcludeCollectedBy().get(i));
-            }
-            sql.append("))");
+        return new OrderAggregate(groups, totalCount);
+    }
+
+    public OrderCursor stream(OrderFilter filter, OrderCursor cursor, Integer maxRows,
+                              Consumer<OrderRow> rowConsumer) {
+        return stream(filter, cursor, maxRows, OrderField.ALL, rowConsumer);
+    }
+
+    public OrderCursor stream(OrderFilter filter, OrderCursor cursor, Integer maxRows, Set<OrderField> fields,
+                              Consumer<OrderRow> rowConsumer) {
+        Set<OrderField> selected = OrderField.selected(fields);
+        CompiledQuery query = sqlCompiler.compile(filter, cursor, maxRows != null ? maxRows + 1 : null, selected);
+
+        // Forward-only cursor fetch: the driver holds at most STREAM_FETCH_SIZE rows at a time
+        PreparedStatementCreator statementCreator = con -> {
+            PreparedStatement ps = con.prepareStatement(query.sql(), ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            new ArgumentPreparedStatementSetter(query.params()).setValues(ps);
+            return ps;
+        };
+
+        StreamingRowHandler handler = new StreamingRowHandler(rowMapper.project(selected), maxRows, rowConsumer);
+        long start = System.nanoTime();
+        jdbcTemplate.query(statementCreator, handler);
+        // A slow reader holds the cursor open, so only the wait for the first row counts as query time
+        long firstRowAt = handler.rowCount > 0 ? handler.firstRowAt : System.nanoTime();
+        record("stream", streamQueries, query, filter, handler.rowCount, firstRowAt - start);
+        streamRows.record(handler.rowCount);
+        return handler.nextCursor;
+    }
+
+    private OrderCursor cursorOf(OrderRow order) {
+        return new OrderCursor(order.timeCreated().getTime(), order.id());
+    }
+
+    private class StreamingRowHandler implements RowCallbackHandler {
+
+        private final OrderRowMapper mapper;
+        private final Integer maxRows;
+        private final Consumer<OrderRow> rowConsumer;
+        private int rowCount;
+        private long firstRowAt;
+        private OrderRow lastRow;
+        private OrderCursor nextCursor;
+
+        StreamingRowHandler(OrderRowMapper mapper, Integer maxRows, Consumer<OrderRow> rowConsumer) {
+            this.mapper = mapper;
+            this.maxRows = maxRows;
+            this.rowConsumer = rowConsumer;
         }
-        
-        if (filter.getFlags() != null && !filter.getFlags().isEmpty()) {
-            sql.append(" AND (");
-            for (int i = 0; i < filter.getFlags().size(); i++) {
-                if (i > 0) sql.append(" OR ");
-                sql.append("FIND_IN_SET(?, o.flags) > 0");
-                params.add(filter.getFlags().get(i));
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            // The query fetches one row past maxRows only to learn whether another page exists
+            if (maxRows != null && rowCount == maxRows) {
+                nextCursor = cursorOf(lastRow);
+                return;
             }
-            sql.append(")");
-        }
-        
-        if (filter.getExcludeFlags() != null && !filter.getExcludeFlags().isEmpty()) {
-            sql.append(" AND (o.flags IS NULL OR ");
-            for (int i = 0; i < filter.getExcludeFlags().size(); i++) {
-                if (i > 0) sql.append(" AND ");
-                sql.append("FIND_IN_SET(?, o.flags) = 0");
-                params.add(filter.getExcludeFlags().get(i));
+            if (rowCount == 0) {
+                firstRowAt = System.nanoTime();
             }
-            sql.append(")");
+            OrderRow order = mapper.mapRow(rs, rowCount);
+            rowConsumer.accept(order);
+            lastRow = order;
+            rowCount++;
         }
-
-        sql.append(" ORDER BY o.time_created DESC");
-
-        return jdbcTemplate.query(sql.toString(), params.toArray(new Object[0]), (rs, rowNum) -> {
-            Map<String, Object> order = new HashMap<>();
-            order.put("id", rs.getLong("id"));
-            order.put("trackingNo", rs.getString("tracking_no"));
-            order.put("orderNo", rs.getString("order_no"));
-            order.put("service", rs.getString("service"));
-            order.put("status", rs.getString("status"));
-            order.put("collectedByType", rs.getString("collected_by_type"));
-            order.put("recipientPhone", rs.getString("recipient_phone"));
-            order.put("compartmentNo", rs.getObject("compartment_no") != null ? rs.getInt("compartment_no") : null);
-            order.put("timeCreated", rs.getTimestamp("time_created"));
-            order.put("timeStored", rs.getTimestamp("time_stored"));
-            order.put("timeCollected", rs.getTimestamp("time_collected"));
-            order.put("expiresAt", rs.getTimestamp("expires_at"));
-            order.put("flags", rs.getString("flags"));
-            order.put("locationName", rs.getString("location_name"));
-            order.put("locationType", rs.getString("location_type"));
-            order.put("city", rs.getString("city"));
-            order.put("companyName", rs.getString("company_name"));
-            order.put("carrierName", rs.getString("carrier_name"));
-            return order;
-        });
     }
 }
@@ -0,0 +1,517 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderCursor;
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.DimensionCache.DimensionIds;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Orders of the recent window held column-wise, row positions in (time_created, id) order so new orders
+// append, with one compressed bitmap of positions per enum value, dimension id, location type and flag.
+// A filter is evaluated as AND/OR/ANDNOT over those bitmaps, and a page is read from the highest matching
+// position down. Changes are applied through a Mutation, which copies only the bitmaps it touches.
+final class OrderSnapshot {
+
+    static final long NO_TIME = OrderChange.NO_TIME;
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+    private static final long NO_ID = -1;
+    private static final byte NO_VALUE = -1;
+
+    // Times are epoch seconds on the same basis as the JDBC timestamps (serverTimezone=UTC)
+    final long windowStart;
+    final long loadedAt;
+    private final int size;
+    private final long maxId;
+    private final Columns columns;
+    private final RoaringBitmap[] statuses;
+    private final RoaringBitmap[] services;
+    private final RoaringBitmap[] collectedBy;
+    private final RoaringBitmap[] flags;
+    private final Map<Long, RoaringBitmap> locations;
+    private final Map<Long, RoaringBitmap> companies;
+    private final Map<Long, RoaringBitmap> carriers;
+    private final Map<String, RoaringBitmap> locationTypes;
+    private final Map<Long, String> locationTypeOf;
+
+    private OrderSnapshot(Mutation mutation, long loadedAt) {
+        this.windowStart = mutation.base.windowStart;
+        this.loadedAt = loadedAt;
+        this.size = mutation.size;
+        this.maxId = mutation.maxId;
+        this.columns = mutation.columns;
+        this.statuses = mutation.statuses;
+        this.services = mutation.services;
+        this.collectedBy = mutation.collectedBy;
+        this.flags = mutation.flags;
+        this.locations = mutation.locations;
+        this.companies = mutation.companies;
+        this.carriers = mutation.carriers;
+        this.locationTypes = mutation.locationTypes;
+        this.locationTypeOf = mutation.base.locationTypeOf;
+    }
+
+    private OrderSnapshot(long windowStart, Map<Long, String> locationTypeOf) {
+        this.windowStart = windowStart;
+        this.loadedAt = 0;
+        this.size = 0;
+        this.maxId = 0;
+        this.columns = new Columns(1024);
+        this.statuses = bitmaps(OrderVocabulary.STATUSES.size());
+        this.services = bitmaps(OrderVocabulary.SERVICES.size());
+        this.collectedBy = bitmaps(OrderVocabulary.COLLECTED_BY.size());
+        this.flags = bitmaps(OrderVocabulary.FLAGS.size());
+        this.locations = new HashMap<>();
+        this.companies = new HashMap<>();
+        this.carriers = new HashMap<>();
+        this.locationTypes = new HashMap<>();
+        this.locationTypeOf = locationTypeOf;
+    }
+
+    // Starting point for a full load: every order created from windowStart on is upserted in page order
+    static OrderSnapshot empty(long windowStart, Map<Long, String> locationTypeOf) {
+        return new OrderSnapshot(windowStart, locationTypeOf);
+    }
+
+    Mutation mutate() {
+        return new Mutation(this);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Positions matching the filter, or null when it uses something only SQL can evaluate
+    RoaringBitmap matching(OrderFilter filter, DimensionIds dimensions) {
+        String dateField = filter.getDateField() != null ? filter.getDateField().trim().toUpperCase(Locale.ROOT) : "";
+        long from = NO_TIME;
+        long to = Long.MAX_VALUE;
+        if (isSet(filter.getDateFrom())) {
+            LocalDate date = OrderSqlCompiler.parseDate(filter.getDateFrom());
+            if (date == null) {
+                return null;
+            }
+            from = date.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        }
+        if (isSet(filter.getDateTo())) {
+            LocalDate date = OrderSqlCompiler.parseDate(filter.getDateTo());
+            if (date == null) {
+                return null;
+            }
+            to = date.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        }
+
+        // Everything required is intersected smallest first, then the exclusions are cut out of the result
+        List<RoaringBitmap> required = new ArrayList<>();
+        List<RoaringBitmap> excluded = new ArrayList<>();
+        boolean createdRange = !dateField.equals("STORED") && !dateField.equals("COLLECTED");
+        if (createdRange && (from != NO_TIME || to != Long.MAX_VALUE)) {
+            // Rows are sorted on time_created, so its range is one run of positions
+            required.add(RoaringBitmap.bitmapOfRange(firstAtOrAfter(from, Long.MIN_VALUE),
+                firstAtOrAfter(to, Long.MIN_VALUE)));
+        }
+
+        if (isSet(filter.getLocationType())) {
+            required.add(locationTypes.getOrDefault(upper(filter.getLocationType().trim()), EMPTY));
+        }
+        if (filter.getExcludeLocationType() != null) {
+            for (String type : filter.getExcludeLocationType()) {
+                excluded.add(locationTypes.getOrDefault(upper(type), EMPTY));
+            }
+        }
+        if (dimensions != null) {
+            restrict(required, excluded, locations, dimensions.locations(), dimensions.excludedLocations());
+            restrict(required, excluded, companies, dimensions.companies(), dimensions.excludedCompanies());
+            restrict(required, excluded, carriers, dimensions.carriers(), dimensions.excludedCarriers());
+        }
+
+        values(excluded, statuses, OrderVocabulary.STATUSES, filter.getExcludeStatus());
+        anyOf(required, services, OrderVocabulary.SERVICES, filter.getService());
+        values(excluded, services, OrderVocabulary.SERVICES, filter.getExcludeService());
+        anyOf(required, collectedBy, OrderVocabulary.COLLECTED_BY, filter.getCollectedBy());
+        values(excluded, collectedBy, OrderVocabulary.COLLECTED_BY, filter.getExcludeCollectedBy());
+        anyOf(required, flags, OrderVocabulary.FLAGS, filter.getFlags());
+        values(excluded, flags, OrderVocabulary.FLAGS, filter.getExcludeFlags());
+
+        RoaringBitmap rows;
+        if (required.isEmpty()) {
+            rows = RoaringBitmap.bitmapOfRange(0, size);
+        } else if (required.size() == 1) {
+            rows = required.get(0).clone();
+        } else {
+            rows = FastAggregation.and(required.iterator());
+        }
+        for (RoaringBitmap bitmap : excluded) {
+            rows.andNot(bitmap);
+        }
+
+        if (!createdRange && (from != NO_TIME || to != Long.MAX_VALUE)) {
+            // Stored and collected times are not sorted, so only the survivors are checked
+            long[] times = dateField.equals("STORED") ? columns.stored : columns.collected;
+            RoaringBitmap inRange = new RoaringBitmap();
+            IntIterator positions = rows.getIntIterator();
+            while (positions.hasNext()) {
+                int position = positions.next();
+                if (times[position] != NO_TIME && times[position] >= from && times[position] < to) {
+                    inRange.add(position);
+                }
+            }
+            rows = inRange;
+        }
+        return rows;
+    }
+
+    // Ids of up to maxRows matching positions before the cursor, newest first
+    List<Long> page(RoaringBitmap rows, OrderCursor cursor, int maxRows) {
+        List<Long> page = new ArrayList<>(Math.min(maxRows, 64));
+        int start = cursor == null
+            ? size
+            : firstAtOrAfter(cursor.getTimeCreated().getTime() / 1000, cursor.getId());
+        long position = start > 0 ? rows.previousValue(start - 1) : -1;
+        while (position >= 0 && page.size() < maxRows) {
+            page.add(columns.ids[(int) position]);
+            position = position > 0 ? rows.previousValue((int) position - 1) : -1;
+        }
+        return page;
+    }
+
+    // Whether every order matching a filter with this created lower bound is inside the window
+    boolean covers(OrderFilter filter) {
+        String dateField = filter.getDateField() != null ? filter.getDateField().trim().toUpperCase(Locale.ROOT) : "";
+        if (dateField.equals("STORED") || dateField.equals("COLLECTED") || !isSet(filter.getDateFrom())) {
+            return false;
+        }
+        LocalDate from = OrderSqlCompiler.parseDate(filter.getDateFrom());
+        return from != null && from.atStartOfDay().toEpochSecond(ZoneOffset.UTC) >= windowStart;
+    }
+
+    // First position at or after (timeCreated, id), size when there is none
+    private int firstAtOrAfter(long timeCreated, long id) {
+        return firstAtOrAfter(columns, size, timeCreated, id);
+    }
+
+    private static int firstAtOrAfter(Columns columns, int size, long timeCreated, long id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long created = columns.created[mid];
+            if (created > timeCreated || (created == timeCreated && columns.ids[mid] >= id)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static void restrict(List<RoaringBitmap> required, List<RoaringBitmap> excluded,
+                                 Map<Long, RoaringBitmap> byId, Set<Long> included, Set<Long> excludedIds) {
+        if (included != null) {
+            List<RoaringBitmap> any = new ArrayList<>(included.size());
+            for (Long id : included) {
+                any.add(byId.getOrDefault(id, EMPTY));
+            }
+            required.add(FastAggregation.or(any.iterator()));
+        }
+        for (Long id : excludedIds) {
+            RoaringBitmap bitmap = byId.get(id);
+            if (bitmap != null) {
+                excluded.add(bitmap);
+            }
+        }
+    }
+
+    // Values outside the vocabulary match no row
+    private static void anyOf(List<RoaringBitmap> required, RoaringBitmap[] byValue, List<String> vocabulary,
+                              List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        List<RoaringBitmap> any = new ArrayList<>(values.size());
+        values(any, byValue, vocabulary, values);
+        required.add(any.isEmpty() ? EMPTY : FastAggregation.or(any.iterator()));
+    }
+
+    private static void values(List<RoaringBitmap> bitmaps, RoaringBitmap[] byValue, List<String> vocabulary,
+                               List<String> values) {
+        if (values == null) {
+            return;
+        }
+        for (String value : values) {
+            int ordinal = value != null ? vocabulary.indexOf(upper(value.trim())) : -1;
+            if (ordinal >= 0) {
+                bitmaps.add(byValue[ordinal]);
+            }
+        }
+    }
+
+    private static String upper(String value) {
+        return value.toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    private static RoaringBitmap[] bitmaps(int count) {
+        RoaringBitmap[] bitmaps = new RoaringBitmap[count];
+        for (int i = 0; i < count; i++) {
+            bitmaps[i] = new RoaringBitmap();
+        }
+        return bitmaps;
+    }
+
+    private static byte ordinal(List<String> vocabulary, String value) {
+        return (byte) (value != null ? vocabulary.indexOf(value) : NO_VALUE);
+    }
+
+    // Row values by position. Arrays are shared with the snapshot a mutation started from and only grow
+    // into new arrays, so older snapshots, which never read past their own size, stay consistent.
+    private static final class Columns {
+
+        final long[] ids;
+        final long[] created;
+        final long[] stored;
+        final long[] collected;
+        final long[] updated;
+        final long[] locationIds;
+        final long[] companyIds;
+        final long[] carrierIds;
+        final byte[] statuses;
+        final byte[] services;
+        final byte[] collectedBy;
+        final byte[] flagMasks;
+
+        Columns(int capacity) {
+            this(new long[capacity], new long[capacity], new long[capacity], new long[capacity], new long[capacity],
+                new long[capacity], new long[capacity], new long[capacity], new byte[capacity], new byte[capacity],
+                new byte[capacity], new byte[capacity]);
+        }
+
+        private Columns(long[] ids, long[] created, long[] stored, long[] collected, long[] updated,
+                        long[] locationIds, long[] companyIds, long[] carrierIds, byte[] statuses, byte[] services,
+                        byte[] collectedBy, byte[] flagMasks) {
+            this.ids = ids;
+            this.created = created;
+            this.stored = stored;
+            this.collected = collected;
+            this.updated = updated;
+            this.locationIds = locationIds;
+            this.companyIds = companyIds;
+            this.carrierIds = carrierIds;
+            this.statuses = statuses;
+            this.services = services;
+            this.collectedBy = collectedBy;
+            this.flagMasks = flagMasks;
+        }
+
+        int capacity() {
+            return ids.length;
+        }
+
+        Columns grow() {
+            int capacity = capacity() * 2;
+            return new Columns(Arrays.copyOf(ids, capacity), Arrays.copyOf(created, capacity),
+                Arrays.copyOf(stored, capacity), Arrays.copyOf(collected, capacity), Arrays.copyOf(updated, capacity),
+                Arrays.copyOf(locationIds, capacity), Arrays.copyOf(companyIds, capacity),
+                Arrays.copyOf(carrierIds, capacity), Arrays.copyOf(statuses, capacity),
+                Arrays.copyOf(services, capacity), Arrays.copyOf(collectedBy, capacity),
+                Arrays.copyOf(flagMasks, capacity));
+        }
+    }
+
+    // Upserts order rows into a copy of a snapshot. Not thread-safe, and at most one mutation per snapshot
+    // may be published, since in-place column writes are visible to the snapshot it started from.
+    final class Mutation {
+
+        private final OrderSnapshot base = OrderSnapshot.this;
+        private final Set<RoaringBitmap> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+        private Columns columns;
+        private int size;
+        private long maxId;
+        private boolean stale;
+        private final RoaringBitmap[] statuses;
+        private final RoaringBitmap[] services;
+        private final RoaringBitmap[] collectedBy;
+        private final RoaringBitmap[] flags;
+        private final Map<Long, RoaringBitmap> locations;
+        private final Map<Long, RoaringBitmap> companies;
+        private final Map<Long, RoaringBitmap> carriers;
+        private final Map<String, RoaringBitmap> locationTypes;
+
+        private Mutation(OrderSnapshot base) {
+            this.columns = base.columns;
+            this.size = base.size;
+            this.maxId = base.maxId;
+            this.statuses = base.statuses.clone();
+            this.services = base.services.clone();
+            this.collectedBy = base.collectedBy.clone();
+            this.flags = base.flags.clone();
+            this.locations = new HashMap<>(base.locations);
+            this.companies = new HashMap<>(base.companies);
+            this.carriers = new HashMap<>(base.carriers);
+            this.locationTypes = new HashMap<>(base.locationTypes);
+        }
+
+        // Whether every change can be upserted. Checked before writing, because writes to existing rows
+        // land in the shared columns and a half-applied batch would leave them out of step with the bitmaps.
+        boolean placeable(List<OrderChange> changes) {
+            long lastCreated = size > 0 ? columns.created[size - 1] : Long.MIN_VALUE;
+            long lastId = size > 0 ? columns.ids[size - 1] : Long.MIN_VALUE;
+            long highestId = maxId;
+            for (OrderChange change : changes) {
+                int position = firstAtOrAfter(columns, size, change.timeCreated(), change.id());
+                if ((position < size && columns.ids[position] == change.id()
+                    && columns.created[position] == change.timeCreated())
+                    || change.timeCreated() < base.windowStart) {
+                    continue;
+                }
+                boolean inOrder = change.timeCreated() > lastCreated
+                    || (change.timeCreated() == lastCreated && change.id() > lastId);
+                if (!inOrder || (base.size > 0 && change.id() <= highestId)) {
+                    return false;
+                }
+                lastCreated = change.timeCreated();
+                lastId = change.id();
+                highestId = Math.max(highestId, change.id());
+            }
+            return true;
+        }
+
+        // Rows are matched on (time_created, id); a change older than what the snapshot holds is ignored
+        void upsert(OrderChange change) {
+            if (stale) {
+                return;
+            }
+            int position = firstAtOrAfter(columns, size, change.timeCreated(), change.id());
+            if (position < size && columns.ids[position] == change.id()
+                && columns.created[position] == change.timeCreated()) {
+                if (updatedMillis(change) >= columns.updated[position]) {
+                    write(position, change, false);
+                }
+            } else if (change.timeCreated() < base.windowStart) {
+                // Never part of the window
+            } else if (position < size || (base.size > 0 && change.id() <= maxId)) {
+                // Inserted out of order, or an existing order whose time_created moved: positions no longer fit
+                stale = true;
+            } else {
+                if (size == columns.capacity()) {
+                    columns = columns.grow();
+                }
+                maxId = Math.max(maxId, change.id());
+                write(size++, change, true);
+            }
+        }
+
+        // The new snapshot, or null when a change could not be placed and a full load is needed
+        OrderSnapshot publish(long loadedAt) {
+            if (stale) {
+                return null;
+            }
+            copied.forEach(RoaringBitmap::runOptimize);
+            return new OrderSnapshot(this, loadedAt);
+        }
+
+        private void write(int position, OrderChange change, boolean added) {
+            Columns c = columns;
+            if (!added) {
+                unmark(statuses, c.statuses[position], position);
+                unmark(services, c.services[position], position);
+                unmark(collectedBy, c.collectedBy[position], position);
+                for (int bit = 0; bit < flags.length; bit++) {
+                    if ((c.flagMasks[position] & 1 << bit) != 0) {
+                        writable(flags, bit).remove(position);
+                    }
+                }
+                writable(locations, c.locationIds[position]).remove(position);
+                String type = base.locationTypeOf.get(c.locationIds[position]);
+                if (type != null) {
+                    writable(locationTypes, type).remove(position);
+                }
+                writable(companies, c.companyIds[position]).remove(position);
+                if (c.carrierIds[position] != NO_ID) {
+                    writable(carriers, c.carrierIds[position]).remove(position);
+                }
+            }
+
+            c.ids[position] = change.id();
+            c.created[position] = change.timeCreated();
+            c.stored[position] = change.timeStored();
+            c.collected[position] = change.timeCollected();
+            c.updated[position] = updatedMillis(change);
+            c.statuses[position] = ordinal(OrderVocabulary.STATUSES, change.status());
+            c.services[position] = ordinal(OrderVocabulary.SERVICES, change.service());
+            c.collectedBy[position] = ordinal(OrderVocabulary.COLLECTED_BY, change.collectedByType());
+            c.flagMasks[position] = (byte) change.flagMask();
+            c.locationIds[position] = change.locationId();
+            c.companyIds[position] = change.companyId();
+            c.carrierIds[position] = change.carrierId() != null ? change.carrierId() : NO_ID;
+
+            mark(statuses, c.statuses[position], position);
+            mark(services, c.services[position], position);
+            mark(collectedBy, c.collectedBy[position], position);
+            for (int bit = 0; bit < flags.length; bit++) {
+                if ((change.flagMask() & 1 << bit) != 0) {
+                    writable(flags, bit).add(position);
+                }
+            }
+            writable(locations, change.locationId()).add(position);
+            String type = base.locationTypeOf.get(change.locationId());
+            if (type != null) {
+                writable(locationTypes, type).add(position);
+            }
+            writable(companies, change.companyId()).add(position);
+            if (change.carrierId() != null) {
+                writable(carriers, change.carrierId()).add(position);
+            }
+        }
+
+        private void mark(RoaringBitmap[] byValue, byte ordinal, int position) {
+            if (ordinal != NO_VALUE) {
+                writable(byValue, ordinal).add(position);
+            }
+        }
+
+        private void unmark(RoaringBitmap[] byValue, byte ordinal, int position) {
+            if (ordinal != NO_VALUE) {
+                writable(byValue, ordinal).remove(position);
+            }
+        }
+
+        // The base snapshot's bitmaps are never modified: the first write to one goes to a copy
+        private RoaringBitmap writable(RoaringBitmap[] bitmaps, int index) {
+            if (!copied.contains(bitmaps[index])) {
+                bitmaps[index] = bitmaps[index].clone();
+                copied.add(bitmaps[index]);
+            }
+            return bitmaps[index];
+        }
+
+        private <K> RoaringBitmap writable(Map<K, RoaringBitmap> bitmaps, K key) {
+            RoaringBitmap bitmap = bitmaps.get(key);
+            if (bitmap == null || !copied.contains(bitmap)) {
+                bitmap = bitmap == null ? new RoaringBitmap() : bitmap.clone();
+                bitmaps.put(key, bitmap);
+                copied.add(bitmap);
+            }
+            return bitmap;
+        }
+
+        private static long updatedMillis(OrderChange change) {
+            return change.updatedAt() != null ? change.updatedAt().getTime() : 0;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderCursor;
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Optional in-process search over the recent orders (search.snapshot.enabled). Searches it cannot answer
+// exactly return empty and go to SQL: a page that runs past the window, a count without a created-date
+// lower bound inside the window, or a date it cannot parse. Kept current from the order change feed and
+// fully reloaded in the background every search.snapshot.refresh, or when a change cannot be placed.
+// The snapshot only picks ids: their rows are read with the filter applied again, and a page that loses a
+// row that way is read in SQL. An order that has only just started to match can still be missing from a
+// page until the change feed delivers it, one search.change-feed.interval at most while the feed keeps up.
+@Component
+public class OrderSnapshotEngine implements OrderChangeFeed.Listener {
+
+    private static final String LOAD_QUERY = "SELECT\n" + OrderChange.COLUMNS + """
+            FROM orders o
+            WHERE o.time_created >= ?
+            ORDER BY o.time_created, o.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DimensionCache dimensionCache;
+    private final OrderChangeFeed changeFeed;
+    private final boolean enabled;
+    private final Duration window;
+    private final long refreshMillis;
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final Object changeLock = new Object();
+    private final Counter answered;
+    private final Counter fellBack;
+    private final Counter appliedChanges;
+    private final Counter forcedReloads;
+    private final Timer loads;
+    private final Counter failedLoads;
+    private final Counter supersededLoads;
+    private volatile OrderSnapshot snapshot;
+    private List<OrderChange> changesDuringLoad;
+
+    @Autowired
+    public OrderSnapshotEngine(JdbcTemplate jdbcTemplate, DimensionCache dimensionCache, OrderChangeFeed changeFeed,
+                               MeterRegistry meterRegistry,
+                               @Value("${search.snapshot.enabled:false}") boolean enabled,
+                               @Value("${search.snapshot.window:P90D}") Duration window,
+                               @Value("${search.snapshot.refresh:PT1H}") Duration refresh) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dimensionCache = dimensionCache;
+        this.changeFeed = changeFeed;
+        this.enabled = enabled;
+        this.window = window;
+        this.refreshMillis = refresh.toMillis();
+        this.answered = Counter.builder("search.snapshot.queries")
+            .description("Searches and counts offered to the order snapshot")
+            .tag("result", "answered")
+            .register(meterRegistry);
+        this.fellBack = Counter.builder("search.snapshot.queries")
+            .description("Searches and counts offered to the order snapshot")
+            .tag("result", "sql")
+            .register(meterRegistry);
+        this.appliedChanges = Counter.builder("search.snapshot.changes")
+            .description("Changed orders applied to the order snapshot without a reload")
+            .register(meterRegistry);
+        this.forcedReloads = Counter.builder("search.snapshot.forced.reloads")
+            .description("Reloads started because a changed order could not be placed in the snapshot")
+            .register(meterRegistry);
+        this.loads = Timer.builder("search.snapshot.load")
+            .description("Full snapshot loads that were published")
+            .register(meterRegistry);
+        this.failedLoads = Counter.builder("search.snapshot.load.failures")
+            .description("Snapshot loads that did not replace the previous copy")
+            .tag("reason", "error")
+            .register(meterRegistry);
+        this.supersededLoads = Counter.builder("search.snapshot.load.failures")
+            .description("Snapshot loads that did not replace the previous copy")
+            .tag("reason", "superseded")
+            .register(meterRegistry);
+        meterRegistry.gauge("search.snapshot.rows", this, engine -> {
+            OrderSnapshot current = engine.snapshot;
+            return current != null ? current.size() : 0;
+        });
+    }
+
+    // Ids of the next maxRows matches in page order, when the snapshot alone can tell them
+    public Optional<List<Long>> pageIds(OrderFilter filter, OrderCursor cursor, int maxRows) {
+        OrderSnapshot current = current();
+        RoaringBitmap rows = current != null ? current.matching(filter, dimensionCache.resolve(filter)) : null;
+        if (rows != null) {
+            List<Long> ids = current.page(rows, cursor, maxRows);
+            // A short page is only complete when nothing older than the window could match
+            if (ids.size() == maxRows || current.covers(filter)) {
+                answered.increment();
+                return Optional.of(ids);
+            }
+        }
+        fellBack.increment();
+        return Optional.empty();
+    }
+
+    public OptionalLong count(OrderFilter filter) {
+        OrderSnapshot current = current();
+        if (current != null && current.covers(filter)) {
+            RoaringBitmap rows = current.matching(filter, dimensionCache.resolve(filter));
+            if (rows != null) {
+                answered.increment();
+                return OptionalLong.of(rows.getLongCardinality());
+            }
+        }
+        fellBack.increment();
+        return OptionalLong.empty();
+    }
+
+    // Never blocks: until the first load finishes every search goes to SQL
+    private OrderSnapshot current() {
+        if (!enabled) {
+            return null;
+        }
+        OrderSnapshot current = snapshot;
+        if ((current == null || System.currentTimeMillis() >= current.loadedAt + refreshMillis)
+            && loading.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("order-snapshot-load").start(this::reload);
+        }
+        return current;
+    }
+
+    @Override
+    public void onOrderChanges(List<OrderChange> changes) {
+        synchronized (changeLock) {
+            if (changesDuringLoad != null) {
+                changesDuringLoad.addAll(changes);
+            }
+            OrderSnapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            OrderSnapshot.Mutation mutation = current.mutate();
+            if (mutation.placeable(changes)) {
+                changes.forEach(mutation::upsert);
+                snapshot = mutation.publish(current.loadedAt);
+                appliedChanges.increment(changes.size());
+            } else if (loading.compareAndSet(false, true)) {
+                forcedReloads.increment();
+                Thread.ofVirtual().name("order-snapshot-load").start(this::reload);
+            }
+        }
+    }
+
+    void reload() {
+        try {
+            // Subscribed before loading, so nothing committed during the load is missed; changes that
+            // arrive meanwhile are replayed onto the new snapshot, where older ones are ignored
+            if (subscribed.compareAndSet(false, true)) {
+                changeFeed.subscribe(this);
+            }
+            synchronized (changeLock) {
+                changesDuringLoad = new ArrayList<>();
+            }
+            long started = System.currentTimeMillis();
+            OrderSnapshot loaded = load(started);
+            synchronized (changeLock) {
+                OrderSnapshot.Mutation mutation = loaded.mutate();
+                changesDuringLoad.forEach(mutation::upsert);
+                OrderSnapshot next = mutation.publish(started);
+                if (next != null) {
+                    snapshot = next;
+                    loads.record(System.currentTimeMillis() - started, TimeUnit.MILLISECONDS);
+                } else {
+                    supersededLoads.increment();
+                }
+            }
+        } catch (RuntimeException e) {
+            // Searches keep going to SQL meanwhile
+            System.err.println("Order snapshot load failed, searches use SQL meanwhile: " + e);
+            failedLoads.increment();
+        } finally {
+            synchronized (changeLock) {
+                changesDuringLoad = null;
+            }
+            loading.set(false);
+        }
+    }
+
+    OrderSnapshot load(long now) {
+        Map<Long, String> locationTypeOf = new HashMap<>();
+        jdbcTemplate.query("SELECT id, location_type FROM locations", rs -> {
+            locationTypeOf.put(rs.getLong(1), rs.getString(2));
+        });
+
+        long windowStart = (now - window.toMillis()) / 1000;
+        OrderSnapshot.Mutation mutation = OrderSnapshot.empty(windowStart, locationTypeOf).mutate();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOAD_QUERY, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(OrderSearchService.STREAM_FETCH_SIZE);
+            ps.setTimestamp(1, new Timestamp(windowStart * 1000));
+            return ps;
+        }, rs -> {
+            mutation.upsert(OrderChange.map(rs));
+        });
+        return mutation.publish(now);
+    }
+}
@@ -0,0 +1,561 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderCursor;
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.Counter;
+import com.example.ai_nl_search.service.DimensionCache.DimensionIds;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class OrderSqlCompiler {
+
+    static final int MAX_CACHED_SHAPES = 2048;
+    // Longer id lists (a broad word matching most locations, say) are matched with LIKE on the joined table
+    static final int MAX_ID_LIST = 256;
+
+    private static final Set<OrderField> NO_FIELDS = EnumSet.noneOf(OrderField.class);
+
+    record CompiledQuery(String sql, Object[] params) {
+
+        // Equal for two queries that return the same rows
+        List<Object> key() {
+            List<Object> key = new ArrayList<>(params.length + 1);
+            key.add(sql);
+            key.addAll(Arrays.asList(params));
+            return key;
+        }
+    }
+
+    // SQL text per filter shape: which fields are set and how many values or words each one carries. Least
+    // recently used shapes are evicted, so one-off shapes cannot crowd out the hot ones for good.
+    private final Map<String, String> shapeCache;
+    private final Counter hits;
+    private final Counter misses;
+    private final DimensionCache dimensionCache;
+
+    OrderSqlCompiler(MeterRegistry meterRegistry, DimensionCache dimensionCache) {
+        this(meterRegistry, dimensionCache, MAX_CACHED_SHAPES);
+    }
+
+    OrderSqlCompiler(MeterRegistry meterRegistry, DimensionCache dimensionCache, int maxCachedShapes) {
+        this.dimensionCache = dimensionCache;
+        this.shapeCache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxCachedShapes;
+            }
+        };
+        this.hits = Counter.builder("search.sql.shape.cache")
+            .description("SQL shape cache lookups")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.misses = Counter.builder("search.sql.shape.cache")
+            .description("SQL shape cache lookups")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        meterRegistry.gauge("search.sql.shape.cache.size", this, OrderSqlCompiler::cachedShapes);
+    }
+
+    int cachedShapes() {
+        synchronized (shapeCache) {
+            return shapeCache.size();
+        }
+    }
+
+    private String cachedSql(String key) {
+        String sql;
+        synchronized (shapeCache) {
+            sql = shapeCache.get(key);
+        }
+        (sql != null ? hits : misses).increment();
+        return sql;
+    }
+
+    private void cacheSql(String key, String sql) {
+        synchronized (shapeCache) {
+            shapeCache.putIfAbsent(key, sql);
+        }
+    }
+
+    CompiledQuery compile(OrderFilter filter, OrderCursor cursor, Integer limit) {
+        return compile(filter, cursor, limit, OrderField.ALL);
+    }
+
+    // Only the selected fields are read, and only the tables they (or the filter) need are joined
+    CompiledQuery compile(OrderFilter filter, OrderCursor cursor, Integer limit, Set<OrderField> selected) {
+        return compile("r" + OrderField.mask(selected) + "|", selectList(selected), selected, null, filter, cursor,
+            limit, true, null);
+    }
+
+    // Total matches for the filter, without keyset predicate, ordering or limit
+    CompiledQuery compileCount(OrderFilter filter) {
+        return compile("n|", "SELECT COUNT(*)\n", NO_FIELDS, null, filter, null, null, false, null);
+    }
+
+    // Matches per value of the filter's aggregate, at most maxGroups rows of (group_key, order_count):
+    // largest groups first, or in date order for DAY and WEEK
+    CompiledQuery compileGroups(OrderFilter filter, int maxGroups) {
+        String aggregate = filter.getAggregate().trim().toUpperCase();
+        String dateColumn = dateColumn(filter.getDateField());
+        Grouping grouping = grouping(aggregate, dateColumn);
+        String select = "SELECT " + grouping.key() + " AS group_key, COUNT(*) AS order_count\n";
+        String tail = " GROUP BY " + grouping.groupBy()
+            + (grouping.dated() ? " ORDER BY group_key" : " ORDER BY order_count DESC, group_key");
+        return compile("g" + aggregate + "|" + dateColumn + "|", select, NO_FIELDS, aggregate, filter, null,
+            maxGroups, false, tail);
+    }
+
+    // Rows of a page whose ids were already picked (and ordered) by the order snapshot. The filter's
+    // predicates are applied again, so an order that changed since the snapshot saw it is left out.
+    CompiledQuery compileIds(OrderFilter filter, List<Long> ids, Set<OrderField> selected) {
+        DimensionIds dimensions = dimensionCache.resolve(filter);
+        Shape shape = new Shape(null);
+        shape.key.append('i').append(OrderField.mask(selected)).append('|');
+        idList(shape, "i", " AND o.id IN (", ids, ")");
+        appendPredicates(shape, filter, dimensions, null, null, false, null);
+        String key = shape.key.toString();
+        String sql = cachedSql(key);
+        if (sql == null) {
+            Shape render = new Shape(new StringBuilder(selectList(selected))
+                .append(fromClause(selected, null, filter, dimensions)));
+            idList(render, "i", " AND o.id IN (", ids, ")");
+            appendPredicates(render, filter, dimensions, null, null, false, null);
+            render.append(" ORDER BY o.time_created DESC, o.id DESC");
+            sql = render.sql.toString();
+            cacheSql(key, sql);
+        }
+        return new CompiledQuery(sql, shape.params.toArray());
+    }
+
+    private CompiledQuery compile(String kind, String select, Set<OrderField> selected, String aggregate,
+                                  OrderFilter filter, OrderCursor cursor, Integer limit, boolean ordered,
+                                  String grouping) {
+        DimensionIds dimensions = dimensionCache.resolve(filter);
+        // First pass only collects the shape key and the bind values
+        Shape shape = new Shape(null);
+        shape.key.append(kind);
+        appendPredicates(shape, filter, dimensions, cursor, limit, ordered, grouping);
+        String key = shape.key.toString();
+        Object[] params = shape.params.toArray();
+
+        String sql = cachedSql(key);
+        if (sql != null) {
+            return new CompiledQuery(sql, params);
+        }
+
+        Shape render = new Shape(new StringBuilder(select)
+            .append(fromClause(selected, aggregate, filter, dimensions)));
+        appendPredicates(render, filter, dimensions, cursor, limit, ordered, grouping);
+        sql = render.sql.toString();
+        cacheSql(key, sql);
+        return new CompiledQuery(sql, params);
+    }
+
+    private static String selectList(Set<OrderField> selected) {
+        StringBuilder select = new StringBuilder("SELECT\n");
+        String separator = "    ";
+        for (OrderField field : selected) {
+            select.append(separator).append(field.column);
+            separator = ",\n    ";
+        }
+        return select.append('\n').toString();
+    }
+
+    // orders.location_id and company_id are NOT NULL foreign keys, so leaving out an inner join that no
+    // selected field, predicate or grouping reads never changes which orders match. Everything that decides
+    // the joins is also part of the shape key.
+    private static String fromClause(Set<OrderField> selected, String aggregate, OrderFilter filter,
+                                     DimensionIds dimensions) {
+        boolean locations = selected.contains(OrderField.LOCATION_NAME) || selected.contains(OrderField.LOCATION_TYPE)
+            || selected.contains(OrderField.CITY) || "LOCATION".equals(aggregate) || "CITY".equals(aggregate)
+            || (filter != null && filtersLocationType(filter))
+            || (dimensions != null && matchesByName(dimensions.locations(), dimensions.excludedLocations()));
+        boolean companies = selected.contains(OrderField.COMPANY_NAME) || "COMPANY".equals(aggregate)
+            || (dimensions != null && matchesByName(dimensions.companies(), dimensions.excludedCompanies()));
+        boolean carriers = selected.contains(OrderField.CARRIER_NAME) || "CARRIER".equals(aggregate)
+            || (dimensions != null && matchesByName(dimensions.carriers(), dimensions.excludedCarriers()));
+
+        StringBuilder from = new StringBuilder("FROM orders o\n");
+        if (locations) {
+            from.append("INNER JOIN locations l ON o.location_id = l.id\n");
+        }
+        if (companies) {
+            from.append("INNER JOIN companies c ON o.company_id = c.id\n");
+        }
+        if (carriers) {
+            from.append("LEFT JOIN carriers car ON o.carrier_id = car.id\n");
+        }
+        return from.append("WHERE 1=1\n").toString();
+    }
+
+    private static boolean filtersLocationType(OrderFilter filter) {
+        return (filter.getLocationType() != null && !filter.getLocationType().trim().isEmpty())
+            || (filter.getExcludeLocationType() != null && !filter.getExcludeLocationType().isEmpty());
+    }
+
+    private static void appendPredicates(Shape q, OrderFilter filter, DimensionIds dimensions, OrderCursor cursor,
+                                         Integer limit, boolean ordered, String grouping) {
+        appendDimensions(q, filter, dimensions);
+
+        if (filter.getLocationType() != null && !filter.getLocationType().trim().isEmpty()) {
+            value(q, "lt", " AND l.location_type = ?", filter.getLocationType().trim());
+        }
+
+        // Half-open range on the bare column so its index stays usable: [from 00:00, day after to 00:00)
+        String dateColumn = dateColumn(filter.getDateField());
+        if (filter.getDateFrom() != null && !filter.getDateFrom().trim().isEmpty()) {
+            LocalDate from = parseDate(filter.getDateFrom());
+            if (from != null) {
+                value(q, "df" + dateColumn, " AND " + dateColumn + " >= ?", from);
+            } else {
+                value(q, "dfs" + dateColumn, " AND DATE(" + dateColumn + ") >= ?", filter.getDateFrom().trim());
+            }
+        }
+        if (filter.getDateTo() != null && !filter.getDateTo().trim().isEmpty()) {
+            LocalDate to = parseDate(filter.getDateTo());
+            if (to != null) {
+                value(q, "dt" + dateColumn, " AND " + dateColumn + " < ?", to.plusDays(1));
+            } else {
+                value(q, "dts" + dateColumn, " AND DATE(" + dateColumn + ") <= ?", filter.getDateTo().trim());
+            }
+        }
+
+        values(q, "xs", " AND o.status NOT IN (", "?", ", ", ")", filter.getExcludeStatus());
+        values(q, "sv", " AND o.service IN (", "?", ", ", ")", filter.getService());
+        values(q, "cb", " AND o.collected_by_type IN (", "?", ", ", ")", filter.getCollectedBy());
+
+        values(q, "xlt", " AND l.location_type NOT IN (", "?", ", ", ")", filter.getExcludeLocationType());
+        values(q, "xsv", " AND o.service NOT IN (", "?", ", ", ")", filter.getExcludeService());
+        values(q, "xcb", " AND (o.collected_by_type IS NULL OR o.collected_by_type NOT IN (", "?", ", ", "))",
+            filter.getExcludeCollectedBy());
+
+        appendFlags(q, filter.getFlags(), filter.getExcludeFlags());
+
+        if (!ordered) {
+            if (grouping != null) {
+                q.append(grouping);
+                value(q, "l", " LIMIT ?", limit);
+            }
+            return;
+        }
+
+        // Keyset pagination: continue strictly after the last (time_created, id) of the previous page
+        if (cursor != null) {
+            q.key.append("k|");
+            q.params.add(cursor.getTimeCreated());
+            q.params.add(cursor.getTimeCreated());
+            q.params.add(cursor.getId());
+            q.append(" AND (o.time_created < ? OR (o.time_created = ? AND o.id < ?))");
+        }
+
+        q.append(" ORDER BY o.time_created DESC, o.id DESC");
+        if (limit != null) {
+            value(q, "l", " LIMIT ?", limit);
+        }
+    }
+
+    // Name and city words are matched against the cached dimension tables, so the orders query only
+    // sees id lists on its indexed foreign keys. A side whose list would be longer than MAX_ID_LIST keeps
+    // the words and matches them with LIKE on the joined table instead, as before the cache.
+    private static void appendDimensions(Shape q, OrderFilter filter, DimensionIds dimensions) {
+        if (dimensions == null) {
+            return;
+        }
+        Set<Long> locations = dimensions.locations();
+        Set<Long> excludedLocations = dimensions.excludedLocations();
+        if (likeIncluded(locations)) {
+            like(q, "ln", " AND (", "l.name", " AND ", searchWords(filter.getLocationName()), ")");
+            like(q, "lc", " AND (", "l.city", " AND ", searchWords(filter.getCity()), ")");
+            locations = null;
+        }
+        if (likeExcluded(locations, excludedLocations)) {
+            like(q, "xln", " AND NOT (", "l.name", " OR ", searchWords(filter.getExcludeLocationName()), ")");
+            like(q, "xlc", " AND NOT (", "l.city", " OR ", searchWords(filter.getExcludeCity()), ")");
+            excludedLocations = Set.of();
+        }
+        ids(q, "lo", "o.location_id", false, locations, excludedLocations);
+
+        Set<Long> companies = dimensions.companies();
+        Set<Long> excludedCompanies = dimensions.excludedCompanies();
+        if (likeIncluded(companies)) {
+            like(q, "cn", " AND (", "c.name", " AND ", searchWords(filter.getCompanyName()), ")");
+            companies = null;
+        }
+        if (likeExcluded(companies, excludedCompanies)) {
+            like(q, "xcn", " AND NOT (", "c.name", " OR ", searchWords(filter.getExcludeCompanyName()), ")");
+            excludedCompanies = Set.of();
+        }
+        ids(q, "co", "o.company_id", false, companies, excludedCompanies);
+
+        // Orders without a carrier never match a carrier name and always survive a carrier exclusion
+        Set<Long> carriers = dimensions.carriers();
+        Set<Long> excludedCarriers = dimensions.excludedCarriers();
+        if (likeIncluded(carriers)) {
+            like(q, "can", " AND (", "car.name", " AND ", searchWords(filter.getCarrierName()), ")");
+            carriers = null;
+        }
+        if (likeExcluded(carriers, excludedCarriers)) {
+            like(q, "xcan", " AND (car.name IS NULL OR NOT (", "car.name", " OR ",
+                searchWords(filter.getExcludeCarrierName()), "))");
+            excludedCarriers = Set.of();
+        }
+        ids(q, "ca", "o.carrier_id", true, carriers, excludedCarriers);
+    }
+
+    private static boolean likeIncluded(Set<Long> included) {
+        return included != null && included.size() > MAX_ID_LIST;
+    }
+
+    // An inclusion list already leaves out the excluded ids, so exclusions only need their own predicate
+    // when there is no inclusion list
+    private static boolean likeExcluded(Set<Long> included, Set<Long> excluded) {
+        return excluded.size() > MAX_ID_LIST && (included == null || likeIncluded(included));
+    }
+
+    private static boolean matchesByName(Set<Long> included, Set<Long> excluded) {
+        return likeIncluded(included) || likeExcluded(included, excluded);
+    }
+
+    private static void like(Shape q, String code, String open, String column, String separator,
+                             List<String> words, String close) {
+        if (words.isEmpty()) {
+            return;
+        }
+        q.key.append(code).append(words.size()).append('|');
+        for (String word : words) {
+            q.params.add("%" + word + "%");
+        }
+        if (q.sql != null) {
+            q.sql.append(open);
+            for (int i = 0; i < words.size(); i++) {
+                if (i > 0) {
+                    q.sql.append(separator);
+                }
+                q.sql.append("LOWER(").append(column).append(") LIKE LOWER(?)");
+            }
+            q.sql.append(close);
+        }
+    }
+
+    // included == null means no inclusion filter on this dimension
+    private static void ids(Shape q, String code, String column, boolean nullable, Set<Long> included,
+                            Set<Long> excluded) {
+        if (included != null) {
+            if (included.isEmpty()) {
+                q.key.append(code).append("0|");
+                q.append(" AND 1=0");
+                return;
+            }
+            idList(q, code, " AND " + column + " IN (", included, ")");
+        } else if (!excluded.isEmpty()) {
+            idList(q, "x" + code, nullable
+                ? " AND (" + column + " IS NULL OR " + column + " NOT IN ("
+                : " AND " + column + " NOT IN (", excluded, nullable ? "))" : ")");
+        }
+    }
+
+    // The list is padded to the next power of two by repeating its last id, which changes nothing in an IN or
+    // NOT IN but leaves only a handful of list lengths, and so shapes, per column
+    private static void idList(Shape q, String code, String open, Collection<Long> ids, String close) {
+        int slots = Integer.highestOneBit(ids.size());
+        if (slots < ids.size()) {
+            slots <<= 1;
+        }
+        q.key.append(code).append(slots).append('|');
+        Long last = null;
+        for (Long id : ids) {
+            q.params.add(id);
+            last = id;
+        }
+        for (int i = ids.size(); i < slots; i++) {
+            q.params.add(last);
+        }
+        if (q.sql != null) {
+            q.sql.append(open);
+            for (int i = 0; i < slots; i++) {
+                q.sql.append(i > 0 ? ", ?" : "?");
+            }
+            q.sql.append(close);
+        }
+    }
+
+    // o.flag_mask holds one bit per OrderVocabulary.FLAGS entry, so "has any of these flags and none of
+    // those" becomes the short list of masks that satisfy it, an equality lookup on idx_flag_mask_created
+    private static void appendFlags(Shape q, List<String> flags, List<String> excludedFlags) {
+        List<Integer> masks = flagMasks(flags, excludedFlags);
+        if (masks == null) {
+            return;
+        }
+        if (masks.isEmpty()) {
+            q.key.append("fm0|");
+            q.append(" AND 1=0");
+            return;
+        }
+        q.key.append("fm").append(masks.size()).append('|');
+        q.params.addAll(masks);
+        if (q.sql != null) {
+            q.sql.append(" AND o.flag_mask IN (");
+            for (int i = 0; i < masks.size(); i++) {
+                q.sql.append(i > 0 ? ", ?" : "?");
+            }
+            q.sql.append(')');
+        }
+    }
+
+    // The flag_mask values that pass both lists, or null when neither list is set
+    static List<Integer> flagMasks(List<String> flags, List<String> excludedFlags) {
+        boolean including = flags != null && !flags.isEmpty();
+        boolean excluding = excludedFlags != null && !excludedFlags.isEmpty();
+        if (!including && !excluding) {
+            return null;
+        }
+        int wanted = flagBits(flags);
+        int unwanted = flagBits(excludedFlags);
+        List<Integer> masks = new ArrayList<>(1 << OrderVocabulary.FLAGS.size());
+        for (int mask = 0; mask < 1 << OrderVocabulary.FLAGS.size(); mask++) {
+            if ((!including || (mask & wanted) != 0) && (mask & unwanted) == 0) {
+                masks.add(mask);
+            }
+        }
+        return masks;
+    }
+
+    // Names outside the vocabulary set no bit: they never match, and excluding them excludes nothing
+    static int flagBits(List<String> flags) {
+        int bits = 0;
+        if (flags != null) {
+            for (String flag : flags) {
+                int bit = flag != null ? OrderVocabulary.FLAGS.indexOf(flag.trim().toUpperCase()) : -1;
+                if (bit >= 0) {
+                    bits |= 1 << bit;
+                }
+            }
+        }
+        return bits;
+    }
+
+    // Anything but YYYY-MM-DD is left for MySQL to interpret, as before
+    static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date.trim());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // Location, company and carrier group on their id as well, so two with the same name stay apart
+    private static Grouping grouping(String aggregate, String dateColumn) {
+        switch (aggregate) {
+            case "STATUS":
+                return new Grouping("o.status", "o.status", false);
+            case "SERVICE":
+                return new Grouping("o.service", "o.service", false);
+            case "LOCATION":
+                return new Grouping("l.name", "o.location_id, l.name", false);
+            case "COMPANY":
+                return new Grouping("c.name", "o.company_id, c.name", false);
+            case "CARRIER":
+                return new Grouping("car.name", "o.carrier_id, car.name", false);
+            case "CITY":
+                return new Grouping("l.city", "l.city", false);
+            case "DAY":
+                return new Grouping("DATE(" + dateColumn + ")", "DATE(" + dateColumn + ")", true);
+            case "WEEK":
+                // Monday of the week
+                String monday = "DATE(" + dateColumn + " - INTERVAL WEEKDAY(" + dateColumn + ") DAY)";
+                return new Grouping(monday, monday, true);
+            default:
+                throw new IllegalArgumentException("Not a grouping aggregate: " + aggregate);
+        }
+    }
+
+    private record Grouping(String key, String groupBy, boolean dated) {
+    }
+
+    private static String dateColumn(String dateField) {
+        if (dateField == null || dateField.trim().isEmpty()) {
+            return "o.time_created";
+        }
+        switch (dateField.toUpperCase()) {
+            case "STORED":
+                return "o.time_stored";
+            case "COLLECTED":
+                return "o.time_collected";
+            case "CREATED":
+            default:
+                return "o.time_created";
+        }
+    }
+
+    private static void value(Shape q, String code, String sql, Object value) {
+        q.key.append(code).append('|');
+        q.params.add(value);
+        q.append(sql);
+    }
+
+    private static void values(Shape q, String code, String open, String item, String separator, String close,
+                               List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        q.key.append(code).append(values.size()).append('|');
+        q.params.addAll(values);
+        if (q.sql != null) {
+            q.sql.append(open);
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    q.sql.append(separator);
+                }
+                q.sql.append(item);
+            }
+            q.sql.append(close);
+        }
+    }
+
+    // Splits on whitespace without a regex and folds each word the way the dimension names are folded
+    static List<String> searchWords(String searchTerm) {
+        List<String> words = new ArrayList<>(4);
+        if (searchTerm == null) {
+            return words;
+        }
+        int length = searchTerm.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean boundary = i == length || Character.isWhitespace(searchTerm.charAt(i));
+            if (!boundary && start < 0) {
+                start = i;
+            } else if (boundary && start >= 0) {
+                words.add(DimensionCache.fold(searchTerm.substring(start, i)));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static final class Shape {
+
+        final StringBuilder key = new StringBuilder(64);
+        final List<Object> params = new ArrayList<>();
+        final StringBuilder sql;
+
+        Shape(StringBuilder sql) {
+            this.sql = sql;
+        }
+
+        void append(String fragment) {
+            if (sql != null) {
+                sql.append(fragment);
+            }
+        }
+    }
+}
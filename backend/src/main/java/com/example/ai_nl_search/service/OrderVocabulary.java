@@ -0,0 +1,20 @@
+package com.example.ai_nl_search.service;
+
+import java.util.List;
+
+public final class OrderVocabulary {
+
+    public static final List<String> STATUSES = List.of(
+        "CREATED", "COURIER_STORED", "CUSTOMER_STORED", "DELIVERED", "OPERATOR_COLLECTED", "EXPIRED");
+    public static final List<String> SERVICES = List.of("DELIVERY", "RETURNS");
+    public static final List<String> COLLECTED_BY = List.of("COURIER", "CUSTOMER", "OPERATOR");
+    public static final List<String> LOCATION_TYPES = List.of("PUDO", "LOCKER", "WAREHOUSE", "STORE");
+    public static final List<String> FLAGS = List.of("FRAGILE", "VIP", "EXPIRED");
+    public static final List<String> DATE_FIELDS = List.of("CREATED", "STORED", "COLLECTED");
+    // COUNT is the total alone, the others count matches per value (DAY and WEEK on the filter's date field)
+    public static final List<String> AGGREGATES = List.of(
+        "COUNT", "STATUS", "SERVICE", "LOCATION", "COMPANY", "CARRIER", "CITY", "DAY", "WEEK");
+
+    private OrderVocabulary() {
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class QueryInterpreter {
+
+    private final RuleBasedInterpreter ruleBasedInterpreter;
+    private final InterpretCache interpretCache;
+    private final BedrockNlService bedrockNlService;
+    private final SingleFlight<String, OrderFilter> bedrockCalls;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public QueryInterpreter(RuleBasedInterpreter ruleBasedInterpreter, InterpretCache interpretCache,
+                            BedrockNlService bedrockNlService, MeterRegistry meterRegistry) {
+        this.ruleBasedInterpreter = ruleBasedInterpreter;
+        this.interpretCache = interpretCache;
+        this.bedrockNlService = bedrockNlService;
+        this.bedrockCalls = new SingleFlight<>("interpret", meterRegistry);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Interpretation interpret(String query) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        Interpretation.Source source = Interpretation.Source.BEDROCK;
+        try {
+            Interpretation interpretation = interpretUntimed(query);
+            source = interpretation.source();
+            outcome = "success";
+            return interpretation;
+        } finally {
+            Timer.builder("search.interpret")
+                .description("Query interpretation, by who answered it")
+                .tag("source", source.name())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Interpretation interpretUntimed(String query) {
+        // Step 1: Queries fully covered by the local grammar never reach the LLM
+        Optional<OrderFilter> parsed = ruleBasedInterpreter.interpret(query);
+        if (parsed.isPresent()) {
+            return new Interpretation(parsed.get(), Interpretation.Source.RULES);
+        }
+
+        // Step 2: Same normalized query already interpreted today
+        OrderFilter cached = interpretCache.get(query);
+        if (cached != null) {
+            return new Interpretation(cached, Interpretation.Source.CACHE);
+        }
+
+        // Step 3: Bedrock round trip, shared by identical queries arriving while it is in flight
+        OrderFilter filter = bedrockCalls.execute(InterpretCache.normalize(query), () -> {
+            LocalDate promptDate = interpretCache.today();
+            OrderFilter interpreted = bedrockNlService.interpret(query);
+            if (interpreted != null) {
+                interpretCache.put(query, interpreted, promptDate);
+            }
+            return interpreted;
+        });
+        // Callers sanitize the filter in place, so each one gets its own copy
+        return new Interpretation(filter != null ? filter.copy() : null, Interpretation.Source.BEDROCK);
+    }
+}
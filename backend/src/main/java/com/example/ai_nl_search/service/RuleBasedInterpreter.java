@@ -0,0 +1,415 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+@Component
+public class RuleBasedInterpreter {
+
+    private static final Set<String> STOPWORDS = Set.of(
+        "show", "me", "all", "list", "find", "get", "give", "display", "please", "only", "any",
+        "order", "orders", "parcel", "parcels", "package", "packages", "shipment", "shipments", "item", "items",
+        "that", "which", "were", "was", "are", "the", "a", "with", "status", "ones", "one", "of",
+        "flag", "flags", "flagged", "and", "or");
+    private static final Set<String> EXCLUDE_WORDS = Set.of(
+        "exclude", "excluding", "excluded", "except", "without", "not", "but");
+    private static final Set<String> DATE_PREPOSITIONS = Set.of("from", "in", "during", "within", "over", "for");
+
+    private static final Map<String, String> STATUS_WORDS = Map.of(
+        "delivered", "DELIVERED",
+        "shipped", "DELIVERED",
+        "expired", "EXPIRED");
+    private static final Map<String, String> SERVICE_WORDS = Map.of(
+        "delivery", "DELIVERY",
+        "deliveries", "DELIVERY",
+        "return", "RETURNS",
+        "returns", "RETURNS");
+    private static final Map<String, String> LOCATION_TYPE_WORDS = Map.of(
+        "locker", "LOCKER", "lockers", "LOCKER",
+        "pudo", "PUDO", "pudos", "PUDO",
+        "warehouse", "WAREHOUSE", "warehouses", "WAREHOUSE",
+        "store", "STORE", "stores", "STORE");
+    private static final Map<String, String> FLAG_WORDS = Map.of(
+        "vip", "VIP",
+        "fragile", "FRAGILE");
+    private static final Map<String, String> COLLECTOR_WORDS = Map.of(
+        "courier", "COURIER",
+        "customer", "CUSTOMER",
+        "operator", "OPERATOR");
+    private static final Map<String, String> DATE_FIELD_WORDS = Map.of(
+        "created", "CREATED",
+        "creation", "CREATED",
+        "stored", "STORED",
+        "collected", "COLLECTED");
+
+    private static final Map<String, String> GROUP_WORDS = Map.ofEntries(
+        Map.entry("status", "STATUS"), Map.entry("service", "SERVICE"),
+        Map.entry("location", "LOCATION"), Map.entry("company", "COMPANY"),
+        Map.entry("carrier", "CARRIER"), Map.entry("city", "CITY"),
+        Map.entry("day", "DAY"), Map.entry("week", "WEEK"));
+
+    private final Clock clock;
+
+    @Autowired
+    public RuleBasedInterpreter() {
+        this(Clock.systemDefaultZone());
+    }
+
+    RuleBasedInterpreter(Clock clock) {
+        this.clock = clock;
+    }
+
+    // Returns empty whenever any word is not fully understood, so the caller falls back to Bedrock
+    public Optional<OrderFilter> interpret(String query) {
+        return new Parse(query, LocalDate.now(clock)).run();
+    }
+
+    private static List<String> tokenize(String query) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= query.length(); i++) {
+            boolean wordChar = i < query.length() && Character.isLetterOrDigit(query.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(query.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Parse {
+
+        private final List<String> words;
+        private final List<String> lower = new ArrayList<>();
+        private final LocalDate today;
+
+        private final Set<String> statuses = new LinkedHashSet<>();
+        private final Set<String> excludedStatuses = new LinkedHashSet<>();
+        private final Set<String> services = new LinkedHashSet<>();
+        private final Set<String> excludedServices = new LinkedHashSet<>();
+        private final Set<String> collectedBy = new LinkedHashSet<>();
+        private final Set<String> excludedCollectedBy = new LinkedHashSet<>();
+        private final Set<String> locationTypes = new LinkedHashSet<>();
+        private final Set<String> excludedLocationTypes = new LinkedHashSet<>();
+        private final Set<String> flags = new LinkedHashSet<>();
+        private final Set<String> excludedFlags = new LinkedHashSet<>();
+        private String locationName;
+        private String companyName;
+        private LocalDate dateFrom;
+        private LocalDate dateTo;
+        private String dateField;
+        private boolean operatorCollected;
+        private boolean excluding;
+        private boolean counting;
+        private String groupBy;
+
+        Parse(String query, LocalDate today) {
+            this.words = tokenize(query);
+            for (String word : words) {
+                lower.add(word.toLowerCase());
+            }
+            this.today = today;
+        }
+
+        Optional<OrderFilter> run() {
+            if (words.isEmpty()) {
+                return Optional.empty();
+            }
+            int i = 0;
+            while (i < words.size()) {
+                int consumed = step(i);
+                if (consumed <= 0) {
+                    return Optional.empty();
+                }
+                i += consumed;
+            }
+            return build();
+        }
+
+        // Consumes one phrase starting at i and returns its length, or 0 when the phrase is not understood
+        private int step(int i) {
+            String word = lower.get(i);
+
+            int dateLength = relativeDate(i);
+            if (dateLength > 0) {
+                return dateFrom == null ? applyDate(i, dateLength) : 0;
+            }
+            if (DATE_PREPOSITIONS.contains(word) && introducesDate(i)) {
+                return 1;
+            }
+            if (word.equals("for") || word.equals("at") || word.equals("to")) {
+                return excluding ? 0 : name(i);
+            }
+            if (EXCLUDE_WORDS.contains(word)) {
+                excluding = true;
+                return 1;
+            }
+
+            // "how many", "number of", "count": only the total is wanted; "per location", "by status": a breakdown
+            if (word.equals("how") && is(i + 1, "many")) {
+                counting = true;
+                return 2;
+            }
+            if (word.equals("number") && is(i + 1, "of")) {
+                counting = true;
+                return 2;
+            }
+            if (word.equals("count")) {
+                counting = true;
+                return 1;
+            }
+            if (groups(i)) {
+                if (excluding || groupBy != null) {
+                    return 0;
+                }
+                groupBy = GROUP_WORDS.get(lower.get(i + 1));
+                return 2;
+            }
+
+            // "collected by the courier", "courier collected", "courier stored", "operator collected"
+            if (word.equals("collected") && is(i + 1, "by")) {
+                int at = is(i + 2, "the") ? i + 3 : i + 2;
+                String collector = at < lower.size() ? COLLECTOR_WORDS.get(lower.get(at)) : null;
+                if (collector == null) {
+                    return 0;
+                }
+                (excluding ? excludedCollectedBy : collectedBy).add(collector);
+                return at - i + 1;
+            }
+            if (COLLECTOR_WORDS.containsKey(word) && is(i + 1, "stored") && !word.equals("operator")) {
+                (excluding ? excludedStatuses : statuses).add(COLLECTOR_WORDS.get(word) + "_STORED");
+                return 2;
+            }
+            if (word.equals("operator") && is(i + 1, "collected")) {
+                // Either status OPERATOR_COLLECTED or collected_by OPERATOR, decided once all statuses are known
+                if (excluding) {
+                    return 0;
+                }
+                operatorCollected = true;
+                return 2;
+            }
+            if (COLLECTOR_WORDS.containsKey(word) && is(i + 1, "collected")) {
+                (excluding ? excludedCollectedBy : collectedBy).add(COLLECTOR_WORDS.get(word));
+                return 2;
+            }
+
+            if (word.equals("expired") && (is(i + 1, "flag") || is(i + 1, "flags"))) {
+                (excluding ? excludedFlags : flags).add("EXPIRED");
+                return 2;
+            }
+            if (STATUS_WORDS.containsKey(word)) {
+                (excluding ? excludedStatuses : statuses).add(STATUS_WORDS.get(word));
+                return 1;
+            }
+            if (FLAG_WORDS.containsKey(word)) {
+                (excluding ? excludedFlags : flags).add(FLAG_WORDS.get(word));
+                return 1;
+            }
+            if (SERVICE_WORDS.containsKey(word)) {
+                (excluding ? excludedServices : services).add(SERVICE_WORDS.get(word));
+                return 1;
+            }
+            if (LOCATION_TYPE_WORDS.containsKey(word)) {
+                (excluding ? excludedLocationTypes : locationTypes).add(LOCATION_TYPE_WORDS.get(word));
+                return 1;
+            }
+            if (DATE_FIELD_WORDS.containsKey(word)) {
+                String field = DATE_FIELD_WORDS.get(word);
+                if (excluding || (dateField != null && !dateField.equals(field))) {
+                    return 0;
+                }
+                dateField = field;
+                return 1;
+            }
+            if (STOPWORDS.contains(word)) {
+                return 1;
+            }
+            return 0;
+        }
+
+        // "at Location A", "to Location A", "for 7Eleven Kwai Chung": a name runs until a date, an exclusion,
+        // a breakdown or the end
+        private int name(int i) {
+            int end = i + 1;
+            while (end < words.size() && relativeDate(end) <= 0 && !EXCLUDE_WORDS.contains(lower.get(end))
+                && !(DATE_PREPOSITIONS.contains(lower.get(end)) && introducesDate(end)) && !groups(end)) {
+                if (isVocabulary(lower.get(end))) {
+                    return 0;
+                }
+                end++;
+            }
+            int start = is(i + 1, "the") ? i + 2 : i + 1;
+            if (end <= start) {
+                return 0;
+            }
+            String name = String.join(" ", words.subList(start, end));
+            if (lower.get(i).equals("for")) {
+                if (companyName != null) {
+                    return 0;
+                }
+                companyName = name;
+            } else {
+                if (locationName != null) {
+                    return 0;
+                }
+                locationName = name;
+            }
+            return end - i;
+        }
+
+        private boolean isVocabulary(String word) {
+            return STATUS_WORDS.containsKey(word) || SERVICE_WORDS.containsKey(word)
+                || LOCATION_TYPE_WORDS.containsKey(word) || FLAG_WORDS.containsKey(word)
+                || COLLECTOR_WORDS.containsKey(word) || DATE_FIELD_WORDS.containsKey(word)
+                || word.equals("by") || word.equals("at") || word.equals("to") || word.equals("for");
+        }
+
+        // Same windows as the prompt in BedrockNlService.buildFilterRequest; returns the phrase length or 0
+        private int relativeDate(int i) {
+            if (i >= lower.size()) {
+                return 0;
+            }
+            String word = lower.get(i);
+            if (word.equals("today") || word.equals("yesterday")) {
+                return 1;
+            }
+            if ((word.equals("last") || word.equals("this")) && (is(i + 1, "week") || is(i + 1, "month"))) {
+                return 2;
+            }
+            if ((word.equals("last") || word.equals("past")) && i + 2 < lower.size() && is(i + 2, "days")
+                && dayCount(lower.get(i + 1)) > 0) {
+                return 3;
+            }
+            return 0;
+        }
+
+        // "per location", "by week"
+        private boolean groups(int i) {
+            return (is(i, "per") || is(i, "by")) && i + 1 < lower.size() && GROUP_WORDS.containsKey(lower.get(i + 1));
+        }
+
+        // "from last week", "from the last 7 days"
+        private boolean introducesDate(int i) {
+            return relativeDate(i + 1) > 0 || (is(i + 1, "the") && relativeDate(i + 2) > 0);
+        }
+
+        private int applyDate(int i, int length) {
+            String word = lower.get(i);
+            if (word.equals("today")) {
+                dateFrom = today;
+                dateTo = today;
+            } else if (word.equals("yesterday")) {
+                dateFrom = today.minusDays(1);
+                dateTo = today.minusDays(1);
+            } else if (length == 3) {
+                dateFrom = today.minusDays(dayCount(lower.get(i + 1)));
+                dateTo = today;
+            } else if (word.equals("last") && lower.get(i + 1).equals("week")) {
+                dateFrom = today.minusDays(7);
+                dateTo = today;
+            } else if (word.equals("last")) {
+                LocalDate previousMonth = today.minusMonths(1);
+                dateFrom = previousMonth.withDayOfMonth(1);
+                dateTo = previousMonth.withDayOfMonth(previousMonth.lengthOfMonth());
+            } else if (lower.get(i + 1).equals("week")) {
+                dateFrom = today.with(DayOfWeek.MONDAY);
+                dateTo = today;
+            } else {
+                dateFrom = today.withDayOfMonth(1);
+                dateTo = today;
+            }
+            return length;
+        }
+
+        private static int dayCount(String word) {
+            if (word.equals("seven")) {
+                return 7;
+            }
+            if (word.length() > 3 || word.chars().anyMatch(ch -> !Character.isDigit(ch))) {
+                return 0;
+            }
+            return Integer.parseInt(word);
+        }
+
+        private boolean is(int i, String word) {
+            return i < lower.size() && lower.get(i).equals(word);
+        }
+
+        private Optional<OrderFilter> build() {
+            if (operatorCollected) {
+                // Prompt rule: with other status names it is a status, on its own it is the collector
+                if (statuses.isEmpty()) {
+                    collectedBy.add("OPERATOR");
+                } else {
+                    statuses.add("OPERATOR_COLLECTED");
+                }
+            }
+            if (locationTypes.size() > 1 || overlaps(statuses, excludedStatuses) || overlaps(services, excludedServices)
+                || overlaps(collectedBy, excludedCollectedBy) || overlaps(locationTypes, excludedLocationTypes)
+                || overlaps(flags, excludedFlags)) {
+                return Optional.empty();
+            }
+            if (dateField != null && dateFrom == null) {
+                return Optional.empty();
+            }
+
+            OrderFilter filter = new OrderFilter();
+            Set<String> excludeStatus = new LinkedHashSet<>();
+            for (String status : OrderVocabulary.STATUSES) {
+                if ((!statuses.isEmpty() && !statuses.contains(status)) || excludedStatuses.contains(status)) {
+                    excludeStatus.add(status);
+                }
+            }
+            filter.setExcludeStatus(listOrNull(excludeStatus));
+            filter.setService(listOrNull(services));
+            filter.setExcludeService(listOrNull(excludedServices));
+            filter.setCollectedBy(listOrNull(collectedBy));
+            filter.setExcludeCollectedBy(listOrNull(excludedCollectedBy));
+            filter.setLocationType(locationTypes.isEmpty() ? null : locationTypes.iterator().next());
+            filter.setExcludeLocationType(listOrNull(excludedLocationTypes));
+            filter.setFlags(listOrNull(flags));
+            filter.setExcludeFlags(listOrNull(excludedFlags));
+            filter.setLocationName(locationName);
+            filter.setCompanyName(companyName);
+            filter.setAggregate(groupBy != null ? groupBy : counting ? "COUNT" : null);
+
+            if (dateFrom != null) {
+                filter.setDateFrom(dateFrom.format(DateTimeFormatter.ISO_LOCAL_DATE));
+                filter.setDateTo(dateTo.format(DateTimeFormatter.ISO_LOCAL_DATE));
+                // Prompt rule: delivered orders are dated by time_stored
+                if (dateField == null && statuses.contains("DELIVERED")) {
+                    dateField = "STORED";
+                }
+                filter.setDateField(dateField);
+            }
+            return Optional.of(filter);
+        }
+
+        private static boolean overlaps(Set<String> included, Set<String> excluded) {
+            for (String value : included) {
+                if (excluded.contains(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static List<String> listOrNull(Set<String> values) {
+            return values.isEmpty() ? null : new ArrayList<>(values);
+        }
+    }
+}
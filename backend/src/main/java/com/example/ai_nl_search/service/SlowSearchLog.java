@@ -0,0 +1,138 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.OrderSqlCompiler.CompiledQuery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the last search.slow-query.capacity order queries that took longer than search.slow-query.threshold,
+// with their SQL, bind values, EXPLAIN output, row count and the NL query they came from. The search thread
+// only compares the elapsed time and enqueues; EXPLAIN runs on a single background thread, and captures that
+// arrive while its queue is full are dropped (search.slow-query.dropped). Unless search.slow-query.include-values
+// is set, text bind values (phone and tracking numbers among them) and the NL query are not kept.
+@Component
+public class SlowSearchLog {
+
+    public record SlowSearch(Instant at, String query, String nlQuery, long millis, long rows, String sql,
+                             List<String> params, List<Map<String, Object>> plan, String planError) {
+    }
+
+    static final String REDACTED = "<redacted>";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long thresholdNanos;
+    private final boolean explain;
+    private final boolean includeValues;
+    private final SlowSearch[] entries;
+    private final ThreadPoolExecutor capture;
+    private final Counter captured;
+    private int next;
+    private int size;
+
+    @Autowired
+    public SlowSearchLog(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                         @Value("${search.slow-query.threshold:PT1S}") Duration threshold,
+                         @Value("${search.slow-query.capacity:100}") int capacity,
+                         @Value("${search.slow-query.explain:true}") boolean explain,
+                         @Value("${search.slow-query.include-values:false}") boolean includeValues) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.thresholdNanos = threshold.toNanos();
+        this.explain = explain;
+        this.includeValues = includeValues;
+        this.entries = new SlowSearch[Math.max(1, capacity)];
+        this.captured = Counter.builder("search.slow-query.captured")
+            .description("Order queries over the slow-search threshold")
+            .register(meterRegistry);
+        Counter dropped = Counter.builder("search.slow-query.dropped")
+            .description("Slow order queries not captured because the capture queue was full")
+            .register(meterRegistry);
+        this.capture = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(this.entries.length),
+            Thread.ofVirtual().name("slow-search-capture").factory(),
+            (task, executor) -> dropped.increment());
+    }
+
+    // query names the kind of statement (page, ids, count, groups, stream); rows is the rows returned, or
+    // the number counted for a count
+    void record(String query, CompiledQuery compiled, OrderFilter filter, long rows, long elapsedNanos) {
+        if (elapsedNanos < thresholdNanos) {
+            return;
+        }
+        captured.increment();
+        Instant at = Instant.now();
+        String nlQuery = includeValues && filter != null ? filter.getSourceQuery() : null;
+        capture.execute(() -> add(new SlowSearch(at, query, nlQuery, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+            rows, compiled.sql(), params(compiled.params()), null, null), compiled));
+    }
+
+    private void add(SlowSearch search, CompiledQuery compiled) {
+        if (explain) {
+            try {
+                List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + compiled.sql(),
+                    compiled.params());
+                search = withPlan(search, plan, null);
+            } catch (RuntimeException e) {
+                search = withPlan(search, null, e.getMessage());
+            }
+        }
+        synchronized (entries) {
+            entries[next] = search;
+            next = (next + 1) % entries.length;
+            size = Math.min(size + 1, entries.length);
+        }
+    }
+
+    private static SlowSearch withPlan(SlowSearch search, List<Map<String, Object>> plan, String planError) {
+        return new SlowSearch(search.at(), search.query(), search.nlQuery(), search.millis(), search.rows(),
+            search.sql(), search.params(), plan, planError);
+    }
+
+    // Timestamps and dates print as their SQL literals rather than epoch millis. Numbers, dates and times are
+    // ids, limits, masks and ranges and are always kept; EXPLAIN itself always runs with the real values.
+    private List<String> params(Object[] params) {
+        List<String> values = new ArrayList<>(params.length);
+        for (Object param : params) {
+            if (param == null) {
+                values.add(null);
+            } else if (param instanceof String && !includeValues) {
+                values.add(REDACTED);
+            } else {
+                values.add(param.toString());
+            }
+        }
+        return values;
+    }
+
+    // Newest first
+    public List<SlowSearch> recent() {
+        synchronized (entries) {
+            List<SlowSearch> recent = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                recent.add(entries[(next - i + entries.length) % entries.length]);
+            }
+            return recent;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            Arrays.fill(entries, null);
+            next = 0;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.ai_nl_search.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Fuzzy name lookup in the style of pg_trgm: each word is padded ("  word ") and cut into trigrams,
+// and names are ranked by the Jaccard similarity of their trigram sets with the search term
+final class TrigramIndex {
+
+    private final String[] names;
+    private final int[] gramCounts;
+    private final Map<String, int[]> postings;
+
+    TrigramIndex(List<String> displayNames) {
+        // One entry per distinct folded name, keeping the first spelling seen
+        Map<String, String> distinct = new LinkedHashMap<>();
+        for (String name : displayNames) {
+            if (name != null && !name.isBlank()) {
+                distinct.putIfAbsent(DimensionCache.fold(name.trim()), name.trim());
+            }
+        }
+        this.names = distinct.values().toArray(new String[0]);
+        this.gramCounts = new int[names.length];
+
+        Map<String, List<Integer>> entries = new HashMap<>();
+        int entry = 0;
+        for (String folded : distinct.keySet()) {
+            Set<String> grams = trigrams(folded);
+            gramCounts[entry] = grams.size();
+            for (String gram : grams) {
+                entries.computeIfAbsent(gram, g -> new ArrayList<>()).add(entry);
+            }
+            entry++;
+        }
+        this.postings = new HashMap<>(entries.size() * 2);
+        entries.forEach((gram, list) -> postings.put(gram, list.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    // Best matches first, at most limit of them, none below minSimilarity
+    List<String> nearest(String term, int limit, double minSimilarity) {
+        Set<String> grams = trigrams(DimensionCache.fold(term.trim()));
+        if (grams.isEmpty() || names.length == 0) {
+            return List.of();
+        }
+        int[] shared = new int[names.length];
+        for (String gram : grams) {
+            int[] posting = postings.get(gram);
+            if (posting != null) {
+                for (int entry : posting) {
+                    shared[entry]++;
+                }
+            }
+        }
+
+        List<Integer> candidates = new ArrayList<>();
+        double[] similarity = new double[names.length];
+        for (int entry = 0; entry < names.length; entry++) {
+            if (shared[entry] > 0) {
+                similarity[entry] = (double) shared[entry] / (grams.size() + gramCounts[entry] - shared[entry]);
+                if (similarity[entry] >= minSimilarity) {
+                    candidates.add(entry);
+                }
+            }
+        }
+        candidates.sort((a, b) -> Double.compare(similarity[b], similarity[a]));
+
+        List<String> nearest = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (int i = 0; i < candidates.size() && i < limit; i++) {
+            nearest.add(names[candidates.get(i)]);
+        }
+        return nearest;
+    }
+
+    static Set<String> trigrams(String folded) {
+        Set<String> grams = new HashSet<>();
+        for (String word : OrderSqlCompiler.searchWords(folded)) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.ai_nl_search;
+
+import com.example.ai_nl_search.dto.OrderCursor;
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.dto.OrderPage;
+import com.example.ai_nl_search.service.DimensionCache;
+import com.example.ai_nl_search.service.ModelInvoker;
+import com.example.ai_nl_search.service.OrderField;
+import com.example.ai_nl_search.service.OrderSearchService;
+import com.example.ai_nl_search.service.OrderSnapshotEngine;
+import com.example.ai_nl_search.service.SlowSearchLog;
+import com.example.ai_nl_search.service.StubModelInvoker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Fires CONCURRENT_REQUESTS nl-search requests at once against the real Tomcat with stubbed latencies:
+// 50 ms per SQL query and 1.5 s for the Bedrock follow-up. Run with: mvn -P benchmark test
+// (-DargLine="-Dbenchmark.requests=2000 -Dbenchmark.model-ms=3000" changes the load)
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(NlSearchCapacityBenchmarkTest.StubLatencies.class)
+class NlSearchCapacityBenchmarkTest {
+
+	static final int CONCURRENT_REQUESTS = Integer.getInteger("benchmark.requests", 1000);
+	static final Duration QUERY_LATENCY = Duration.ofMillis(50);
+	static final Duration MODEL_LATENCY = Duration.ofMillis(Long.getLong("benchmark.model-ms", 1500));
+
+	@Nested
+	@TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+	class PlatformThreads {
+
+		@LocalServerPort
+		int port;
+
+		@Test
+		void capacity() throws Exception {
+			run("platform threads (Tomcat max 200)", port);
+		}
+	}
+
+	@Nested
+	@TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+	class VirtualThreads {
+
+		@LocalServerPort
+		int port;
+
+		@Test
+		void capacity() throws Exception {
+			run("virtual threads", port);
+		}
+	}
+
+	static void run(String label, int port) throws Exception {
+		HttpClient client = HttpClient.newHttpClient();
+		// "delivered orders" is served by the rule-based interpreter, so only the follow-up reaches the model
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/nl-search"))
+			.header("Content-Type", "application/json")
+			.POST(HttpRequest.BodyPublishers.ofString("{\"query\":\"delivered orders\"}"))
+			.build();
+
+		fire(client, request);
+		long start = System.nanoTime();
+		fire(client, request);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%s: %d concurrent requests in %.2f s (%.0f req/s)%n",
+			label, CONCURRENT_REQUESTS, seconds, CONCURRENT_REQUESTS / seconds);
+	}
+
+	// The first round only warms up the JIT, connections and thread pools
+	private static void fire(HttpClient client, HttpRequest request) throws Exception {
+		List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+		for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+			responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+		}
+		for (CompletableFuture<HttpResponse<Void>> response : responses) {
+			assertEquals(200, response.get().statusCode());
+		}
+	}
+
+	@TestConfiguration
+	static class StubLatencies {
+
+		@Bean
+		@Primary
+		ModelInvoker stubModelInvoker() {
+			return new StubModelInvoker("NO_ASSUMPTION_MADE", MODEL_LATENCY);
+		}
+
+		@Bean
+		@Primary
+		OrderSearchService stubOrderSearchService(JdbcTemplate jdbcTemplate, DimensionCache dimensionCache,
+			OrderSnapshotEngine snapshotEngine, SlowSearchLog slowSearchLog, MeterRegistry meterRegistry) {
+			return new OrderSearchService(jdbcTemplate, dimensionCache, snapshotEngine, slowSearchLog, meterRegistry) {
+				@Override
+				public OrderPage search(OrderFilter filter, OrderCursor cursor, int pageSize, Set<OrderField> fields) {
+					sleep(QUERY_LATENCY);
+					return new OrderPage(new ArrayList<>(), null);
+				}
+
+				@Override
+				public long count(OrderFilter filter) {
+					sleep(QUERY_LATENCY);
+					return 0;
+				}
+			};
+		}
+
+		private static void sleep(Duration duration) {
+			try {
+				Thread.sleep(duration);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
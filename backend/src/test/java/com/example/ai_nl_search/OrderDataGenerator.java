@@ -0,0 +1,282 @@
+package com.example.ai_nl_search;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+// Bulk-loads synthetic orders into the db/init.sql schema. Locations, companies and carriers are picked with
+// Zipf skew, so a few of them hold most orders, as in production. Creation times lean towards the recent
+// past and follow business hours. Statuses and their stored/collected/expiry times depend on the order's
+// age. Everything comes from the seed, so the same sizes always produce the same data.
+class OrderDataGenerator {
+
+	static final int COMPANIES = 40;
+	static final int LOCATIONS = 400;
+	static final List<String> CARRIERS = List.of("DHL", "SF Express", "UPS", "FedEx", "Kerry Express", "Yamato",
+		"Aramex", "La Poste", "Colissimo", "DPD", "GLS", "Ninja Van");
+	static final List<String> CITIES = List.of("Hong Kong", "Kowloon", "Sha Tin", "Tsuen Wan", "Paris", "Lyon",
+		"Singapore", "Taipei");
+
+	private static final double[] CITY_WEIGHTS = {30, 20, 10, 10, 10, 5, 10, 5};
+	private static final String[] LOCATION_TYPES = {"LOCKER", "PUDO", "STORE", "WAREHOUSE"};
+	private static final String[] LOCATION_TYPE_LABELS = {"Locker", "PUDO", "Store", "Warehouse"};
+	private static final double[] LOCATION_TYPE_WEIGHTS = {55, 30, 10, 5};
+	// Orders per hour of the day, office hours and the evening pickup peak
+	private static final double[] HOUR_WEIGHTS = {1, 1, 1, 1, 1, 2, 4, 7, 10, 12, 12, 11, 10, 11, 12, 12, 11, 12,
+		14, 13, 10, 7, 4, 2};
+	private static final String[] RECENT_STATUSES = {"CREATED", "COURIER_STORED", "CUSTOMER_STORED", "DELIVERED",
+		"OPERATOR_COLLECTED", "EXPIRED"};
+	private static final double[] RECENT_STATUS_WEIGHTS = {30, 25, 15, 25, 3, 2};
+	private static final String[] SETTLED_STATUSES = {"DELIVERED", "OPERATOR_COLLECTED", "EXPIRED", "CUSTOMER_STORED"};
+	private static final double[] SETTLED_STATUS_WEIGHTS = {78, 8, 12, 2};
+
+	private static final int BATCH_ROWS = 2000;
+	private static final String INSERT_PREFIX = """
+		INSERT INTO orders (tracking_no, order_no, company_id, location_id, carrier_id, service, status,
+		  collected_by_type, recipient_phone, compartment_no, time_created, time_stored, time_collected, expires_at,
+		  flags) VALUES
+		""";
+	private static final String ROW_PLACEHOLDERS = "(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final long seed;
+	private final Duration history;
+
+	OrderDataGenerator(JdbcTemplate jdbcTemplate, long seed, Duration history) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.seed = seed;
+		this.history = history;
+	}
+
+	// Rank 0 is the busiest location, e.g. "Kowloon Locker 001"
+	static String locationName(int rank) {
+		return String.format("%s %s %03d", city(rank), LOCATION_TYPE_LABELS[locationTypeIndex(rank)], rank + 1);
+	}
+
+	static String companyName(int rank) {
+		return String.format("Company %02d", rank + 1);
+	}
+
+	static String city(int locationRank) {
+		return CITIES.get(pick(CITY_WEIGHTS, new Random(locationRank * 31L + 7).nextDouble()));
+	}
+
+	static String locationType(int locationRank) {
+		return LOCATION_TYPES[locationTypeIndex(locationRank)];
+	}
+
+	private static int locationTypeIndex(int locationRank) {
+		return pick(LOCATION_TYPE_WEIGHTS, new Random(locationRank * 17L + 3).nextDouble());
+	}
+
+	// Dimension rows are inserted once, in rank order, so rank + 1 is the id
+	void createDimensions() {
+		Integer companies = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM companies", Integer.class);
+		if (companies != null && companies > 0) {
+			return;
+		}
+		for (int i = 0; i < COMPANIES; i++) {
+			jdbcTemplate.update("INSERT INTO companies (name, country_code) VALUES (?, ?)", companyName(i),
+				i % 4 == 3 ? "FR" : "HK");
+		}
+		for (String carrier : CARRIERS) {
+			jdbcTemplate.update("INSERT INTO carriers (name) VALUES (?)", carrier);
+		}
+		Zipf companyOf = new Zipf(COMPANIES, 1.1);
+		Random random = new Random(seed);
+		for (int i = 0; i < LOCATIONS; i++) {
+			jdbcTemplate.update("INSERT INTO locations (company_id, name, location_type, city) VALUES (?, ?, ?, ?)",
+				companyOf.sample(random.nextDouble()) + 1, locationName(i), locationType(i), city(i));
+		}
+	}
+
+	long orderCount() {
+		Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders", Long.class);
+		return count != null ? count : 0;
+	}
+
+	// Adds orders until the table holds total rows; rows already there are kept
+	void fillTo(long total, long now) {
+		long existing = orderCount();
+		if (existing >= total) {
+			return;
+		}
+		long[] companyOfLocation = new long[LOCATIONS];
+		jdbcTemplate.query("SELECT id, company_id FROM locations", rs -> {
+			companyOfLocation[(int) rs.getLong(1) - 1] = rs.getLong(2);
+		});
+
+		long started = System.currentTimeMillis();
+		SplittableRandom random = new SplittableRandom(seed ^ existing);
+		Zipf locations = new Zipf(LOCATIONS, 1.05);
+		Zipf carriers = new Zipf(CARRIERS.size(), 1.2);
+		String fullBatch = insert(BATCH_ROWS);
+		jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+			try (Statement session = con.createStatement()) {
+				session.execute("SET unique_checks = 0, foreign_key_checks = 0");
+			}
+			boolean autoCommit = con.getAutoCommit();
+			con.setAutoCommit(false);
+			try {
+				long next = existing;
+				while (next < total) {
+					int rows = (int) Math.min(BATCH_ROWS, total - next);
+					try (PreparedStatement ps = con.prepareStatement(rows == BATCH_ROWS ? fullBatch : insert(rows))) {
+						int param = 1;
+						for (int i = 0; i < rows; i++) {
+							param = bindOrder(ps, param, next + i, random, locations, carriers, companyOfLocation, now);
+						}
+						ps.executeUpdate();
+					}
+					con.commit();
+					next += rows;
+				}
+			} finally {
+				con.setAutoCommit(autoCommit);
+				try (Statement session = con.createStatement()) {
+					session.execute("SET unique_checks = 1, foreign_key_checks = 1");
+				}
+			}
+			return null;
+		});
+		jdbcTemplate.execute("ANALYZE TABLE orders");
+		System.out.printf("Generated %d orders in %.1f s%n", total - existing,
+			(System.currentTimeMillis() - started) / 1000.0);
+	}
+
+	private static String insert(int rows) {
+		StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+		for (int i = 0; i < rows; i++) {
+			sql.append(i == 0 ? "" : ",").append(ROW_PLACEHOLDERS);
+		}
+		return sql.toString();
+	}
+
+	private int bindOrder(PreparedStatement ps, int param, long sequence, SplittableRandom random, Zipf locations,
+						  Zipf carriers, long[] companyOfLocation, long now) throws SQLException {
+		int location = locations.sample(random.nextDouble());
+		boolean returns = random.nextDouble() < 0.15;
+
+		// Density grows linearly towards now, the business has been growing
+		long ageDays = (long) (history.toDays() * (1 - Math.sqrt(random.nextDouble())));
+		long day = now - ageDays * 86_400_000L;
+		long created = day - day % 86_400_000L + pick(HOUR_WEIGHTS, random.nextDouble()) * 3_600_000L
+			+ random.nextLong(3_600_000L);
+		created = Math.min(created, now - 60_000L);
+
+		String status = ageDays < 7
+			? RECENT_STATUSES[pick(RECENT_STATUS_WEIGHTS, random.nextDouble())]
+			: SETTLED_STATUSES[pick(SETTLED_STATUS_WEIGHTS, random.nextDouble())];
+		if (returns && status.equals("COURIER_STORED")) {
+			status = "CUSTOMER_STORED";
+		}
+
+		Long stored = null;
+		Long collected = null;
+		Long expires = null;
+		String collectedBy = null;
+		if (!status.equals("CREATED")) {
+			stored = Math.min(created + 1_800_000L + random.nextLong(2 * 86_400_000L), now - 30_000L);
+			expires = stored + (returns ? 12 : 3 + random.nextInt(5)) * 86_400_000L;
+			switch (status) {
+				case "DELIVERED" -> {
+					collected = stored + 300_000L + (long) (-Math.log(1 - random.nextDouble()) * 20 * 3_600_000L);
+					collectedBy = "CUSTOMER";
+				}
+				case "OPERATOR_COLLECTED" -> {
+					collected = stored + random.nextLong(3 * 86_400_000L);
+					collectedBy = "OPERATOR";
+				}
+				case "EXPIRED" -> collectedBy = random.nextDouble() < 0.7 ? "COURIER" : "CUSTOMER";
+				default -> {
+				}
+			}
+		}
+
+		StringBuilder flags = new StringBuilder();
+		if (random.nextDouble() < 0.06) {
+			flags.append("FRAGILE");
+		}
+		if (random.nextDouble() < 0.03) {
+			flags.append(flags.isEmpty() ? "" : ",").append("VIP");
+		}
+		if (status.equals("EXPIRED") && random.nextDouble() < 0.9) {
+			flags.append(flags.isEmpty() ? "" : ",").append("EXPIRED");
+		}
+
+		String number = String.format("%010d", sequence + 1);
+		ps.setString(param++, "TN" + number);
+		ps.setString(param++, "ON" + number);
+		ps.setLong(param++, companyOfLocation[location]);
+		ps.setLong(param++, location + 1);
+		if (random.nextDouble() < 0.15) {
+			ps.setNull(param++, Types.BIGINT);
+		} else {
+			ps.setLong(param++, carriers.sample(random.nextDouble()) + 1);
+		}
+		ps.setString(param++, returns ? "RETURNS" : "DELIVERY");
+		ps.setString(param++, status);
+		ps.setString(param++, collectedBy);
+		ps.setString(param++, "852" + (90_000_000 + random.nextInt(10_000_000)));
+		if (stored == null) {
+			ps.setNull(param++, Types.INTEGER);
+		} else {
+			ps.setInt(param++, 1 + random.nextInt(60));
+		}
+		ps.setTimestamp(param++, new Timestamp(created));
+		ps.setTimestamp(param++, stored != null ? new Timestamp(stored) : null);
+		ps.setTimestamp(param++, collected != null ? new Timestamp(Math.min(collected, now)) : null);
+		ps.setTimestamp(param++, expires != null ? new Timestamp(expires) : null);
+		ps.setString(param++, flags.isEmpty() ? null : flags.toString());
+		return param;
+	}
+
+	// Index of the weight bucket u (uniform in [0, 1)) falls into
+	private static int pick(double[] weights, double u) {
+		double sum = 0;
+		for (double weight : weights) {
+			sum += weight;
+		}
+		double target = u * sum;
+		for (int i = 0; i < weights.length; i++) {
+			target -= weights[i];
+			if (target < 0) {
+				return i;
+			}
+		}
+		return weights.length - 1;
+	}
+
+	// Rank k is drawn with probability proportional to 1 / (k + 1)^exponent
+	static final class Zipf {
+
+		private final double[] cumulative;
+
+		Zipf(int ranks, double exponent) {
+			cumulative = new double[ranks];
+			double sum = 0;
+			for (int k = 0; k < ranks; k++) {
+				sum += 1 / Math.pow(k + 1, exponent);
+				cumulative[k] = sum;
+			}
+			for (int k = 0; k < ranks; k++) {
+				cumulative[k] /= sum;
+			}
+		}
+
+		int sample(double u) {
+			int index = Arrays.binarySearch(cumulative, u);
+			return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package com.example.ai_nl_search;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.OrderSearchService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+// Runs a fixed catalogue of filter shapes (first page and total count) against generated data at growing
+// sizes and records the latency of each, to show which shapes degrade as the orders table grows. Needs a
+// MySQL server; the data goes into its own database (nl_search_scaling), created from db/init.sql.
+// Run with: mvn -P benchmark test -Dtest=OrderScalingBenchmarkTest
+// (-DargLine="-Dbenchmark.sizes=10000,1000000 -Dbenchmark.runs=20" changes the sizes and repetitions)
+// Results are printed and written to target/scaling-benchmark.csv, one line per size, shape and query.
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+	"spring.datasource.url=jdbc:mysql://${benchmark.db-host:localhost}:3306/nl_search_scaling?useSSL=false"
+		+ "&serverTimezone=UTC&allowPublicKeyRetrieval=true&useCursorFetch=true&createDatabaseIfNotExist=true",
+	"search.snapshot.enabled=false"
+})
+class OrderScalingBenchmarkTest {
+
+	static final long[] SIZES = Arrays.stream(System.getProperty("benchmark.sizes", "10000,1000000,10000000")
+		.split(",")).mapToLong(size -> Long.parseLong(size.trim())).sorted().toArray();
+	static final int RUNS = Integer.getInteger("benchmark.runs", 10);
+	static final int WARMUP_RUNS = 2;
+	static final Duration HISTORY = Duration.ofDays(730);
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	OrderSearchService orderSearchService;
+
+	@Test
+	void latencyByDataSize() throws Exception {
+		createSchema();
+		OrderDataGenerator generator = new OrderDataGenerator(jdbcTemplate, 42, HISTORY);
+		generator.createDimensions();
+		if (generator.orderCount() > SIZES[0]) {
+			jdbcTemplate.execute("TRUNCATE TABLE orders");
+		}
+
+		// Data and date filters are anchored to the start of the run
+		long now = System.currentTimeMillis();
+		LocalDate today = LocalDate.now(ZoneOffset.UTC);
+		Map<String, OrderFilter> shapes = catalogue(today);
+
+		Path csv = Path.of("target", "scaling-benchmark.csv");
+		Files.createDirectories(csv.getParent());
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+			out.println("rows,shape,query,p50_ms,p95_ms,max_ms");
+			for (long size : SIZES) {
+				generator.fillTo(size, now);
+				System.out.printf("%n%,d orders%n%-28s %10s %10s %10s %10s%n", size, "shape", "page p50",
+					"page p95", "count p50", "count p95");
+				for (Map.Entry<String, OrderFilter> shape : shapes.entrySet()) {
+					OrderFilter filter = shape.getValue();
+					double[] page = measure(() ->
+						orderSearchService.search(filter, null, OrderSearchService.DEFAULT_PAGE_SIZE));
+					double[] count = measure(() -> orderSearchService.count(filter));
+					System.out.printf("%-28s %10.1f %10.1f %10.1f %10.1f%n", shape.getKey(),
+						percentile(page, 0.5), percentile(page, 0.95), percentile(count, 0.5), percentile(count, 0.95));
+					line(out, size, shape.getKey(), "page", page);
+					line(out, size, shape.getKey(), "count", count);
+				}
+				out.flush();
+			}
+		}
+		System.out.println("\nWritten to " + csv.toAbsolutePath());
+	}
+
+	// Tables only: the part of db/init.sql before the sample data, without its CREATE DATABASE and USE
+	private void createSchema() throws IOException {
+		Integer tables = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables "
+			+ "WHERE table_schema = DATABASE() AND table_name = 'orders'", Integer.class);
+		if (tables != null && tables > 0) {
+			return;
+		}
+		String init = Files.readString(Path.of("../db/init.sql"));
+		String schema = init.substring(0, init.indexOf("SAMPLE DATA"));
+		schema = schema.substring(0, schema.lastIndexOf("/*"))
+			.replaceAll("(?m)^(CREATE DATABASE|USE) .*$", "");
+		ByteArrayResource script = new ByteArrayResource(schema.getBytes(StandardCharsets.UTF_8));
+		jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+			ScriptUtils.executeSqlScript(con, script);
+			return null;
+		});
+	}
+
+	// Unfiltered, selective and broad predicates on every indexed column, and some combinations
+	private static Map<String, OrderFilter> catalogue(LocalDate today) {
+		Map<String, OrderFilter> shapes = new LinkedHashMap<>();
+		shapes.put("all", new OrderFilter());
+		shapes.put("delivered", filter(f -> f.setExcludeStatus(
+			List.of("CREATED", "COURIER_STORED", "CUSTOMER_STORED", "OPERATOR_COLLECTED", "EXPIRED"))));
+		shapes.put("created only (rare)", filter(f -> f.setExcludeStatus(
+			List.of("COURIER_STORED", "CUSTOMER_STORED", "DELIVERED", "OPERATOR_COLLECTED", "EXPIRED"))));
+		shapes.put("last 7 days", filter(f -> f.setDateFrom(today.minusDays(7).toString())));
+		shapes.put("a day a year ago", filter(f -> {
+			f.setDateFrom(today.minusDays(365).toString());
+			f.setDateTo(today.minusDays(365).toString());
+		}));
+		shapes.put("busiest location", filter(f -> f.setLocationName(OrderDataGenerator.locationName(0))));
+		shapes.put("quiet location", filter(f -> f.setLocationName(OrderDataGenerator.locationName(350))));
+		shapes.put("city + locker", filter(f -> {
+			f.setCity(OrderDataGenerator.CITIES.get(1));
+			f.setLocationType("LOCKER");
+		}));
+		shapes.put("company last 30 days", filter(f -> {
+			f.setCompanyName(OrderDataGenerator.companyName(2));
+			f.setDateFrom(today.minusDays(30).toString());
+		}));
+		shapes.put("carrier", filter(f -> f.setCarrierName("Kerry Express")));
+		shapes.put("not carrier", filter(f -> f.setExcludeCarrierName("DHL")));
+		shapes.put("VIP flag", filter(f -> f.setFlags(List.of("VIP"))));
+		shapes.put("not fragile", filter(f -> f.setExcludeFlags(List.of("FRAGILE"))));
+		shapes.put("returns", filter(f -> f.setService(List.of("RETURNS"))));
+		shapes.put("collected last 30 days", filter(f -> {
+			f.setDateField("COLLECTED");
+			f.setDateFrom(today.minusDays(30).toString());
+		}));
+		shapes.put("expired by courier in week", filter(f -> {
+			f.setExcludeStatus(List.of("CREATED", "COURIER_STORED", "CUSTOMER_STORED", "DELIVERED",
+				"OPERATOR_COLLECTED"));
+			f.setCollectedBy(List.of("COURIER"));
+			f.setDateFrom(today.minusDays(7).toString());
+		}));
+		return shapes;
+	}
+
+	private static OrderFilter filter(Consumer<OrderFilter> setUp) {
+		OrderFilter filter = new OrderFilter();
+		setUp.accept(filter);
+		return filter;
+	}
+
+	// Milliseconds per run, sorted
+	private static double[] measure(Callable<?> query) throws Exception {
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			query.call();
+		}
+		double[] millis = new double[RUNS];
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			query.call();
+			millis[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(millis);
+		return millis;
+	}
+
+	private static double percentile(double[] sorted, double fraction) {
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+	}
+
+	private static void line(PrintWriter out, long size, String shape, String query, double[] millis) {
+		out.println(String.format(Locale.ROOT, "%d,%s,%s,%.2f,%.2f,%.2f", size, shape, query,
+			percentile(millis, 0.5), percentile(millis, 0.95), millis[millis.length - 1]));
+	}
+}
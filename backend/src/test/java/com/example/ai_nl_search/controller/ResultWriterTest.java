@@ -0,0 +1,122 @@
+package com.example.ai_nl_search.controller;
+
+import com.example.ai_nl_search.dto.OrderRow;
+import com.example.ai_nl_search.service.OrderField;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultWriterTest {
+
+	private static final Set<OrderField> FIELDS = EnumSet.of(OrderField.ID, OrderField.STATUS,
+		OrderField.COMPARTMENT_NO, OrderField.TIME_STORED, OrderField.CARRIER_NAME);
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private static List<OrderRow> rows() {
+		return List.of(
+			row(3, "DELIVERED", 12, Timestamp.valueOf("2026-01-08 17:37:00"), "DHL"),
+			row(2, "EXPIRED", null, null, null),
+			row(1, "DELIVERED", 4, Timestamp.valueOf("2026-01-06 12:00:00"), "DHL"));
+	}
+
+	private static OrderRow row(long id, String status, Integer compartmentNo, Timestamp timeStored, String carrier) {
+		return new OrderRow(id, "T" + id, "O" + id, "DELIVERY", status, null, null, compartmentNo,
+			Timestamp.valueOf("2026-01-01 00:00:00"), timeStored, null, null, null, null, null, null, null, carrier);
+	}
+
+	private static Map<String, Object> trailer() {
+		Map<String, Object> trailer = new LinkedHashMap<>();
+		trailer.put("rowCount", 3);
+		trailer.put("nextCursor", null);
+		return trailer;
+	}
+
+	@Test
+	void columnarJsonHoldsOneArrayPerFieldWithDictionaries() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ResultWriter writer = new ColumnarResultWriter(objectMapper.createGenerator(out), FIELDS,
+				Map.of("warnings", List.of()))) {
+			for (OrderRow row : rows()) {
+				writer.row(row);
+			}
+			writer.finish(trailer());
+		}
+
+		JsonNode document = objectMapper.readTree(out.toByteArray());
+		assertEquals(3, document.get("rowCount").asInt());
+		assertEquals(1, document.get("batches").size());
+		JsonNode columns = document.get("batches").get(0).get("columns");
+		List<String> names = new ArrayList<>();
+		columns.fieldNames().forEachRemaining(names::add);
+		assertEquals(List.of("id", "status", "compartmentNo", "timeStored", "carrierName"), names);
+		assertEquals("[3,2,1]", columns.get("id").toString());
+		assertEquals("{\"dictionary\":[\"DELIVERED\",\"EXPIRED\"],\"indices\":[0,1,0]}", columns.get("status").toString());
+		assertEquals("[12,null,4]", columns.get("compartmentNo").toString());
+		assertEquals(Timestamp.valueOf("2026-01-08 17:37:00").getTime(), columns.get("timeStored").get(0).asLong());
+		assertEquals("{\"dictionary\":[\"DHL\"],\"indices\":[0,null,0]}", columns.get("carrierName").toString());
+	}
+
+	@Test
+	void arrowStreamRoundTripsWithDictionaryEncodedEnums() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ResultWriter writer = new ArrowResultWriter(out, FIELDS, Map.of("interpreter", "\"RULES\""))) {
+			for (OrderRow row : rows()) {
+				writer.row(row);
+			}
+			writer.finish(trailer());
+		}
+
+		try (BufferAllocator allocator = new RootAllocator();
+			 ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), allocator)) {
+			VectorSchemaRoot root = reader.getVectorSchemaRoot();
+			assertEquals("\"RULES\"", root.getSchema().getCustomMetadata().get("interpreter"));
+			assertTrue(reader.loadNextBatch());
+			assertEquals(3, root.getRowCount());
+
+			BigIntVector ids = (BigIntVector) root.getVector("id");
+			assertEquals(3L, ids.get(0));
+			assertEquals(1L, ids.get(2));
+
+			IntVector statusIndices = (IntVector) root.getVector("status");
+			long dictionaryId = statusIndices.getField().getDictionary().getId();
+			try (VarCharVector statuses = (VarCharVector) DictionaryEncoder.decode(statusIndices,
+					reader.getDictionaryVectors().get(dictionaryId))) {
+				assertEquals("EXPIRED", statuses.getObject(1).toString());
+			}
+
+			IntVector compartments = (IntVector) root.getVector("compartmentNo");
+			assertEquals(12, compartments.get(0));
+			assertTrue(compartments.isNull(1));
+			TimeStampMilliTZVector stored = (TimeStampMilliTZVector) root.getVector("timeStored");
+			assertEquals(Timestamp.valueOf("2026-01-06 12:00:00").getTime(), stored.get(2));
+			VarCharVector carriers = (VarCharVector) root.getVector("carrierName");
+			assertTrue(carriers.isNull(1));
+
+			assertFalse(reader.loadNextBatch());
+		}
+	}
+}
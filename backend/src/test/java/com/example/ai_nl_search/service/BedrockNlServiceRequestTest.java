@@ -0,0 +1,51 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BedrockNlServiceRequestTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void escapesControlCharactersInUserQuery() throws Exception {
+		StubModelInvoker invoker = new StubModelInvoker("{\"location_name\":\"Location A\"}");
+		BedrockNlService service = new BedrockNlService(invoker, meterRegistry);
+		String query = "orders at \"Location A\"\n\tfrom \\ today\u0001";
+
+		OrderFilter filter = service.interpret(query);
+
+		assertEquals("Location A", filter.getLocationName());
+		JsonNode messages = objectMapper.readTree(invoker.requests.get(0)).path("messages");
+		assertEquals(query, messages.path(1).path("content").path(0).path("text").asText());
+		String systemText = messages.path(0).path("content").path(0).path("text").asText();
+		assertTrue(systemText.contains("Today's date: " + LocalDate.now()));
+	}
+
+	@Test
+	void followUpDetailsGoToUserMessageAndTokensAreRecorded() throws Exception {
+		StubModelInvoker invoker = new StubModelInvoker("Interpreted 'shipped' as status DELIVERED.");
+		BedrockNlService service = new BedrockNlService(invoker, meterRegistry);
+
+		service.generateFollowUp("shipped orders", new OrderFilter(), 4, List.of("Interpreted 'shipped'"));
+		service.generateFollowUp("shipped orders", new OrderFilter(), 4, List.of());
+
+		JsonNode first = objectMapper.readTree(invoker.requests.get(0)).path("messages");
+		JsonNode second = objectMapper.readTree(invoker.requests.get(1)).path("messages");
+		assertEquals(first.path(0), second.path(0));
+		assertTrue(first.path(1).path("content").path(0).path("text").asText().contains("Result count: 4"));
+		assertEquals(2, meterRegistry.get("bedrock.tokens").tag("call", "followup").tag("direction", "input")
+			.summary().count());
+		assertEquals(2, meterRegistry.get("bedrock.request.size").tag("call", "followup").summary().count());
+	}
+}
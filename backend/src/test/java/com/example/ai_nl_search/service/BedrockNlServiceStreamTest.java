@@ -0,0 +1,65 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BedrockNlServiceStreamTest {
+
+	@Test
+	void streamsFollowUpTokensInOrder() {
+		String text = "No orders found for 'Location X'. Did you mean Location A?";
+		BedrockNlService service = new BedrockNlService(new StubModelInvoker(text), new SimpleMeterRegistry());
+		List<String> tokens = new ArrayList<>();
+
+		String followUp = service.streamFollowUp("orders at Location X", new OrderFilter(), 0, List.of(), tokens::add);
+
+		assertTrue(tokens.size() > 1);
+		assertEquals(text, String.join("", tokens));
+		assertEquals(text, followUp);
+		assertEquals(service.generateFollowUp("orders at Location X", new OrderFilter(), 0, List.of()), followUp);
+	}
+
+	@Test
+	void holdsBackNoAssumptionMarker() {
+		BedrockNlService service = new BedrockNlService(new StubModelInvoker("NO_ASSUMPTION_MADE"), new SimpleMeterRegistry());
+		List<String> tokens = new ArrayList<>();
+
+		String followUp = service.streamFollowUp("delivered orders", new OrderFilter(), 3, List.of(), tokens::add);
+
+		assertTrue(tokens.isEmpty());
+		assertNull(followUp);
+	}
+
+	@Test
+	void timesModelCallsByStatus() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		new BedrockNlService(new StubModelInvoker("Did you mean Location A?"), registry)
+			.streamFollowUp("orders at Location X", new OrderFilter(), 0, List.of(), token -> { });
+		ModelInvoker throttled = new ModelInvoker() {
+			@Override
+			public String invoke(String modelId, byte[] requestBody) {
+				throw ThrottlingException.builder().statusCode(429).message("slow down").build();
+			}
+
+			@Override
+			public void invokeStream(String modelId, byte[] requestBody, Consumer<String> chunkConsumer) {
+				invoke(modelId, requestBody);
+			}
+		};
+		new BedrockNlService(throttled, registry).generateFollowUp("orders at Location X", new OrderFilter(), 0,
+			List.of());
+
+		assertEquals(1, registry.get("bedrock.call").tags("call", "followup", "status", "200").timer().count());
+		assertEquals(1, registry.get("bedrock.call").tags("call", "followup", "status", "429").timer().count());
+	}
+}
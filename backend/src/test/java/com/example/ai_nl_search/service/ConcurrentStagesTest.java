@@ -0,0 +1,51 @@
+package com.example.ai_nl_search.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentStagesTest {
+
+	@Test
+	void joinsEveryStage() {
+		try (ConcurrentStages stages = new ConcurrentStages()) {
+			Future<Integer> count = stages.fork(() -> 42);
+			Future<String> followUp = stages.fork(() -> "found " + stages.join(count));
+
+			assertEquals("found 42", stages.join(followUp));
+			assertEquals(42, stages.join(count));
+		}
+	}
+
+	@Test
+	void failingBodyCancelsUnjoinedStages() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		long start = System.nanoTime();
+
+		assertThrows(IllegalStateException.class, () -> {
+			try (ConcurrentStages stages = new ConcurrentStages()) {
+				stages.fork(() -> {
+					started.countDown();
+					try {
+						Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+					}
+					return 0L;
+				});
+				started.await();
+				throw new IllegalStateException("page query failed");
+			}
+		});
+
+		assertTrue(interrupted.await(0, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+	}
+}
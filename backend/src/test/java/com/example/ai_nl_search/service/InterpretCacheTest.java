@@ -0,0 +1,132 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InterpretCacheTest {
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2026-01-09T10:00:00Z"));
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final InterpretCache cache = new InterpretCache(2, Duration.ofHours(6), meterRegistry, clock);
+
+	@Test
+	void normalizesCaseWhitespaceAndPunctuation() {
+		assertEquals("delivered to location a", InterpretCache.normalize("  Delivered to, Location-A?! "));
+		cache.put("Delivered to Location A", filter("Location A"), cache.today());
+
+		OrderFilter cached = cache.get("delivered   to location a.");
+
+		assertNotNull(cached);
+		assertEquals("Location A", cached.getLocationName());
+	}
+
+	@Test
+	void handsOutCopies() {
+		OrderFilter filter = filter("Location A");
+		cache.put("orders at location a", filter, cache.today());
+
+		OrderFilter first = cache.get("orders at location a");
+		first.setLocationName("changed by a caller");
+
+		assertNotSame(filter, first);
+		assertEquals("Location A", cache.get("orders at location a").getLocationName());
+	}
+
+	@Test
+	void expiresAfterTtl() {
+		cache.put("orders at location a", filter("Location A"), cache.today());
+
+		clock.advance(Duration.ofHours(6).minusSeconds(1));
+		assertNotNull(cache.get("orders at location a"));
+		clock.advance(Duration.ofSeconds(2));
+		assertNull(cache.get("orders at location a"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void evictsLeastRecentlyUsed() {
+		cache.put("location a", filter("Location A"), cache.today());
+		cache.put("location b", filter("Location B"), cache.today());
+		cache.get("location a");
+		cache.put("location c", filter("Location C"), cache.today());
+
+		assertNotNull(cache.get("location a"));
+		assertNull(cache.get("location b"));
+		assertNotNull(cache.get("location c"));
+		assertEquals(1, meterRegistry.get("search.interpret.cache").tag("result", "miss").counter().count(), 0);
+	}
+
+	@Test
+	void clearsAtMidnight() {
+		clock.set(Instant.parse("2026-01-09T23:59:00Z"));
+		cache.put("last week", filter("Location A"), cache.today());
+
+		clock.set(Instant.parse("2026-01-10T00:00:01Z"));
+
+		assertNull(cache.get("last week"));
+	}
+
+	@Test
+	void dropsInterpretationsPromptedBeforeMidnight() {
+		clock.set(Instant.parse("2026-01-09T23:59:59Z"));
+		LocalDate promptDate = cache.today();
+
+		// The model answers after the day has changed
+		clock.set(Instant.parse("2026-01-10T00:00:02Z"));
+		cache.put("last week", filter("Location A"), promptDate);
+
+		assertNull(cache.get("last week"));
+		assertEquals(0, cache.size());
+	}
+
+	private static OrderFilter filter(String locationName) {
+		OrderFilter filter = new OrderFilter();
+		filter.setLocationName(locationName);
+		return filter;
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private Instant now;
+
+		MutableClock(Instant now) {
+			this.now = now;
+		}
+
+		void set(Instant now) {
+			this.now = now;
+		}
+
+		void advance(Duration duration) {
+			now = now.plus(duration);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Instant instant() {
+			return now;
+		}
+	}
+}
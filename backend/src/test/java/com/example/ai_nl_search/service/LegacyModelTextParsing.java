@@ -0,0 +1,99 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The regex-based extraction and clean-up BedrockNlService used before ModelTextScanner, kept verbatim as
+// the reference for ModelTextScannerFuzzTest and the baseline for ModelTextScannerBenchmark
+public final class LegacyModelTextParsing {
+
+	private static final Pattern JSON_PATTERN = Pattern.compile("\\{[^{}]*(?:\\{[^{}]*\\}[^{}]*)*\\}", Pattern.DOTALL);
+
+	private static final ObjectMapper objectMapper = new ObjectMapper()
+		.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private LegacyModelTextParsing() {
+	}
+
+	public static OrderFilter extractJsonFromText(String textResponse) throws Exception {
+		try {
+			JsonNode jsonNode = objectMapper.readTree(textResponse);
+			return objectMapper.treeToValue(jsonNode, OrderFilter.class);
+		} catch (Exception e) {
+			Matcher matcher = JSON_PATTERN.matcher(textResponse);
+			if (matcher.find()) {
+				String jsonStr = matcher.group(0);
+				JsonNode jsonNode = objectMapper.readTree(jsonStr);
+				return objectMapper.treeToValue(jsonNode, OrderFilter.class);
+			}
+
+			Pattern codeBlockPattern = Pattern.compile("```(?:json)?\\s*(\\{.*?\\})\\s*```", Pattern.DOTALL);
+			Matcher codeBlockMatcher = codeBlockPattern.matcher(textResponse);
+			if (codeBlockMatcher.find()) {
+				String jsonStr = codeBlockMatcher.group(1);
+				JsonNode jsonNode = objectMapper.readTree(jsonStr);
+				return objectMapper.treeToValue(jsonNode, OrderFilter.class);
+			}
+
+			throw new IllegalStateException("Could not extract JSON from response: " + textResponse);
+		}
+	}
+
+	public static String cleanFollowUpResponse(String textResponse) {
+		if (textResponse == null || textResponse.trim().isEmpty()) {
+			return null;
+		}
+
+		textResponse = textResponse.replaceAll("(?i)(?s)<reasoning>.*?</reasoning>", "");
+		textResponse = textResponse.replaceAll("(?i)(?s)<thinking>.*?</thinking>", "");
+		textResponse = textResponse.replaceAll("(?i)(?s)<analysis>.*?</analysis>", "");
+		textResponse = textResponse.replaceAll("(?s)<[^>]+>", "");
+		textResponse = textResponse.replaceAll("(?s)```[\\s\\S]*?```", "");
+
+		String[] lines = textResponse.split("\n");
+		StringBuilder cleaned = new StringBuilder();
+		for (String line : lines) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			String lowerLine = line.toLowerCase();
+			if (lowerLine.startsWith("we have") ||
+				lowerLine.startsWith("applied filter") ||
+				lowerLine.startsWith("result count") ||
+				lowerLine.startsWith("assumptions made") ||
+				lowerLine.startsWith("so we") ||
+				lowerLine.startsWith("according to") ||
+				lowerLine.startsWith("the format") ||
+				lowerLine.startsWith("use the") ||
+				lowerLine.startsWith("that matches") ||
+				lowerLine.startsWith("so we output") ||
+				lowerLine.startsWith("we need to") ||
+				lowerLine.startsWith("we should") ||
+				lowerLine.contains("behavior") && lowerLine.contains("choose")) {
+				continue;
+			}
+			if (cleaned.length() > 0) {
+				cleaned.append(" ");
+			}
+			cleaned.append(line);
+		}
+		textResponse = cleaned.toString().trim();
+
+		if (textResponse.startsWith("\"") && textResponse.endsWith("\"")) {
+			textResponse = textResponse.substring(1, textResponse.length() - 1);
+		}
+		if (textResponse.startsWith("'") && textResponse.endsWith("'")) {
+			textResponse = textResponse.substring(1, textResponse.length() - 1);
+		}
+
+		textResponse = textResponse.trim();
+
+		return textResponse.isEmpty() ? null : textResponse;
+	}
+}
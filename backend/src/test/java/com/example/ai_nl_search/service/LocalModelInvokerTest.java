@@ -0,0 +1,41 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LocalModelInvokerTest {
+
+	private static LocalModelInvoker invoker(double errorRate) {
+		return new LocalModelInvoker(new SimpleMeterRegistry(), Duration.ofMillis(1), Duration.ofMillis(2), errorRate,
+			Duration.ZERO, "{\"exclude_status\":[\"EXPIRED\"]}", "Showing orders that have not expired.");
+	}
+
+	@Test
+	void answersFilterAndFollowUpRequestsWithTheirCannedText() {
+		BedrockNlService service = new BedrockNlService(invoker(0), new SimpleMeterRegistry());
+
+		assertEquals(List.of("EXPIRED"), service.interpret("anything the rules cannot read").getExcludeStatus());
+		assertEquals("Showing orders that have not expired.",
+			service.generateFollowUp("unexpired orders", new OrderFilter(), 3, List.of("Assumed not expired.")));
+		assertEquals("Showing orders that have not expired.",
+			service.streamFollowUp("unexpired orders", new OrderFilter(), 3, List.of("Assumed not expired."), token -> {
+			}));
+	}
+
+	@Test
+	void injectsThrottlingErrors() {
+		BedrockNlService service = new BedrockNlService(invoker(1), new SimpleMeterRegistry());
+
+		RuntimeException e = assertThrows(RuntimeException.class, () -> service.interpret("anything"));
+		assertInstanceOf(ThrottlingException.class, e.getCause());
+	}
+}
@@ -0,0 +1,105 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// model-outputs.json holds filter and follow-up texts in the shapes the model returns. Each must come out as
+// it did with the regexes (LegacyModelTextParsing), or as "expected" where the scanner is meant to differ.
+// Seeded mutations of the same texts must never fail in any other way than "no filter found".
+class ModelTextScannerFuzzTest {
+
+	private static final String[] FRAGMENTS = {"{", "}", "\"", "\\", "'", "<", ">", "<reasoning>", "</reasoning>",
+		"<THINKING>", "</analysis>", "```", "```json\n", "\n", "\r\n", "We need to ", "{\"city\": \"Paris\"}", "x"};
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+		.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+	private final BedrockNlService service = new BedrockNlService(new StubModelInvoker(""), new SimpleMeterRegistry());
+
+	@Test
+	void corpusMatchesRegexVersion() throws Exception {
+		for (JsonNode entry : corpus()) {
+			String text = entry.get("text").asText();
+			if (entry.get("kind").asText().equals("filter")) {
+				JsonNode expected = entry.has("expected")
+					? entry.get("expected")
+					: objectMapper.valueToTree(LegacyModelTextParsing.extractJsonFromText(text));
+				assertEquals(expected, objectMapper.valueToTree(service.extractJsonFromText(text)), text);
+			} else {
+				assertEquals(LegacyModelTextParsing.cleanFollowUpResponse(text), service.cleanFollowUpResponse(text),
+					text);
+			}
+		}
+	}
+
+	@Test
+	void mutatedCorpusNeverBreaksTheScanner() throws Exception {
+		List<String> texts = new ArrayList<>();
+		for (JsonNode entry : corpus()) {
+			texts.add(entry.get("text").asText());
+		}
+		Random random = new Random(20260109);
+		for (int run = 0; run < 20_000; run++) {
+			String text = mutate(texts.get(random.nextInt(texts.size())), random);
+
+			try {
+				assertNotNull(service.extractJsonFromText(text));
+			} catch (IllegalStateException e) {
+				assertTrue(e.getMessage().startsWith("Could not extract JSON"), text);
+			} catch (Exception e) {
+				fail("Unexpected " + e + " for: " + text);
+			}
+
+			String cleaned = service.cleanFollowUpResponse(text);
+			if (cleaned != null) {
+				assertFalse(cleaned.isEmpty() || cleaned.contains("\n"), text);
+				assertEquals(cleaned.trim(), cleaned, text);
+			}
+			// Without markup the only work is per line, where both versions must agree
+			if (text.indexOf('<') < 0 && text.indexOf('`') < 0) {
+				String legacy;
+				try {
+					legacy = LegacyModelTextParsing.cleanFollowUpResponse(text);
+				} catch (StringIndexOutOfBoundsException e) {
+					// The regex version fails on a lone quote
+					continue;
+				}
+				assertEquals(legacy, cleaned, text);
+			}
+		}
+	}
+
+	private static String mutate(String text, Random random) {
+		StringBuilder mutated = new StringBuilder(text);
+		int mutations = 1 + random.nextInt(4);
+		for (int m = 0; m < mutations; m++) {
+			int at = random.nextInt(mutated.length() + 1);
+			switch (random.nextInt(3)) {
+				case 0 -> mutated.insert(at, FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+				case 1 -> mutated.delete(at, Math.min(mutated.length(), at + 1 + random.nextInt(20)));
+				default -> mutated.setLength(at);
+			}
+		}
+		return mutated.toString();
+	}
+
+	private JsonNode corpus() throws Exception {
+		try (InputStream in = getClass().getResourceAsStream("/model-outputs.json")) {
+			return objectMapper.readTree(in);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.DimensionCache.Dimension;
+import com.example.ai_nl_search.service.DimensionCache.Snapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NameSuggesterTest {
+
+	private static final List<Dimension> LOCATIONS = List.of(new Dimension(1, "alfred24 office locker"),
+		new Dimension(2, "location a"), new Dimension(3, "location b"));
+	private static final List<Dimension> CITIES = List.of(new Dimension(1, "hong kong"),
+		new Dimension(2, "hong kong"), new Dimension(3, "hong kong"));
+	private static final List<Dimension> COMPANIES = List.of(new Dimension(1, "demo company"),
+		new Dimension(2, "7eleven kwai chung"));
+	private static final List<Dimension> CARRIERS = List.of(new Dimension(1, "dhl"),
+		new Dimension(2, "sf express"), new Dimension(3, "ups"));
+
+	private static final Snapshot DIMENSIONS = new Snapshot(LOCATIONS, CITIES, COMPANIES, CARRIERS,
+		new TrigramIndex(List.of("alfred24 Office Locker", "Location A", "Location B")),
+		new TrigramIndex(List.of("Hong Kong", "Hong Kong", "Hong Kong")),
+		new TrigramIndex(List.of("Demo Company", "7Eleven Kwai Chung")),
+		new TrigramIndex(List.of("DHL", "SF Express", "UPS")),
+		System.currentTimeMillis());
+
+	private final NameSuggester suggester = new NameSuggester(
+		new DimensionCache(null, new SimpleMeterRegistry(), Duration.ofMinutes(1)) {
+			@Override
+			Snapshot snapshot() {
+				return DIMENSIONS;
+			}
+		}, new SimpleMeterRegistry());
+
+	@Test
+	void suggestsCloseSpellingsOfUnknownName() {
+		OrderFilter filter = new OrderFilter();
+		filter.setLocationName("Locaton C");
+
+		assertEquals("No orders found for 'Locaton C'. Did you mean Location A or Location B?",
+			suggester.followUp(filter, 0, List.of()));
+	}
+
+	@Test
+	void putsAssumptionFirst() {
+		OrderFilter filter = new OrderFilter();
+		filter.setCompanyName("Demo Compnay");
+
+		assertEquals("Date filter defaulted to order creation time. No orders found for 'Demo Compnay'. "
+				+ "Did you mean Demo Company?",
+			suggester.followUp(filter, 0, List.of("Date filter defaulted to order creation time. "
+				+ "To filter by stored or collected time, specify 'stored' or 'collected' in your query.")));
+	}
+
+	@Test
+	void leavesKnownNamesAndFarMissesToTheModel() {
+		OrderFilter known = new OrderFilter();
+		known.setCarrierName("dhl");
+		OrderFilter unknown = new OrderFilter();
+		unknown.setCarrierName("FedEx");
+
+		assertNull(suggester.followUp(known, 0, List.of()));
+		assertNull(suggester.followUp(unknown, 0, List.of()));
+		assertNull(suggester.followUp(known, 3, List.of()));
+	}
+}
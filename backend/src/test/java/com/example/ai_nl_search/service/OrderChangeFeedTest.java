@@ -0,0 +1,100 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The feed against H2 in MySQL mode, which keeps updated_at current the way the orders table does
+class OrderChangeFeedTest {
+
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+		"jdbc:h2:mem:changefeed;MODE=MySQL;DB_CLOSE_DELAY=-1"));
+	private final OrderChangeFeed feed = new OrderChangeFeed(jdbcTemplate, new SimpleMeterRegistry(),
+		Duration.ofHours(1), Duration.ofSeconds(2), 2);
+
+	@BeforeEach
+	void createTables() {
+		jdbcTemplate.execute("DROP ALL OBJECTS");
+		jdbcTemplate.execute("CREATE TABLE locations (id BIGINT PRIMARY KEY, location_type VARCHAR(32))");
+		jdbcTemplate.execute("""
+			CREATE TABLE orders (
+				id BIGINT PRIMARY KEY,
+				time_created DATETIME NOT NULL,
+				time_stored DATETIME,
+				time_collected DATETIME,
+				status VARCHAR(32) NOT NULL,
+				service VARCHAR(32) NOT NULL,
+				collected_by_type VARCHAR(32),
+				location_id BIGINT NOT NULL,
+				company_id BIGINT NOT NULL,
+				carrier_id BIGINT,
+				flag_mask TINYINT NOT NULL DEFAULT 0,
+				updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
+			)""");
+		jdbcTemplate.update("INSERT INTO locations VALUES (1, 'LOCKER')");
+		for (long id = 1; id <= 3; id++) {
+			jdbcTemplate.update("INSERT INTO orders (id, time_created, status, service, location_id, company_id) "
+				+ "VALUES (?, ?, 'CREATED', 'DELIVERY', 1, 1)", id, hoursAgo(10 - id));
+		}
+	}
+
+	@AfterEach
+	void stopFeed() throws InterruptedException {
+		feed.stop();
+	}
+
+	@Test
+	void deliversUpdatedRowsInBatches() {
+		List<OrderChange> received = new ArrayList<>();
+		feed.subscribe(received::addAll);
+		feed.poll();
+		received.clear();
+
+		Timestamp stored = hoursAgo(1);
+		jdbcTemplate.update("UPDATE orders SET status = 'COURIER_STORED', time_stored = ? WHERE id IN (1, 3)",
+			stored);
+		assertTrue(feed.poll() >= 2);
+
+		// Rows inside the overlap come again; the last delivery of an order is its current state
+		OrderChange first = received.stream().filter(change -> change.id() == 1).reduce((a, b) -> b).orElseThrow();
+		assertEquals("COURIER_STORED", first.status());
+		assertEquals(stored.getTime() / 1000, first.timeStored());
+	}
+
+	@Test
+	void snapshotFollowsTheFeedWithoutReloading() {
+		OrderSnapshotEngine engine = new OrderSnapshotEngine(jdbcTemplate, new DimensionCache(jdbcTemplate, new SimpleMeterRegistry(),
+			Duration.ofMinutes(1)), feed, new SimpleMeterRegistry(), true, Duration.ofDays(90), Duration.ofHours(1));
+		engine.reload();
+
+		OrderFilter stored = new OrderFilter();
+		stored.setExcludeStatus(List.of("CREATED"));
+		stored.setDateFrom(LocalDate.now().minusDays(2).toString());
+		assertEquals(Optional.of(List.of()), engine.pageIds(stored, null, 10));
+
+		jdbcTemplate.update("UPDATE orders SET status = 'COURIER_STORED' WHERE id = 2");
+		jdbcTemplate.update("INSERT INTO orders (id, time_created, status, service, location_id, company_id) "
+			+ "VALUES (4, ?, 'COURIER_STORED', 'DELIVERY', 1, 1)", hoursAgo(0));
+		feed.poll();
+
+		assertEquals(Optional.of(List.of(4L, 2L)), engine.pageIds(stored, null, 10));
+	}
+
+	private static Timestamp hoursAgo(long hours) {
+		return new Timestamp((System.currentTimeMillis() / 1000 - hours * 3600) * 1000);
+	}
+}
@@ -0,0 +1,105 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderCursor;
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.OrderSqlCompiler.CompiledQuery;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Runs EXPLAIN on each common query shape against a MySQL database created from db/init.sql (plus
+// enough orders for the optimizer to care, e.g. 100k). Only runs when SEARCH_EXPLAIN_DB_URL is set:
+// SEARCH_EXPLAIN_DB_URL=jdbc:mysql://localhost:3306/nl_search_demo mvn test -Dtest=OrderQueryPlanTest
+@EnabledIfEnvironmentVariable(named = "SEARCH_EXPLAIN_DB_URL", matches = ".+")
+class OrderQueryPlanTest {
+
+	private static final LocalDate TODAY = LocalDate.now();
+
+	static Stream<Arguments> shapes() {
+		return Stream.of(
+			shape("first page", false, filter -> { }),
+			shape("created last week", false, filter -> {
+				filter.setDateFrom(TODAY.minusDays(7).toString());
+				filter.setDateTo(TODAY.toString());
+			}),
+			shape("status", false, filter ->
+				filter.setExcludeStatus(List.of("CREATED", "COURIER_STORED", "CUSTOMER_STORED", "OPERATOR_COLLECTED", "EXPIRED"))),
+			shape("single location", false, filter -> filter.setLocationName("Location A")),
+			shape("single company", false, filter -> filter.setCompanyName("Demo Company")),
+			shape("single carrier", false, filter -> filter.setCarrierName("DHL")),
+			// Four flag_mask ranges on idx_flag_mask_created, merged by a filesort over the matching rows
+			shape("VIP this month", true, filter -> {
+				filter.setFlags(List.of("VIP"));
+				filter.setDateFrom(TODAY.withDayOfMonth(1).toString());
+				filter.setDateTo(TODAY.toString());
+			}),
+			// Range on another column than the sort key, a filesort over the matching rows is expected
+			shape("stored last week", true, filter -> {
+				filter.setDateField("STORED");
+				filter.setDateFrom(TODAY.minusDays(7).toString());
+				filter.setDateTo(TODAY.toString());
+			}),
+			shape("several locations", true, filter -> filter.setLocationName("Locker")),
+			shape("returns at lockers excluding DHL", true, filter -> {
+				filter.setService(List.of("RETURNS"));
+				filter.setLocationType("LOCKER");
+				filter.setExcludeCarrierName("DHL");
+			})
+		);
+	}
+
+	private static Arguments shape(String name, boolean filesortExpected, Consumer<OrderFilter> setUp) {
+		OrderFilter filter = new OrderFilter();
+		setUp.accept(filter);
+		return Arguments.of(name, filesortExpected, filter);
+	}
+
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+		System.getenv("SEARCH_EXPLAIN_DB_URL"),
+		System.getenv().getOrDefault("SEARCH_EXPLAIN_DB_USER", "root"),
+		System.getenv().getOrDefault("SEARCH_EXPLAIN_DB_PASSWORD", "root")));
+
+	private final OrderSqlCompiler compiler = new OrderSqlCompiler(new SimpleMeterRegistry(),
+		new DimensionCache(jdbcTemplate, new SimpleMeterRegistry(), Duration.ofMinutes(1)));
+
+	@ParameterizedTest(name = "{0}")
+	@MethodSource("shapes")
+	void firstPageUsesIndexes(String name, boolean filesortExpected, OrderFilter filter) {
+		assertPlan(compiler.compile(filter, null, OrderSearchService.DEFAULT_PAGE_SIZE + 1), filesortExpected);
+	}
+
+	@ParameterizedTest(name = "{0}")
+	@MethodSource("shapes")
+	void laterPageUsesIndexes(String name, boolean filesortExpected, OrderFilter filter) {
+		OrderCursor cursor = new OrderCursor(System.currentTimeMillis(), Long.MAX_VALUE);
+		assertPlan(compiler.compile(filter, cursor, OrderSearchService.DEFAULT_PAGE_SIZE + 1), filesortExpected);
+	}
+
+	private void assertPlan(CompiledQuery query, boolean filesortExpected) {
+		List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + query.sql(), query.params());
+		for (Map<String, Object> step : plan) {
+			String extra = String.valueOf(step.get("Extra"));
+			if ("o".equals(step.get("table"))) {
+				assertNotEquals("ALL", step.get("type"), "Full scan of orders: " + plan);
+			}
+			if (!filesortExpected) {
+				assertFalse(extra.contains("Using filesort"), "Filesort: " + plan);
+			}
+			assertFalse(extra.contains("Using temporary"), "Temporary table: " + plan);
+		}
+	}
+}
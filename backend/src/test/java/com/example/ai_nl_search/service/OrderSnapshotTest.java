@@ -0,0 +1,141 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderCursor;
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.DimensionCache.DimensionIds;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderSnapshotTest {
+
+	private static final long WINDOW_START = seconds("2026-01-01T00:00");
+	private static final Timestamp LOADED = Timestamp.valueOf("2026-01-09 00:00:00");
+
+	// Page order: newest first, ties broken by the higher id
+	private final OrderSnapshot snapshot = snapshot();
+
+	private static OrderSnapshot snapshot() {
+		OrderSnapshot.Mutation load = OrderSnapshot.empty(WINDOW_START,
+			Map.of(1L, "LOCKER", 2L, "LOCKER", 4L, "PUDO")).mutate();
+		load.upsert(order(5, "2026-01-02T10:00", "2026-01-02T12:00", null, "EXPIRED", "DELIVERY", "COURIER", 4, 2, 2L, 4));
+		load.upsert(order(6, "2026-01-03T09:30", "2026-01-03T10:00", null, "EXPIRED", "DELIVERY", "CUSTOMER", 2, 1, 2L, 6));
+		load.upsert(order(2, "2026-01-06T11:00", "2026-01-06T12:00", "2026-01-06T12:10", "DELIVERED", "DELIVERY",
+			"CUSTOMER", 2, 1, 1L, 1));
+		load.upsert(order(3, "2026-01-08T15:53", "2026-01-08T17:37", "2026-01-08T17:42", "OPERATOR_COLLECTED",
+			"DELIVERY", "OPERATOR", 1, 1, null, 2));
+		load.upsert(order(7, "2026-01-08T17:21", null, null, "CREATED", "RETURNS", null, 1, 1, null, 0));
+		return load.publish(System.currentTimeMillis());
+	}
+
+	@Test
+	void evaluatesEnumsFlagsAndDimensionsAsBitmaps() {
+		OrderFilter filter = new OrderFilter();
+		filter.setService(List.of("DELIVERY"));
+		filter.setExcludeStatus(List.of("EXPIRED"));
+		assertEquals(List.of(3L, 2L), ids(filter, null));
+
+		OrderFilter vip = new OrderFilter();
+		vip.setFlags(List.of("VIP"));
+		vip.setExcludeCollectedBy(List.of("OPERATOR"));
+		assertEquals(List.of(6L), ids(vip, null));
+
+		OrderFilter notDhl = new OrderFilter();
+		notDhl.setLocationType("locker");
+		// Orders without a carrier survive the carrier exclusion
+		assertEquals(List.of(7L, 3L, 6L), ids(notDhl,
+			new DimensionIds(null, Set.of(), null, Set.of(), null, Set.of(1L))));
+	}
+
+	@Test
+	void datesUseHalfOpenDayRanges() {
+		OrderFilter created = new OrderFilter();
+		created.setDateFrom("2026-01-03");
+		created.setDateTo("2026-01-06");
+		assertEquals(List.of(2L, 6L), ids(created, null));
+
+		OrderFilter collected = new OrderFilter();
+		collected.setDateField("COLLECTED");
+		collected.setDateTo("2026-01-07");
+		assertEquals(List.of(2L), ids(collected, null));
+
+		OrderFilter unparseable = new OrderFilter();
+		unparseable.setDateFrom("last week");
+		assertNull(snapshot.matching(unparseable, null));
+	}
+
+	@Test
+	void pagesContinueAfterTheCursor() {
+		OrderFilter all = new OrderFilter();
+		List<Long> firstPage = snapshot.page(snapshot.matching(all, null), null, 2);
+		OrderCursor cursor = new OrderCursor(seconds("2026-01-08T15:53") * 1000, 3);
+
+		assertEquals(List.of(7L, 3L), firstPage);
+		assertEquals(List.of(2L, 6L), snapshot.page(snapshot.matching(all, null), cursor, 2));
+	}
+
+	@Test
+	void coversOnlyCreatedRangesInsideTheWindow() {
+		OrderFilter inside = new OrderFilter();
+		inside.setDateFrom("2026-01-02");
+		OrderFilter outside = new OrderFilter();
+		outside.setDateFrom("2025-12-01");
+
+		assertTrue(snapshot.covers(inside));
+		assertFalse(snapshot.covers(outside));
+		assertFalse(snapshot.covers(new OrderFilter()));
+	}
+
+	@Test
+	void appliesChangesWithoutTouchingThePublishedSnapshot() {
+		OrderSnapshot.Mutation mutation = snapshot.mutate();
+		List<OrderChange> changes = List.of(
+			order(7, "2026-01-08T17:21", "2026-01-09T08:00", null, "COURIER_STORED", "RETURNS", null, 1, 1, null, 0),
+			order(8, "2026-01-09T09:00", null, null, "CREATED", "DELIVERY", null, 4, 2, null, 2));
+		assertTrue(mutation.placeable(changes));
+		changes.forEach(mutation::upsert);
+		OrderSnapshot next = mutation.publish(System.currentTimeMillis());
+
+		OrderFilter created = new OrderFilter();
+		created.setExcludeStatus(List.of("COURIER_STORED", "CUSTOMER_STORED", "DELIVERED", "OPERATOR_COLLECTED", "EXPIRED"));
+		assertEquals(List.of(8L), next.page(next.matching(created, null), null, 10));
+		assertEquals(List.of(7L), ids(created, null));
+		assertEquals(6, next.size());
+	}
+
+	@Test
+	void refusesOrdersThatNoLongerFitThePageOrder() {
+		OrderSnapshot.Mutation mutation = snapshot.mutate();
+
+		// time_created of order 3 moved, and a new order older than the newest one
+		assertFalse(mutation.placeable(List.of(
+			order(3, "2026-01-08T18:00", null, null, "CREATED", "DELIVERY", null, 1, 1, null, 0))));
+		assertFalse(mutation.placeable(List.of(
+			order(9, "2026-01-04T00:00", null, null, "CREATED", "DELIVERY", null, 1, 1, null, 0))));
+	}
+
+	private List<Long> ids(OrderFilter filter, DimensionIds dimensions) {
+		return snapshot.page(snapshot.matching(filter, dimensions), null, 10);
+	}
+
+	private static OrderChange order(long id, String created, String stored, String collected, String status,
+		String service, String collectedBy, long locationId, long companyId, Long carrierId, int flagMask) {
+		return new OrderChange(id, seconds(created), stored != null ? seconds(stored) : OrderChange.NO_TIME,
+			collected != null ? seconds(collected) : OrderChange.NO_TIME, status, service, collectedBy, locationId,
+			companyId, carrierId, flagMask, LOADED);
+	}
+
+	private static long seconds(String dateTime) {
+		return LocalDateTime.parse(dateTime).toEpochSecond(ZoneOffset.UTC);
+	}
+}
@@ -0,0 +1,311 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderCursor;
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.DimensionCache.Dimension;
+import com.example.ai_nl_search.service.DimensionCache.Snapshot;
+import com.example.ai_nl_search.service.OrderSqlCompiler.CompiledQuery;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderSqlCompilerTest {
+
+	// Same rows as db/init.sql
+	private static final Snapshot DIMENSIONS = new Snapshot(
+		List.of(new Dimension(1, "alfred24 office locker"), new Dimension(2, "location a"),
+			new Dimension(3, "location b"), new Dimension(4, "7eleven kwai chung - pudo"),
+			new Dimension(5, "abi graphique demo locker normal"),
+			new Dimension(6, "abi graphique demo locker temp control")),
+		List.of(new Dimension(1, "hong kong"), new Dimension(2, "hong kong"), new Dimension(3, "hong kong"),
+			new Dimension(4, "hong kong"), new Dimension(5, "paris"), new Dimension(6, "paris")),
+		List.of(new Dimension(1, "demo company"), new Dimension(2, "7eleven kwai chung"),
+			new Dimension(3, "abi graphique demo")),
+		List.of(new Dimension(1, "dhl"), new Dimension(2, "sf express"), new Dimension(3, "ups")),
+		System.currentTimeMillis());
+
+	private int snapshotCalls;
+
+	private final OrderSqlCompiler compiler = new OrderSqlCompiler(new SimpleMeterRegistry(),
+		new DimensionCache(null, new SimpleMeterRegistry(), Duration.ofMinutes(1)) {
+			@Override
+			Snapshot snapshot() {
+				snapshotCalls++;
+				return DIMENSIONS;
+			}
+		});
+
+	@Test
+	void resolvesNameWordsToIdLists() {
+		OrderFilter filter = new OrderFilter();
+		filter.setLocationName("ABI Locker");
+		filter.setExcludeLocationName("Temp");
+		filter.setCity("Paris");
+
+		CompiledQuery query = compiler.compile(filter, null, 50);
+
+		assertTrue(query.sql().contains(" AND o.location_id IN (?)"));
+		assertFalse(query.sql().contains("LIKE"));
+		assertEquals(List.of(5L, 50), List.of(query.params()));
+	}
+
+	@Test
+	void carrierExclusionKeepsOrdersWithoutCarrier() {
+		OrderFilter filter = new OrderFilter();
+		filter.setExcludeCarrierName("dhl");
+
+		CompiledQuery query = compiler.compile(filter, null, null);
+
+		assertTrue(query.sql().contains(" AND (o.carrier_id IS NULL OR o.carrier_id NOT IN (?))"));
+		assertEquals(List.of(1L), List.of(query.params()));
+	}
+
+	@Test
+	void unknownNameMatchesNothing() {
+		OrderFilter filter = new OrderFilter();
+		filter.setCompanyName("Acme");
+
+		assertTrue(compiler.compile(filter, null, null).sql().contains(" AND 1=0"));
+	}
+
+	@Test
+	void flagsCompileToMatchingMasks() {
+		OrderFilter filter = new OrderFilter();
+		filter.setFlags(List.of("vip"));
+		filter.setExcludeFlags(List.of("EXPIRED"));
+
+		CompiledQuery query = compiler.compile(filter, null, null);
+
+		assertTrue(query.sql().contains(" AND o.flag_mask IN (?, ?)"));
+		assertFalse(query.sql().contains("FIND_IN_SET"));
+		// VIP and FRAGILE,VIP
+		assertEquals(List.of(2, 3), List.of(query.params()));
+	}
+
+	@Test
+	void unknownFlagMatchesNothing() {
+		OrderFilter filter = new OrderFilter();
+		filter.setFlags(List.of("URGENT"));
+
+		assertTrue(compiler.compile(filter, null, null).sql().contains(" AND 1=0"));
+	}
+
+	@Test
+	void filtersWithoutNamesNeverLoadDimensions() {
+		OrderFilter filter = new OrderFilter();
+		filter.setService(List.of("RETURNS"));
+
+		compiler.compile(filter, null, 50);
+
+		assertEquals(0, snapshotCalls);
+	}
+
+	@Test
+	void groupsOnTheSameWhereClause() {
+		OrderFilter filter = new OrderFilter();
+		filter.setExcludeStatus(List.of("DELIVERED"));
+		filter.setDateFrom("2026-01-01");
+		filter.setDateField("STORED");
+
+		filter.setAggregate("LOCATION");
+		CompiledQuery byLocation = compiler.compileGroups(filter, 100);
+		assertTrue(byLocation.sql().startsWith("SELECT l.name AS group_key, COUNT(*) AS order_count"));
+		assertTrue(byLocation.sql().endsWith(" AND o.status NOT IN (?)"
+			+ " GROUP BY o.location_id, l.name ORDER BY order_count DESC, group_key LIMIT ?"));
+
+		filter.setAggregate("WEEK");
+		CompiledQuery byWeek = compiler.compileGroups(filter, 100);
+		assertTrue(byWeek.sql().contains(" GROUP BY DATE(o.time_stored - INTERVAL WEEKDAY(o.time_stored) DAY)"
+			+ " ORDER BY group_key LIMIT ?"));
+		assertEquals(List.of(LocalDate.parse("2026-01-01"), "DELIVERED", 100), List.of(byWeek.params()));
+	}
+
+	@Test
+	void projectionSelectsAndJoinsOnlyWhatIsNeeded() {
+		OrderFilter filter = new OrderFilter();
+		Set<OrderField> selected = OrderField.selected(OrderField.parse(List.of("trackingNo", "status")));
+
+		String sql = compiler.compile(filter, null, 50, selected).sql();
+		assertTrue(sql.startsWith("SELECT\n    o.id,\n    o.tracking_no,\n    o.status,\n    o.time_created\nFROM orders o\nWHERE"));
+		assertFalse(sql.contains("JOIN"));
+		assertFalse(compiler.compileCount(filter).sql().contains("JOIN"));
+
+		filter.setExcludeLocationType(List.of("PUDO"));
+		sql = compiler.compile(filter, null, 50, selected).sql();
+		assertTrue(sql.contains("INNER JOIN locations l"));
+		assertFalse(sql.contains("companies") || sql.contains("carriers"));
+	}
+
+	@Test
+	void padsIdListsToPowersOfTwo() {
+		OrderFilter filter = new OrderFilter();
+		filter.setCompanyName("a");
+
+		CompiledQuery query = compiler.compile(filter, null, null);
+
+		assertTrue(query.sql().contains(" AND o.company_id IN (?, ?, ?, ?)"));
+		assertEquals(List.of(1L, 2L, 3L, 3L), List.of(query.params()));
+	}
+
+	@Test
+	void reusesCachedSqlForTheSameShape() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		OrderSqlCompiler cached = new OrderSqlCompiler(registry, compilerDimensions(DIMENSIONS));
+		OrderFilter first = new OrderFilter();
+		first.setExcludeStatus(List.of("CREATED", "EXPIRED"));
+		first.setDateFrom("2026-01-01");
+		OrderFilter second = new OrderFilter();
+		second.setExcludeStatus(List.of("DELIVERED", "COURIER_STORED"));
+		second.setDateFrom("2025-12-01");
+
+		cached.compile(first, new OrderCursor(1_767_312_000_000L, 7), 50);
+		CompiledQuery hit = cached.compile(second, new OrderCursor(1_767_225_600_000L, 42), 50);
+		CompiledQuery uncached = new OrderSqlCompiler(new SimpleMeterRegistry(), compilerDimensions(DIMENSIONS))
+			.compile(second, new OrderCursor(1_767_225_600_000L, 42), 50);
+
+		assertEquals(1, registry.get("search.sql.shape.cache").tag("result", "hit").counter().count(), 0);
+		assertEquals(uncached.sql(), hit.sql());
+		assertEquals(List.of(uncached.params()), List.of(hit.params()));
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedShapes() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		OrderSqlCompiler small = new OrderSqlCompiler(registry, compilerDimensions(DIMENSIONS), 2);
+		OrderFilter a = new OrderFilter();
+		a.setService(List.of("RETURNS"));
+		OrderFilter b = new OrderFilter();
+		b.setCollectedBy(List.of("COURIER"));
+		OrderFilter c = new OrderFilter();
+		c.setExcludeService(List.of("DELIVERY"));
+
+		small.compile(a, null, 50);
+		small.compile(b, null, 50);
+		small.compile(a, null, 50);
+		small.compile(c, null, 50);
+		small.compile(a, null, 50);
+		small.compile(b, null, 50);
+
+		// a was used last before c came in, so b was evicted and missed again
+		assertEquals(2, small.cachedShapes());
+		assertEquals(2, registry.get("search.sql.shape.cache").tag("result", "hit").counter().count(), 0);
+		assertEquals(4, registry.get("search.sql.shape.cache").tag("result", "miss").counter().count(), 0);
+	}
+
+	@Test
+	void broadNameWordsFallBackToLikeOnTheJoinedTable() {
+		List<Dimension> lockers = new ArrayList<>();
+		List<Dimension> cities = new ArrayList<>();
+		for (long id = 1; id <= OrderSqlCompiler.MAX_ID_LIST + 44; id++) {
+			lockers.add(new Dimension(id, "locker " + id));
+			cities.add(new Dimension(id, "paris"));
+		}
+		OrderSqlCompiler broad = new OrderSqlCompiler(new SimpleMeterRegistry(), compilerDimensions(
+			new Snapshot(lockers, cities, List.of(new Dimension(1, "demo company")), List.of(), 0)));
+		Set<OrderField> idOnly = Set.of(OrderField.ID);
+
+		OrderFilter everyLocker = new OrderFilter();
+		everyLocker.setLocationName("Locker");
+		everyLocker.setExcludeLocationName("17");
+		CompiledQuery like = broad.compile(everyLocker, null, 50, idOnly);
+
+		assertTrue(like.sql().contains("INNER JOIN locations l ON o.location_id = l.id"));
+		assertTrue(like.sql().contains(" AND (LOWER(l.name) LIKE LOWER(?)) AND o.location_id NOT IN ("));
+		assertEquals("%locker%", like.params()[0]);
+
+		OrderFilter notLockers = new OrderFilter();
+		notLockers.setExcludeLocationName("locker");
+		CompiledQuery notLike = broad.compile(notLockers, null, 50, idOnly);
+
+		assertTrue(notLike.sql().contains(" AND NOT (LOWER(l.name) LIKE LOWER(?))"));
+		assertFalse(notLike.sql().contains("o.location_id NOT IN"));
+
+		// Narrow enough for an id list, without the join
+		OrderFilter someLockers = new OrderFilter();
+		someLockers.setLocationName("locker 7");
+		CompiledQuery ids = broad.compile(someLockers, null, 50, idOnly);
+
+		assertFalse(ids.sql().contains("JOIN"));
+		assertTrue(ids.sql().contains(" AND o.location_id IN (?"));
+	}
+
+	@Test
+	void snapshotPickedIdsAreFilteredAgain() {
+		OrderFilter filter = new OrderFilter();
+		filter.setExcludeStatus(List.of("CREATED"));
+		filter.setCompanyName("demo");
+
+		CompiledQuery query = compiler.compileIds(filter, List.of(9L, 8L, 5L), Set.of(OrderField.ID));
+
+		assertTrue(query.sql().endsWith("WHERE 1=1\n AND o.id IN (?, ?, ?, ?) AND o.company_id IN (?, ?)"
+			+ " AND o.status NOT IN (?) ORDER BY o.time_created DESC, o.id DESC"));
+		assertEquals(List.of(9L, 8L, 5L, 5L, 1L, 3L, "CREATED"), List.of(query.params()));
+	}
+
+	// The SQL as written before shapes were cached, for a filter touching every kind of predicate
+	@Test
+	void generatesTheSameSqlAsBeforeCaching() {
+		OrderFilter filter = new OrderFilter();
+		filter.setLocationType("LOCKER");
+		filter.setDateFrom("2026-01-02");
+		filter.setDateTo("2026-01-09");
+		filter.setDateField("STORED");
+		filter.setExcludeStatus(List.of("CREATED"));
+		filter.setService(List.of("RETURNS"));
+
+		OrderCursor cursor = new OrderCursor(1_767_225_600_000L, 42);
+		CompiledQuery query = compiler.compile(filter, cursor, 50);
+
+		assertEquals(GOLDEN_PAGE_SQL, query.sql());
+		assertEquals(GOLDEN_PAGE_SQL, compiler.compile(filter, cursor, 50).sql());
+		assertEquals(List.of("LOCKER", LocalDate.parse("2026-01-02"), LocalDate.parse("2026-01-10"), "CREATED",
+			"RETURNS", cursor.getTimeCreated(), cursor.getTimeCreated(), 42L, 50), List.of(query.params()));
+	}
+
+	private static final String GOLDEN_PAGE_SQL = """
+		SELECT
+		    o.id,
+		    o.tracking_no,
+		    o.order_no,
+		    o.service,
+		    o.status,
+		    o.collected_by_type,
+		    o.recipient_phone,
+		    o.compartment_no,
+		    o.time_created,
+		    o.time_stored,
+		    o.time_collected,
+		    o.expires_at,
+		    o.flags,
+		    l.name AS location_name,
+		    l.location_type,
+		    l.city,
+		    c.name AS company_name,
+		    car.name AS carrier_name
+		FROM orders o
+		INNER JOIN locations l ON o.location_id = l.id
+		INNER JOIN companies c ON o.company_id = c.id
+		LEFT JOIN carriers car ON o.carrier_id = car.id
+		WHERE 1=1
+		 AND l.location_type = ? AND o.time_stored >= ? AND o.time_stored < ? AND o.status NOT IN (?)\
+		 AND o.service IN (?) AND (o.time_created < ? OR (o.time_created = ? AND o.id < ?))\
+		 ORDER BY o.time_created DESC, o.id DESC LIMIT ?""";
+
+	private static DimensionCache compilerDimensions(Snapshot dimensions) {
+		return new DimensionCache(null, new SimpleMeterRegistry(), Duration.ofMinutes(1)) {
+			@Override
+			Snapshot snapshot() {
+				return dimensions;
+			}
+		};
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Expected filters for test-queries.txt on 2026-01-09 are written by hand from the rules in the Bedrock prompt,
+// not recorded from model output; null means the query falls back to Bedrock
+class RuleBasedInterpreterParityTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+		.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+	private final RuleBasedInterpreter interpreter = new RuleBasedInterpreter(
+		Clock.fixed(Instant.parse("2026-01-09T12:00:00Z"), ZoneOffset.UTC));
+
+	@Test
+	void matchesExpectedFiltersForSampleQueries() throws Exception {
+		JsonNode expected;
+		try (InputStream in = getClass().getResourceAsStream("/interpreter-parity.json")) {
+			expected = objectMapper.readTree(in);
+		}
+
+		List<String> queries = Files.readAllLines(Path.of("../test-queries.txt")).stream()
+			.map(String::trim)
+			.filter(line -> !line.isEmpty())
+			.toList();
+
+		for (String query : queries) {
+			assertTrue(expected.has(query), "No expected filter for: " + query);
+			JsonNode actual = objectMapper.valueToTree(interpreter.interpret(query).orElse(null));
+			assertEquals(expected.get(query), actual, query);
+		}
+	}
+
+	@Test
+	void readsCountAndBreakdownQuestions() {
+		OrderFilter breakdown = interpreter.interpret("How many expired orders per location last week").orElseThrow();
+		assertEquals("LOCATION", breakdown.getAggregate());
+		assertEquals(List.of("CREATED", "COURIER_STORED", "CUSTOMER_STORED", "DELIVERED", "OPERATOR_COLLECTED"),
+			breakdown.getExcludeStatus());
+		assertEquals("2026-01-02", breakdown.getDateFrom());
+
+		OrderFilter count = interpreter.interpret("Number of returns at Location A by week").orElseThrow();
+		assertEquals("WEEK", count.getAggregate());
+		assertEquals("Location A", count.getLocationName());
+		assertEquals("COUNT", interpreter.interpret("How many returns at Location A").orElseThrow().getAggregate());
+	}
+
+	@Test
+	void declinesUnknownWords() {
+		assertTrue(interpreter.interpret("Delivered parcels in Kowloon").isEmpty());
+		assertTrue(interpreter.interpret("").isEmpty());
+	}
+}
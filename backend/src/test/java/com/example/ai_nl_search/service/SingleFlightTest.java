@@ -0,0 +1,80 @@
+package com.example.ai_nl_search.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final SingleFlight<String, String> singleFlight = new SingleFlight<>("test", meterRegistry);
+
+	@Test
+	void concurrentDuplicatesShareOneCall() throws Exception {
+		int callers = 20;
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(() -> singleFlight.execute("delivered orders", () -> {
+					calls.incrementAndGet();
+					await(release);
+					return "rows";
+				})));
+			}
+			// Let every caller reach the in-flight call before the leader finishes
+			while (coalesced() < callers - 1) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+			for (Future<String> result : results) {
+				assertEquals("rows", result.get(5, TimeUnit.SECONDS));
+			}
+		}
+
+		assertEquals(1, calls.get());
+		assertEquals(callers - 1, coalesced());
+	}
+
+	@Test
+	void finishedCallsAreNotReused() {
+		AtomicInteger calls = new AtomicInteger();
+		singleFlight.execute("q", () -> "a" + calls.incrementAndGet());
+
+		assertEquals("a2", singleFlight.execute("q", () -> "a" + calls.incrementAndGet()));
+		assertEquals(0, coalesced());
+	}
+
+	@Test
+	void failureReachesTheCaller() {
+		assertThrows(IllegalStateException.class, () -> singleFlight.execute("q", () -> {
+			throw new IllegalStateException("Bedrock unavailable");
+		}));
+		assertEquals("ok", singleFlight.execute("q", () -> "ok"));
+	}
+
+	private double coalesced() {
+		return meterRegistry.get("search.singleflight.coalesced").counter().count();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.example.ai_nl_search.service;
+
+import com.example.ai_nl_search.dto.OrderFilter;
+import com.example.ai_nl_search.service.OrderSqlCompiler.CompiledQuery;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// EXPLAIN against H2 in MySQL mode; its plan is a single row, MySQL's has one per table
+class SlowSearchLogTest {
+
+	private final JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+		"jdbc:h2:mem:slowsearch;MODE=MySQL;DB_CLOSE_DELAY=-1"));
+
+	private static final CompiledQuery QUERY = new CompiledQuery(
+		"SELECT o.id FROM orders o WHERE o.status = ? ORDER BY o.id LIMIT ?", new Object[] {"CREATED", 51});
+
+	@Test
+	void capturesOnlySlowQueriesWithPlanAndNlQuery() throws InterruptedException {
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS orders (id BIGINT PRIMARY KEY, status VARCHAR(32))");
+		SlowSearchLog log = new SlowSearchLog(jdbcTemplate, new SimpleMeterRegistry(), Duration.ofMillis(100), 2, true,
+			true);
+		OrderFilter filter = new OrderFilter();
+		filter.setSourceQuery("created orders");
+
+		log.record("page", QUERY, filter, 50, Duration.ofMillis(99).toNanos());
+		log.record("page", QUERY, filter, 50, Duration.ofMillis(250).toNanos());
+		log.record("count", QUERY, filter, 7, Duration.ofMillis(300).toNanos());
+		log.record("stream", QUERY, filter, 9, Duration.ofMillis(400).toNanos());
+		List<SlowSearchLog.SlowSearch> recent = awaitEntries(log, 2);
+
+		// Capacity 2: the oldest slow one has been overwritten, newest first
+		assertEquals(List.of("stream", "count"), recent.stream().map(SlowSearchLog.SlowSearch::query).toList());
+		SlowSearchLog.SlowSearch newest = recent.get(0);
+		assertEquals("created orders", newest.nlQuery());
+		assertEquals(400, newest.millis());
+		assertEquals(9, newest.rows());
+		assertEquals(List.of("CREATED", "51"), newest.params());
+		assertNotNull(newest.plan());
+		assertNull(newest.planError());
+		assertTrue(newest.plan().get(0).values().iterator().next().toString().contains("ORDERS"));
+	}
+
+	@Test
+	void leavesOutTextValuesAndNlQueryByDefault() throws InterruptedException {
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS orders (id BIGINT PRIMARY KEY, status VARCHAR(32))");
+		SlowSearchLog log = new SlowSearchLog(jdbcTemplate, new SimpleMeterRegistry(), Duration.ofMillis(100), 2, true,
+			false);
+		OrderFilter filter = new OrderFilter();
+		filter.setSourceQuery("orders for 91234567");
+
+		log.record("stream", QUERY, filter, 3, Duration.ofMillis(400).toNanos());
+		List<SlowSearchLog.SlowSearch> recent = awaitEntries(log, 1);
+
+		assertEquals(1, recent.size());
+		assertNull(recent.get(0).nlQuery());
+		assertEquals(List.of(SlowSearchLog.REDACTED, "51"), recent.get(0).params());
+		// EXPLAIN still ran with the real values
+		assertNotNull(recent.get(0).plan());
+	}
+
+	private static List<SlowSearchLog.SlowSearch> awaitEntries(SlowSearchLog log, int count)
+		throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < deadline) {
+			List<SlowSearchLog.SlowSearch> recent = log.recent();
+			if (recent.size() == count && recent.get(0).query().equals("stream")) {
+				return recent;
+			}
+			Thread.sleep(10);
+		}
+		return log.recent();
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.ai_nl_search.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Answers every request with a fixed text, shaped like the Bedrock chat completion payloads of the OpenAI models
+public class StubModelInvoker implements ModelInvoker {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final String text;
+	private final Duration latency;
+	final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+	public StubModelInvoker(String text) {
+		this(text, Duration.ZERO);
+	}
+
+	// latency is slept once per call, standing in for the model round trip
+	public StubModelInvoker(String text, Duration latency) {
+		this.text = text;
+		this.latency = latency;
+	}
+
+	@Override
+	public String invoke(String modelId, byte[] requestBody) {
+		requests.add(new String(requestBody, StandardCharsets.UTF_8));
+		pause();
+		ObjectNode root = objectMapper.createObjectNode();
+		root.putArray("choices").addObject().putObject("message").put("content", text);
+		// Rough counts, enough for the token accounting to have something to record
+		root.putObject("usage")
+			.put("prompt_tokens", requestBody.length / 4)
+			.put("completion_tokens", text.split(" ").length);
+		return root.toString();
+	}
+
+	@Override
+	public void invokeStream(String modelId, byte[] requestBody, Consumer<String> chunkConsumer) {
+		requests.add(new String(requestBody, StandardCharsets.UTF_8));
+		pause();
+		// One chunk per word, keeping the separating space at the front like real token deltas
+		int start = 0;
+		while (start < text.length()) {
+			int end = text.indexOf(' ', start + 1);
+			end = end < 0 ? text.length() : end;
+			ObjectNode chunk = objectMapper.createObjectNode();
+			chunk.putArray("choices").addObject().putObject("delta").put("content", text.substring(start, end));
+			chunkConsumer.accept(chunk.toString());
+			start = end;
+		}
+		chunkConsumer.accept("{\"choices\":[{\"delta\":{},\"finish_reason\":\"stop\"}]}");
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(latency);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
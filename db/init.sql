@@ -92,17 +92,32 @@ CREATE TABLE orders (
   expires_at DATETIME,
 
   flags VARCHAR(255),
+  -- One bit per known flag (FRAGILE=1, VIP=2, EXPIRED=4), kept in step with flags by MySQL
+  flag_mask TINYINT UNSIGNED AS (
+    (FIND_IN_SET('FRAGILE', IFNULL(flags, '')) > 0)
+    | (FIND_IN_SET('VIP', IFNULL(flags, '')) > 0) << 1
+    | (FIND_IN_SET('EXPIRED', IFNULL(flags, '')) > 0) << 2
+  ) STORED NOT NULL,
 
   created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+  -- Bumped by MySQL on every write; the backend's order change feed polls it
+  updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
 
   KEY idx_tracking_no (tracking_no),
   KEY idx_order_no (order_no),
-  KEY idx_status (status),
   KEY idx_service (service),
   KEY idx_created_time (time_created),
   KEY idx_stored_time (time_stored),
   KEY idx_collected_time (time_collected),
 
+  -- Equality on the leading column, rows already in time_created order for ORDER BY ... LIMIT
+  KEY idx_status_created (status, time_created),
+  KEY idx_location_created (location_id, time_created),
+  KEY idx_company_created (company_id, time_created),
+  KEY idx_carrier_created (carrier_id, time_created),
+  KEY idx_flag_mask_created (flag_mask, time_created),
+  KEY idx_updated_at (updated_at),
+
   CONSTRAINT fk_orders_company
     FOREIGN KEY (company_id) REFERENCES companies(id),
   CONSTRAINT fk_orders_location
@@ -116,7 +131,9 @@ CREATE TABLE orders (
    ========================================================= */
 
 -- Delivered orders
-INSERT INTO orders VALUES
+INSERT INTO orders (id, tracking_no, order_no, company_id, location_id, carrier_id, service, status,
+  collected_by_type, recipient_phone, compartment_no, time_created, time_stored, time_collected, expires_at,
+  flags, created_at) VALUES
 (NULL,'2026010806','2026010806',2,4,1,'DELIVERY','DELIVERED','CUSTOMER','85293293177',7,
  '2026-01-08 16:43:00','2026-01-08 18:12:00','2026-01-08 18:13:00','2026-01-15 00:00:00',NULL,NOW()),
 
@@ -124,22 +141,30 @@ INSERT INTO orders VALUES
  '2026-01-06 11:00:00','2026-01-06 12:00:00','2026-01-06 12:10:00','2026-01-13 00:00:00','FRAGILE',NOW());
 
 -- Operator collected
-INSERT INTO orders VALUES
+INSERT INTO orders (id, tracking_no, order_no, company_id, location_id, carrier_id, service, status,
+  collected_by_type, recipient_phone, compartment_no, time_created, time_stored, time_collected, expires_at,
+  flags, created_at) VALUES
 (NULL,'2026010802','2026010802',1,1,NULL,'DELIVERY','OPERATOR_COLLECTED','OPERATOR','85293293177',13,
  '2026-01-08 15:53:00','2026-01-08 17:37:00','2026-01-08 17:42:00','2026-01-12 00:00:00','VIP',NOW());
 
 -- Customer stored (not yet collected)
-INSERT INTO orders VALUES
+INSERT INTO orders (id, tracking_no, order_no, company_id, location_id, carrier_id, service, status,
+  collected_by_type, recipient_phone, compartment_no, time_created, time_stored, time_collected, expires_at,
+  flags, created_at) VALUES
 (NULL,'2026010804','2026010804',1,1,NULL,'RETURNS','CUSTOMER_STORED',NULL,'85293293177',9,
  '2026-01-08 15:56:00','2026-01-08 17:41:00',NULL,'2026-01-20 00:00:00','FRAGILE',NOW());
 
 -- Created only
-INSERT INTO orders VALUES
+INSERT INTO orders (id, tracking_no, order_no, company_id, location_id, carrier_id, service, status,
+  collected_by_type, recipient_phone, compartment_no, time_created, time_stored, time_collected, expires_at,
+  flags, created_at) VALUES
 (NULL,'2026010807','2026010807',1,1,NULL,'RETURNS','CREATED',NULL,'85293293177',NULL,
  '2026-01-08 17:21:00',NULL,NULL,NULL,NULL,NOW());
 
 -- Expired parcels
-INSERT INTO orders VALUES
+INSERT INTO orders (id, tracking_no, order_no, company_id, location_id, carrier_id, service, status,
+  collected_by_type, recipient_phone, compartment_no, time_created, time_stored, time_collected, expires_at,
+  flags, created_at) VALUES
 (NULL,'2026010201','2026010201',1,2,2,'DELIVERY','EXPIRED','COURIER','85290000001',10,
  '2026-01-02 10:00:00','2026-01-02 12:00:00',NULL,'2026-01-05 00:00:00','EXPIRED',NOW()),
 
@@ -147,7 +172,9 @@ INSERT INTO orders VALUES
  '2026-01-03 09:30:00','2026-01-03 10:00:00',NULL,'2026-01-06 00:00:00','EXPIRED,VIP',NOW());
 
 -- Older December data
-INSERT INTO orders VALUES
+INSERT INTO orders (id, tracking_no, order_no, company_id, location_id, carrier_id, service, status,
+  collected_by_type, recipient_phone, compartment_no, time_created, time_stored, time_collected, expires_at,
+  flags, created_at) VALUES
 (NULL,'14122025','14122025',3,5,3,'DELIVERY','DELIVERED','CUSTOMER','670110034',9,
  '2025-12-03 16:24:00','2025-12-03 23:28:00','2025-12-03 23:38:00','2025-12-20 00:00:00',NULL,NOW());
 
@@ -0,0 +1,17 @@
+/* =========================================================
+   Composite indexes for databases created from an older init.sql.
+   The (x, time_created) indexes also serve the foreign keys. MySQL
+   drops the indexes it created implicitly for those foreign keys on
+   its own once another index leads with the same column, so only
+   idx_status, now covered by idx_status_created, is dropped here.
+   ========================================================= */
+USE nl_search_demo;
+
+ALTER TABLE orders
+  ADD KEY idx_status_created (status, time_created),
+  ADD KEY idx_location_created (location_id, time_created),
+  ADD KEY idx_company_created (company_id, time_created),
+  ADD KEY idx_carrier_created (carrier_id, time_created);
+
+ALTER TABLE orders
+  DROP KEY idx_status;
@@ -0,0 +1,13 @@
+/* =========================================================
+   Indexable flags for databases created from an older init.sql.
+   flags stays the source of truth; flag_mask is derived from it.
+   ========================================================= */
+USE nl_search_demo;
+
+ALTER TABLE orders
+  ADD COLUMN flag_mask TINYINT UNSIGNED AS (
+    (FIND_IN_SET('FRAGILE', IFNULL(flags, '')) > 0)
+    | (FIND_IN_SET('VIP', IFNULL(flags, '')) > 0) << 1
+    | (FIND_IN_SET('EXPIRED', IFNULL(flags, '')) > 0) << 2
+  ) STORED NOT NULL AFTER flags,
+  ADD KEY idx_flag_mask_created (flag_mask, time_created);
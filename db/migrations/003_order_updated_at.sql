@@ -0,0 +1,10 @@
+/* =========================================================
+   Change tracking for databases created from an older init.sql.
+   The backend's order change feed polls updated_at.
+   ========================================================= */
+USE nl_search_demo;
+
+ALTER TABLE orders
+  ADD COLUMN updated_at DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+    ON UPDATE CURRENT_TIMESTAMP(3) AFTER created_at,
+  ADD KEY idx_updated_at (updated_at);
@@ -9,6 +9,10 @@ app.controller("SearchController", function ($scope, $http) {
   $scope.error = null;
   $scope.warnings = [];
   $scope.followUp = null;
+  $scope.nextCursor = null;
+  $scope.loadingMore = false;
+  $scope.groups = null;
+  $scope.totalCount = null;
 
   $scope.loadAllOrders = function() {
     $scope.loading = true;
@@ -19,9 +23,12 @@ app.controller("SearchController", function ($scope, $http) {
 
     $http.get("/api/orders").then(function (response) {
       $scope.results = response.data.results || [];
+      $scope.groups = null;
+      $scope.totalCount = response.data.totalCount;
       $scope.filters = response.data.filters;
       $scope.warnings = response.data.warnings || [];
       $scope.followUp = response.data.followUp || null;
+      $scope.nextCursor = response.data.nextCursor || null;
     }).catch(function (error) {
       var errorMessage = "Failed to load orders";
       if (error.data && error.data.message) {
@@ -58,6 +65,9 @@ app.controller("SearchController", function ($scope, $http) {
       $scope.filters = response.data.filters;
       $scope.warnings = response.data.warnings || [];
       $scope.followUp = response.data.followUp || null;
+      $scope.nextCursor = response.data.nextCursor || null;
+      $scope.groups = response.data.groups || null;
+      $scope.totalCount = response.data.totalCount;
       $scope.query = "";
     }).catch(function (error) {
       var errorMessage = "Search failed";
@@ -73,6 +83,33 @@ app.controller("SearchController", function ($scope, $http) {
     });
   };
 
+  $scope.loadMore = function () {
+    if (!$scope.nextCursor || $scope.loadingMore) {
+      return;
+    }
+
+    $scope.loadingMore = true;
+    var request = $scope.lastSearchQuery
+      ? $http.post("/api/nl-search", { query: $scope.lastSearchQuery, cursor: $scope.nextCursor, filters: $scope.filters })
+      : $http.get("/api/orders", { params: { cursor: $scope.nextCursor } });
+
+    request.then(function (response) {
+      $scope.results = $scope.results.concat(response.data.results || []);
+      $scope.nextCursor = response.data.nextCursor || null;
+    }).catch(function (error) {
+      var errorMessage = "Failed to load more orders";
+      if (error.data && error.data.message) {
+        errorMessage = error.data.message;
+      } else if (error.statusText) {
+        errorMessage = error.statusText;
+      }
+      $scope.error = errorMessage;
+      console.error(error);
+    }).finally(function () {
+      $scope.loadingMore = false;
+    });
+  };
+
   $scope.getFilterSummary = function(filters) {
     if (!filters) return [];
     var summary = [];
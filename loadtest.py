@@ -0,0 +1,132 @@
+"""Load generator for /api/nl-search.
+
+Start the backend against the Bedrock stand-in so no tokens are spent:
+
+    cd backend && ./mvnw spring-boot:run -Dspring-boot.run.profiles=bedrock-stub
+
+then, for example:
+
+    python loadtest.py --concurrency 50 --duration 60
+
+Queries are taken round-robin from test-queries.txt. Each response's Server-Timing header
+(interpret, sql, count, aggregate, followup, total) is collected, and throughput plus
+p50/p95/p99 per stage are printed at the end. Only the Python standard library is used.
+"""
+
+import argparse
+import json
+import threading
+import time
+import urllib.error
+import urllib.request
+from collections import Counter, defaultdict
+from concurrent.futures import ThreadPoolExecutor
+
+STAGES = ["client", "total", "interpret", "sql", "count", "aggregate", "followup"]
+
+
+def parse_server_timing(header):
+    timings = {}
+    for metric in (header or "").split(","):
+        parts = [part.strip() for part in metric.split(";")]
+        if not parts[0]:
+            continue
+        for param in parts[1:]:
+            if param.startswith("dur="):
+                timings[parts[0]] = float(param[4:])
+    return timings
+
+
+def percentile(sorted_values, fraction):
+    if not sorted_values:
+        return float("nan")
+    index = min(len(sorted_values) - 1, max(0, round(fraction * len(sorted_values)) - 1))
+    return sorted_values[index]
+
+
+class Results:
+
+    def __init__(self):
+        self.lock = threading.Lock()
+        self.durations = defaultdict(list)
+        self.statuses = Counter()
+        self.interpreters = Counter()
+
+    def record(self, status, client_ms, server_timing):
+        with self.lock:
+            self.statuses[status] += 1
+            if status != 200:
+                return
+            self.durations["client"].append(client_ms)
+            for stage, duration in parse_server_timing(server_timing).items():
+                self.durations[stage].append(duration)
+            for metric in (server_timing or "").split(","):
+                if metric.strip().startswith("interpret") and 'desc="' in metric:
+                    self.interpreters[metric.split('desc="')[1].split('"')[0]] += 1
+
+
+def run_worker(url, queries, offset, deadline, remaining, results, timeout):
+    index = offset
+    while time.monotonic() < deadline:
+        with remaining["lock"]:
+            if remaining["count"] is not None:
+                if remaining["count"] <= 0:
+                    return
+                remaining["count"] -= 1
+        body = json.dumps({"query": queries[index % len(queries)]}).encode("utf-8")
+        index += 1
+        request = urllib.request.Request(url, data=body, headers={"Content-Type": "application/json"})
+        started = time.monotonic()
+        try:
+            with urllib.request.urlopen(request, timeout=timeout) as response:
+                response.read()
+                results.record(response.status, (time.monotonic() - started) * 1000,
+                               response.headers.get("Server-Timing"))
+        except urllib.error.HTTPError as e:
+            e.read()
+            results.record(e.code, (time.monotonic() - started) * 1000, None)
+        except Exception as e:
+            results.record(type(e).__name__, (time.monotonic() - started) * 1000, None)
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Load generator for /api/nl-search")
+    parser.add_argument("--url", default="http://localhost:8080/api/nl-search")
+    parser.add_argument("--queries", default="test-queries.txt")
+    parser.add_argument("--concurrency", type=int, default=20)
+    parser.add_argument("--duration", type=float, default=30, help="seconds to run")
+    parser.add_argument("--requests", type=int, default=None, help="stop after this many requests")
+    parser.add_argument("--timeout", type=float, default=60, help="per request, in seconds")
+    args = parser.parse_args()
+
+    with open(args.queries, encoding="utf-8") as f:
+        queries = [line.strip() for line in f if line.strip()]
+
+    results = Results()
+    remaining = {"lock": threading.Lock(), "count": args.requests}
+    started = time.monotonic()
+    deadline = started + args.duration
+    with ThreadPoolExecutor(max_workers=args.concurrency) as pool:
+        for worker in range(args.concurrency):
+            pool.submit(run_worker, args.url, queries, worker, deadline, remaining, results, args.timeout)
+    elapsed = time.monotonic() - started
+
+    total = sum(results.statuses.values())
+    print(f"{total} requests in {elapsed:.1f} s with {args.concurrency} clients: {total / elapsed:.1f} req/s")
+    print("Responses: " + ", ".join(f"{status}: {count}" for status, count in sorted(
+        results.statuses.items(), key=lambda item: str(item[0]))))
+    if results.interpreters:
+        print("Interpreter: " + ", ".join(f"{source}: {count}" for source, count in
+                                          results.interpreters.most_common()))
+    print()
+    print(f"{'stage':<10} {'count':>7} {'p50 ms':>9} {'p95 ms':>9} {'p99 ms':>9} {'max ms':>9}")
+    for stage in STAGES:
+        values = sorted(results.durations.get(stage, []))
+        if not values:
+            continue
+        print(f"{stage:<10} {len(values):>7} {percentile(values, 0.5):>9.1f} {percentile(values, 0.95):>9.1f} "
+              f"{percentile(values, 0.99):>9.1f} {values[-1]:>9.1f}")
+
+
+if __name__ == "__main__":
+    main()